@@ -12,6 +12,7 @@ import java.lang.reflect.Method;
 import java.text.DateFormat;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Debug is a utility class that wraps println statements and allows more or less command line
@@ -28,7 +29,11 @@ import java.util.Date;
  * You might redirect info, action, error and debug messages to your own logger object<br>
  * Start with setLogger() and then define with setLoggerXyz() the redirection targets
  * <p>
- * This solution is NOT threadsafe !!!
+ * Messages below the current level are dropped before any formatting.
+ * Messages to a log file (and to the console with Settings.LogAsync) are formatted and written
+ * by a background thread (see flush()).
+ * <p>
+ * The configuration (levels, files, logger redirection) is NOT threadsafe !!!
  */
 public class Debug {
 
@@ -41,8 +46,8 @@ public class Debug {
   private long _lapTime = 0;
   private String _message;
   private String _title = null;
-  private static PrintStream printout = null;
-  private static PrintStream printoutuser = null;
+  private static volatile PrintStream printout = null;
+  private static volatile PrintStream printoutuser = null;
   private static final DateFormat df =
       DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.MEDIUM);
   public static String logfile;
@@ -166,7 +171,7 @@ public class Debug {
 
   public static void globalTraceOn() {
     TRACE_LEVEL = 1;
-    traceLast = -1;
+    traceLast.set(-1);
   }
 
   public static void globalTraceOff() {
@@ -433,6 +438,7 @@ public class Debug {
       }
       try {
         logfile = fileName;
+        flush();
         if (printout != null) {
           printout.close();
         }
@@ -479,6 +485,7 @@ public class Debug {
         }
       }
       try {
+        flush();
         if (printoutuser != null) {
           printoutuser.close();
         }
@@ -760,7 +767,7 @@ public class Debug {
       if (Settings.UserLogTime) {
 //TODO replace the hack -99 to filter user logs
         log(-99, String.format("%s (%s)",
-            Settings.UserLogPrefix, df.format(new Date())), message, args);
+            Settings.UserLogPrefix, formatTime(new Date().getTime())), message, args);
       } else {
         log(-99, String.format("%s", Settings.UserLogPrefix), message, args);
       }
@@ -839,7 +846,7 @@ public class Debug {
     return out;
   }
 
-  public static synchronized String trace(String message, Object... args) {
+  public static String trace(String message, Object... args) {
     if (isGlobalTrace()) {
       return log(-999, "TRACE", message, args);
     } else {
@@ -847,75 +854,121 @@ public class Debug {
     }
   }
 
-  private static long traceLast = -1;
+  private static AtomicLong traceLast = new AtomicLong(-1);
+
+  private static final LogBuffer logBuffer = new LogBuffer(Debug::write);
+
+  /**
+   * waits until the messages logged so far are written (see Settings.LogAsync)
+   */
+  public static void flush() {
+    logBuffer.flush(2000);
+  }
 
-  private static synchronized String log(int level, String prefix, String message, Object... args) {
+  private static String log(int level, String prefix, String message, Object... args) {
 //TODO replace the hack -99 to filter user logs
-    if (beQuiet) {
+    if (beQuiet || level > DEBUG_LEVEL) {
       return "";
     }
-    String sout = "";
-    String stime = "";
-    if (level <= DEBUG_LEVEL) {
-      if (level == 3 || level == -999) {
-        if (message.startsWith("TRACE: ")) {
-          if (!Settings.TraceLogs) {
-            return "";
-          }
+    if (level == 3 || level == -999) {
+      if (message.startsWith("TRACE: ")) {
+        if (!Settings.TraceLogs) {
+          return "";
         }
-        if (withTimeElapsed || level == -999) {
-          long traceElapsed = 0;
-          long actual = new Date().getTime();
-          if (withTimeElapsed) {
-            traceElapsed = actual - RunTime.getElapsedStart();
-          }
-          if (level == -999) {
-            if (traceLast < 0) {
-              traceElapsed = 0;
-            } else {
-              traceElapsed = actual - traceLast;
-            }
-            traceLast = actual;
+      }
+      if (withTimeElapsed || level == -999) {
+        long traceElapsed = 0;
+        long actual = new Date().getTime();
+        if (withTimeElapsed) {
+          traceElapsed = actual - RunTime.getElapsedStart();
+        }
+        if (level == -999) {
+          long last = traceLast.getAndSet(actual);
+          if (last < 0) {
+            traceElapsed = 0;
+          } else {
+            traceElapsed = actual - last;
           }
-          prefix = String.format("%d %s", traceElapsed, prefix);
         }
+        prefix = String.format("%d %s", traceElapsed, prefix);
       }
-      if (Settings.LogTime && level != -99) {
-        stime = String.format(" (%s)", df.format(new Date()));
-      }
-      if (!prefix.isEmpty()) {
-        prefix = "[" + prefix + stime + "] ";
-      }
-      if(args != null && args.length > 0) {
-        sout = String.format(message, args);
-      } else {
-        sout = message;
-      }
+    }
+    long time = -1;
+    if (Settings.LogTime && level != -99) {
+      time = new Date().getTime();
+    }
+    LogBuffer.Record record = new LogBuffer.Record(level, prefix, time, message, args);
+    if (privateLogger != null) {
       boolean isRedirected = false;
       if (level > -99) {
-        isRedirected = doRedirect(CallbackType.DEBUG, prefix, sout);
+        isRedirected = doRedirect(CallbackType.DEBUG, getPrefix(record), record.getText());
       } else if (level == -99) {
-        isRedirected = doRedirect(CallbackType.USER, prefix, sout);
+        isRedirected = doRedirect(CallbackType.USER, getPrefix(record), record.getText());
       }
-      if (!isRedirected) {
-        if (level == -99 && printoutuser != null) {
-          printoutuser.print(prefix + sout);
-          printoutuser.println();
-        } else if (printout != null) {
-          printout.print(prefix + sout);
-          printout.println();
-        } else {
-          if (!beQuiet) {
-            System.out.print(prefix + sout);
-            System.out.println();
-          }
-        }
-        if (level == -1 || level == -100 || level > 2) {
-          out(prefix + sout);
-        }
+      if (isRedirected) {
+        return getPrefix(record) + record.getText();
       }
     }
-    return prefix + sout;
+    if (shouldWriteAsync(level)) {
+      if (!record.hasOnlyValueArgs()) {
+        record.getText(); // other objects might change until written
+      }
+      String result = record.isFormatted() ? getPrefix(record) + record.getText() : "";
+      if (!logBuffer.offer(record)) {
+        return write(record);
+      }
+      return result;
+    }
+    return write(record);
+  }
+
+  // log files are always written in background, the console only with Settings.LogAsync
+  private static boolean shouldWriteAsync(int level) {
+    if (Settings.LogAsync) {
+      return true;
+    }
+    if (level == -99 && printoutuser != null) {
+      return true;
+    }
+    return printout != null;
+  }
+
+  private static String getPrefix(LogBuffer.Record record) {
+    String prefix = record.prefix;
+    if (!prefix.isEmpty()) {
+      String stime = "";
+      if (record.time > -1) {
+        stime = String.format(" (%s)", formatTime(record.time));
+      }
+      prefix = "[" + prefix + stime + "] ";
+    }
+    return prefix;
+  }
+
+  private static String formatTime(long time) {
+    synchronized (df) {
+      return df.format(new Date(time));
+    }
+  }
+
+  private static String write(LogBuffer.Record record) {
+    int level = record.level;
+    String text = getPrefix(record) + record.getText();
+    PrintStream userStream = printoutuser;
+    PrintStream logStream = printout;
+    if (level == -99 && userStream != null) {
+      userStream.println(text);
+    } else if (logStream != null) {
+      logStream.println(text);
+    } else {
+      if (!beQuiet) {
+        System.out.println(text);
+      }
+    }
+    if (level == -1 || level == -100 || level > 2) {
+      out(text);
+    }
+    return text;
   }
 
   /**
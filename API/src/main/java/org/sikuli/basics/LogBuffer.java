@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.basics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * INTERNAL USE: the bounded ring buffer for Debug messages, that are written by a background thread
+ * <p>producers claim a slot with a CAS on the head counter (no lock),
+ * the only consumer is the writer thread.
+ * If the buffer is full, the producer waits for the writer (messages are never dropped or reordered).</p>
+ */
+class LogBuffer {
+
+  /**
+   * a message as given to Debug - formatted not before it is written
+   */
+  static class Record {
+    final int level;
+    final String prefix;
+    final long time;
+    final String message;
+    final Object[] args;
+    private String text = null;
+
+    Record(int level, String prefix, long time, String message, Object[] args) {
+      this.level = level;
+      this.prefix = prefix;
+      this.time = time;
+      this.message = message;
+      this.args = args;
+    }
+
+    boolean isFormatted() {
+      return null != text;
+    }
+
+    // values of other types might change, before the message is formatted in background
+    boolean hasOnlyValueArgs() {
+      if (args != null) {
+        for (Object arg : args) {
+          if (!(arg == null || arg instanceof String || arg instanceof Number || arg instanceof Boolean
+              || arg instanceof Character || arg instanceof Enum)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    String getText() {
+      if (null == text) {
+        if (args != null && args.length > 0) {
+          text = String.format(message, args);
+        } else {
+          text = message;
+        }
+      }
+      return text;
+    }
+  }
+
+  private static final int capacity = 1 << 13;
+  private static final int mask = capacity - 1;
+
+  private final AtomicReferenceArray<Record> slots = new AtomicReferenceArray<>(capacity);
+  private final AtomicLong head = new AtomicLong(0);
+  private volatile long tail = 0;
+  private final Consumer<Record> output;
+  private volatile Thread writer = null;
+
+  LogBuffer(Consumer<Record> output) {
+    this.output = output;
+  }
+
+  /**
+   * @param record to be written by the background thread
+   * @return false if there is no writer thread (the caller has to write the record)
+   */
+  boolean offer(Record record) {
+    Thread thread = getWriter();
+    if (null == thread || Thread.currentThread() == thread) {
+      return false;
+    }
+    long claimed;
+    while (true) {
+      claimed = head.get();
+      if (claimed - tail >= capacity) {
+        if (!thread.isAlive()) {
+          return false;
+        }
+        LockSupport.unpark(thread);
+        LockSupport.parkNanos(100_000);
+        continue;
+      }
+      if (head.compareAndSet(claimed, claimed + 1)) {
+        break;
+      }
+    }
+    slots.set((int) (claimed & mask), record);
+    if (claimed == tail) {
+      LockSupport.unpark(thread);
+    }
+    return true;
+  }
+
+  /**
+   * waits until the records offered so far are written (at most the given time)
+   *
+   * @param maxWait milliseconds
+   */
+  void flush(long maxWait) {
+    Thread thread = writer;
+    if (null == thread || Thread.currentThread() == thread) {
+      return;
+    }
+    long until = System.currentTimeMillis() + maxWait;
+    long target = head.get();
+    while (tail < target && thread.isAlive() && System.currentTimeMillis() < until) {
+      LockSupport.unpark(thread);
+      LockSupport.parkNanos(200_000);
+    }
+  }
+
+  private Thread getWriter() {
+    Thread thread = writer;
+    if (null != thread) {
+      return thread;
+    }
+    synchronized (this) {
+      if (null == writer) {
+        thread = new Thread(this::drain, "SikuliX-Log");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000)));
+      }
+      return writer;
+    }
+  }
+
+  private void drain() {
+    while (true) {
+      int slot = (int) (tail & mask);
+      Record record = slots.get(slot);
+      if (null == record) {
+        // empty or the producer has claimed the slot but not yet stored the record:
+        // the producer of this slot unparks after storing (it sees claimed == tail)
+        LockSupport.park(this);
+        continue;
+      }
+      slots.set(slot, null);
+      try {
+        output.accept(record);
+      } catch (Exception e) {
+        System.out.println("[error] Debug: writing log message: " + e.getMessage());
+      }
+      tail = tail + 1;
+    }
+  }
+}
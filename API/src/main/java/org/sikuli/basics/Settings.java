@@ -50,17 +50,158 @@ public class Settings {
   public static float WaitScanRate = 3f; // frames per second
   public static float ObserveScanRate = 3f; // frames per second
   public static int ObserveMinChangedPixels = 50; // in pixels
+  /**
+   * true = observe: one capture per scan is used for all APPEAR/VANISH events
+   * (including the lastSeen checks) and the patterns are searched in parallel (default: false)
+   */
+  public static boolean ObserveBatched = false;
   public static int RepeatWaitTime = 1; // wait 1 second for visual to vanish after action
   public static double MinSimilarity = 0.7;
   public static double AlwaysResize = 0;
+  /**
+   * true = search in a downsized version of the image first and only verify
+   * the best candidate in the original (default: false)<br>
+   * can be switched per Pattern using Pattern.searchDownsized()
+   */
+  public static boolean SearchDownsized = false;
   public static int DefaultPadding = 50;
   public static boolean AutoDetectKeyboardLayout = true;  
 
+  /**
+   * number of threads used for parallel find operations like findAny and findBest
+   * (default: 0 = number of available cores)
+   */
+  public static int FindThreads = 0;
+
+  /**
+   * findBest: the first match with at least this score wins, the remaining searches are cancelled
+   * (default: 0 = off, all targets are searched)
+   */
+  public static double FindBestFirstScore = 0;
+
+  /**
+   * VNCScreen: max number of find operations running at the same time over all VNC sessions<br>
+   * each session gets a fair share of these (default: 0 = number of available cores)
+   */
+  public static int VNCMatchThreads = 0;
+
+  /**
+   * VNCSessions.run(): max number of sessions running a script at the same time (default: 16)
+   */
+  public static int VNCSessionThreads = 16;
+
+  /**
+   * VNCScreen: number of reconnect tries after a lost connection (default: 5, 0: no reconnect)
+   */
+  public static int VNCReconnectTries = 5;
+
+  /**
+   * VNCScreen: max seconds to wait between reconnect tries - the wait starts with 1 second
+   * and is doubled with each try (default: 30)
+   */
+  public static int VNCReconnectMaxDelay = 30;
+
+  /**
+   * SikulixServer: max number of tasks (script runs) running at the same time
+   * (default: 1 - one after the other)<br>
+   * scripts running at the same time share the runtime (e.g. the Jython interpreter),
+   * so use more only for scripts that do not interfere (e.g. VNC or image file work)
+   */
+  public static int ServerTasks = 1;
+
+  /**
+   * SikulixServer: max number of tasks of the same group running at the same time (default: 1)<br>
+   * can be set per group in the groups file (-g): name folder;tasks=n
+   */
+  public static int ServerGroupTasks = 1;
+
+  /**
+   * SikulixServer: max number of waiting tasks per group, further requests are rejected (default: 0 = no limit)<br>
+   * can be set per group in the groups file (-g): name folder;queue=n
+   */
+  public static int ServerGroupQueue = 0;
+
+  /**
+   * SikulixServer: max number of ended tasks kept for GET /tasks (default: 1000)
+   */
+  public static int ServerTaskHistory = 1000;
+
+  /**
+   * SikulixServer: seconds an ended task is kept for GET /tasks (default: 86400 = one day)
+   */
+  public static int ServerTaskHistoryTime = 86400;
+
+  /**
+   * number of initialized interpreters kept ready per script language (currently Jython)<br>
+   * more than 0: scripts run with a pooled interpreter at the same time (e.g. SikulixServer tasks)<br>
+   * (default: 0 - one shared interpreter, scripts run one after the other)
+   */
+  public static int ScriptInterpreters = 0;
+
+  /**
+   * number of script runs, after which a pooled interpreter is replaced by a fresh one (default: 20)
+   */
+  public static int ScriptInterpreterUses = 20;
+
+  /**
+   * Jython: check for abort with each executed script line (sys.settrace - slows down the script)<br>
+   * (default: false - abort is checked with SikuliX API calls like find, wait, mouse and keyboard actions,
+   * sleeping and waiting is interrupted)
+   */
+  public static boolean ScriptAbortTrace = false;
+
+  /**
+   * Jython: keep the compiled code of scripts and imported .sikuli modules,
+   * a script is only compiled again, when its content has changed (default: true)
+   */
+  public static boolean ScriptCodeCache = true;
+
+  /**
+   * number of compiled scripts kept in memory (default: 500)
+   */
+  public static int ScriptCodeCacheSize = 500;
+
+  /**
+   * store the compiled scripts in SikulixStore/JythonCode, to be used by later runs of SikuliX (default: true)
+   */
+  public static boolean ScriptCodeCacheOnDisk = true;
+
+  /**
+   * max number of compiled scripts kept in SikulixStore/JythonCode,
+   * the least recently used are deleted (default: 1000)
+   */
+  public static int ScriptCodeCacheOnDiskFiles = 1000;
+
   public static boolean CheckLastSeen = true;
   public static float CheckLastSeenSimilar = 0.95f;
 
+  /**
+   * keep the lastSeen of images in a file in the image folder (.sikulix-lastseen.json),
+   * so later runs first search where the image was found before (default: false)
+   */
+  public static boolean LastSeenPersist = false;
+
+  /**
+   * a persisted lastSeen is forgotten, after the image was not found there this many times in a row (default: 3)
+   */
+  public static int LastSeenMaxMisses = 3;
+
   public static org.sikuli.script.ImageCallback ImageCallback = null;
 
+  /**
+   * max size in MB of the cache holding the pixel content of loaded images (default: 0 - no limit)<br>
+   * least recently used images are dropped from the cache and reloaded when needed<br>
+   * (long running processes loading many images should set a limit - a 4K screenshot is about 24 MB)
+   */
+  public static int ImageCache = 0;
+
+  /**
+   * remember the image files found (or not found) per image path entry (default: true)<br>
+   * folders are watched for changes, the content of jars is listed once<br>
+   * on macOS the folders are polled by Java (about every 10 seconds): changes are seen with this delay
+   */
+  public static boolean ImagePathIndex = true;
+
   public static double DelayValue = 0.3;
   public static double DelayBeforeMouseDown = DelayValue;
   public static double DelayAfterDrag = DelayValue;
@@ -79,6 +220,11 @@ public class Settings {
    * to 1.0 (max delay of 1 second)
    */
   public static double TypeDelay = 0.0;
+  /**
+   * type(text) and write(text): number of characters typed without waiting for the
+   * system to process the key events (default: 0 - each key press/release is paced and synchronized)
+   */
+  public static int TypeBatchSize = 0;
   /**
    * Specify a delay between the mouse down and up in seconds as 0.nnn. This
    * only applies to the next click action and is then reset to 0 again. A value
@@ -96,6 +242,22 @@ public class Settings {
   public static String OcrDataPath = null;
   public static boolean OcrTextSearch = true;
   public static boolean OcrTextRead = true;
+
+  /**
+   * seconds an initialized Tesseract engine is kept for reuse (default: 60, 0: no reuse)
+   */
+  public static int OcrEngineIdleTime = 60;
+
+  /**
+   * max number of idle Tesseract engines kept per set of OCR options (default: 2)
+   */
+  public static int OcrEnginesPerOptions = 2;
+
+  /**
+   * seconds an OCR result (lines and words) is reused for the same image content and options
+   * (default: 2.0, 0: no caching) - repeated text searches on an unchanged screen are nearly free
+   */
+  public static float OcrResultCacheTime = 2.0f;
   public static boolean SwitchToText = false;
 
   public static boolean TRUE = true;
@@ -103,6 +265,10 @@ public class Settings {
 
   public static float SlowMotionDelay = 2.0f; // in seconds
   public static float MoveMouseDelay = 0.5f; // in seconds
+  /**
+   * mouse move steps per second with MoveMouseDelay &gt; 0 (default: 100, valid: 10 ... 1000)
+   */
+  public static int MoveMouseRate = 100;
   private static float MoveMouseDelaySaved = MoveMouseDelay;
   private static boolean ShowActions = false;
 
@@ -136,6 +302,12 @@ public class Settings {
   public static boolean TraceLogs = false;
   public static boolean LogTime = false;
 
+  /**
+   * console messages of Debug are written by a background thread too (default: false)<br>
+   * messages to log files (Debug.setLogFile, Debug.setUserLogFile) are always written in background
+   */
+  public static boolean LogAsync = false;
+
   public static boolean UserLogs = true;
   public static String UserLogPrefix = "user";
   public static boolean UserLogTime = true;
@@ -24,6 +24,8 @@ import java.io.InputStream;
 import java.net.URL;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * INTERNAL: An abstract super-class for {@link Region}, {@link Location}, {@link Image} ... .
@@ -406,7 +408,7 @@ public abstract class Element {
       }
       return !content.empty();
     }
-    return Image.ImageCache.isValid(imageURL);
+    return !getCachedContent().empty();
   }
 
   public Mat getContent() {
@@ -416,7 +418,23 @@ public abstract class Element {
       }
       return content;
     }
-    return Image.ImageCache.get(imageURL);
+    return getCachedContent();
+  }
+
+  // content dropped from the cache (eviction, reset, file changed) is loaded again, if it was loaded before
+  // checked and loaded under the url's lock: the loaded content is returned, even if evicted again meanwhile
+  private Mat getCachedContent() {
+    Mat mat = Image.ImageCache.get(imageURL);
+    if (!mat.empty() || w < 1 || h < 1) {
+      return mat;
+    }
+    synchronized (Image.ImageCache.getLoadLock(imageURL)) {
+      mat = Image.ImageCache.get(imageURL); // might have been loaded by another thread meanwhile
+      if (mat.empty()) {
+        mat = createContent(imageURL, true);
+      }
+    }
+    return mat;
   }
 
   public Mat cloneContent() {
@@ -425,11 +443,13 @@ public abstract class Element {
 
   public void setContent(Mat mat) {
     content = mat;
+    compiledTargets = null;
   }
 
   public void updateContent(Mat mat) {
     if (null == imageURL) {
       content = mat;
+      compiledTargets = null;
     } else {
       Image.ImageCache.put(imageURL, mat); // update content
     }
@@ -472,11 +492,13 @@ public abstract class Element {
     createContent(url(), true);
   }
 
-  private void createContent(URL url, boolean isReLoad) {
+  // returns the content as loaded (empty, if not loaded)
+  private Mat createContent(URL url, boolean isReLoad) {
+    Mat content = SXOpenCV.newMat();
     boolean success = true;
     if (null == url) {
       if (getName().isEmpty()) {
-        return;
+        return content;
       }
       success = false;
     }
@@ -494,8 +516,9 @@ public abstract class Element {
         imageURL = url;
         if (!isFakeImage() && Image.ImageCache.isValid(url)) {
           if (!isReLoad) {
-            setSize(Image.ImageCache.get(url));  //TODO revise FakeImage hack
-            return;
+            content = Image.ImageCache.get(url);
+            setSize(content);  //TODO revise FakeImage hack
+            return content;
           }
         }
         bytes = inputStream.readAllBytes();
@@ -505,7 +528,7 @@ public abstract class Element {
       if (bytes != null) {
         MatOfByte matOfByte = new MatOfByte();
         matOfByte.fromArray(bytes);
-        Mat content = Imgcodecs.imdecode(matOfByte, -1);
+        content = Imgcodecs.imdecode(matOfByte, -1);
         if (isMaskImage()) {
           List<Mat> mats = SXOpenCV.extractMask(content, false);
           content = mats.get(1);
@@ -522,6 +545,7 @@ public abstract class Element {
         initTerminate("Image finally not loaded: %s", url);
       }
     }
+    return content;
   }
 
   protected static void reload(String fpImage) {
@@ -540,6 +564,44 @@ public abstract class Element {
   }
 
   private Mat content = SXOpenCV.newMat();
+
+  // content without URL: the compiled targets are kept here (URL: with the content in the ImageCache)
+  private Map<String, CompiledTarget> compiledTargets = null;
+
+  /**
+   * INTERNAL USE: the content prepared for matching - compiled only once per variant,
+   * dropped when the content is reloaded or changed
+   *
+   * @param variant    identifies the preparation (e.g. resize factor, masking)
+   * @param maskSource the content of the mask image used (might be null)
+   * @param compiler   compiles the target, if not yet cached
+   * @return the compiled target
+   */
+  public CompiledTarget getCompiledTarget(String variant, Mat maskSource, Supplier<CompiledTarget> compiler) {
+    CompiledTarget compiled;
+    if (null == imageURL || isOnScreen()) {
+      synchronized (this) {
+        compiled = null == compiledTargets ? null : compiledTargets.get(variant);
+      }
+    } else {
+      compiled = Image.ImageCache.getTarget(imageURL, variant);
+    }
+    if (null != compiled && compiled.isFor(maskSource)) {
+      return compiled;
+    }
+    compiled = compiler.get();
+    if (null == imageURL || isOnScreen()) {
+      synchronized (this) {
+        if (null == compiledTargets) {
+          compiledTargets = new HashMap<>();
+        }
+        compiledTargets.put(variant, compiled);
+      }
+    } else {
+      Image.ImageCache.putTarget(imageURL, variant, compiled);
+    }
+    return compiled;
+  }
   //</editor-fold>
 
   //<editor-fold desc="004 Fields CV-attributes">
@@ -1094,9 +1156,11 @@ public abstract class Element {
    * @param timeout The time to wait
    */
   public void wait(double timeout) {
+    ScriptAbort.check();
     try {
       Thread.sleep((long) (timeout * 1000L));
     } catch (InterruptedException e) {
+      ScriptAbort.check();
     }
   }
 
@@ -1962,6 +2026,29 @@ public abstract class Element {
     return doFind(target, 0, true);
   }
 
+  // the image's content with resize, alpha channel or mask applied and its attributes
+  private CompiledTarget getCompiledTarget(Image image) {
+    Mat maskSource = image.hasMask() ? image.getMask().getContent() : null;
+    Supplier<CompiledTarget> compiler = () -> {
+      Mat what = image.getContent();
+      if (image.hasURL()) {
+        what = possibleImageResizeOrCallback(image, what);
+      }
+      Mat mask = null;
+      if (!image.isMasked() && null != maskSource) {
+        mask = SXOpenCV.extractMask(maskSource, false).get(1);
+      }
+      return CompiledTarget.compile(what, maskSource, mask, image.isMasked());
+    };
+    if (image.hasURL() && Settings.ImageCallback != null) {
+      return compiler.get(); // the callback might return something else each time
+    }
+    double factor = image.resize() == 1 ? Settings.AlwaysResize : image.resize();
+    String variant = String.format("element:%s:%s:%s", image.hasURL() ? factor : 0, image.isMasked(),
+        CompiledTarget.getMaskKey(image.hasMask() ? image.getMask() : null));
+    return image.getCompiledTarget(variant, maskSource, compiler);
+  }
+
   private Match doFind(Object target, double timeout, boolean findAll) throws FindFailed {
     if (!isValid()) {
       return null;
@@ -1987,27 +2074,10 @@ public abstract class Element {
       if (!image.isValid()) {
         return null;
       }
-      Mat what = image.getContent();
-      if (image.hasURL()) {
-        what = possibleImageResizeOrCallback(image, what);
-      }
-      Mat mask = new Mat();
-      if (image.isMasked()) {
-        List<Mat> mats = SXOpenCV.extractMask(what, false);
-        what = mats.get(0);
-        mask = mats.get(1);
-      } else {
-        if (what.channels() == 4) {
-          List<Mat> mats = SXOpenCV.extractMask(what, true);
-          what = mats.get(0);
-          mask = mats.get(1);
-        }
-        if (image.hasMask()) {
-          List<Mat> mats = SXOpenCV.extractMask(image.getMask().getContent(), false);
-          mask = mats.get(1);
-        }
-      }
-      SXOpenCV.setAttributes(image, what, mask);
+      CompiledTarget compiled = getCompiledTarget(image);
+      compiled.applyTo(image);
+      Mat what = compiled.getTarget();
+      Mat mask = compiled.getMask();
       whatTime = new Date().getTime() - startWhat;
       long before = new Date().getTime();
       long waitUntil = before + (int) (timeout * 1000);
@@ -2049,46 +2119,23 @@ public abstract class Element {
     return match;
   }
 
+  // all targets are searched to the end (nothing to cancel): see Region.findAnyCollect for findBest
   private List<Match> dofindAny(Object[] targets) {
     Match[] matches = new Match[targets.length];
-
-    class FindSub implements Runnable {
-
-      Element element;
-      Object target;
-      int nTarget;
-      Match[] matches;
-
-      FindSub(Element element, Object target, int nTarget, Match[] matches) {
-        this.element = element.getImage();
-        this.target = target;
-        this.nTarget = nTarget;
-        this.matches = matches;
-      }
-
-      @Override
-      public void run() {
+    Element element = getImage();
+    CompletableFuture[] subs = new CompletableFuture[targets.length];
+    int nTarget = 0;
+    for (Object target : targets) {
+      final int n = nTarget++;
+      subs[n] = CompletableFuture.runAsync(() -> {
         try {
-          matches[nTarget] = element.find(target);
+          matches[n] = element.find(target);
         } catch (Exception ex) {
-          matches[nTarget] = null;
+          matches[n] = null;
         }
-      }
-    }
-
-    Thread[] subs = new Thread[targets.length];
-    int nTarget = 0;
-    for (Object target : targets) {
-      subs[nTarget] = new Thread(new FindSub(this, target, nTarget, matches));
-      subs[nTarget++].start();
-    }
-    boolean all = false;
-    while (!all) {
-      all = true;
-      for (Thread sub : subs) {
-        all &= !sub.isAlive();
-      }
+      }, FindPool.get());
     }
+    CompletableFuture.allOf(subs).join();
     return Arrays.asList(matches);
   }
 
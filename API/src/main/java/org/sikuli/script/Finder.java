@@ -7,6 +7,8 @@ import org.opencv.core.*;
 import org.opencv.imgproc.Imgproc;
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.Settings;
+import org.sikuli.script.support.ChangeDetector;
+import org.sikuli.script.support.CompiledTarget;
 import org.sikuli.script.support.RunTime;
 import org.sikuli.script.support.SXOpenCV;
 
@@ -14,6 +16,7 @@ import java.awt.Color;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 
 public class Finder implements Matches {
@@ -82,7 +85,7 @@ public class Finder implements Matches {
    }
 
   protected void setScreenImage(ScreenImage simg) {
-    _findInput.setSource(SXOpenCV.makeMat(simg.getBufferedImage()));
+    _findInput.setSource(simg.getContent()); // converted only once per ScreenImage
   }
 //</editor-fold>
 
@@ -137,15 +140,22 @@ public class Finder implements Matches {
     return possibleImageResizeOrCallback(img, 0);
   }
 
-  private Mat possibleImageResizeOrCallback(Image img, float oneTimeResize) {
+  private static double getResizeFactor(float oneTimeResize) {
     double factor = oneTimeResize;
     if (factor == 0 && Settings.AlwaysResize > 0 && Settings.AlwaysResize != 1) {
       factor = Settings.AlwaysResize;
     }
-    Mat mat = SXOpenCV.makeMat(img.getBufferedImage(), false);
+    return factor;
+  }
+
+  private Mat possibleImageResizeOrCallback(Image img, float oneTimeResize) {
+    double factor = getResizeFactor(oneTimeResize);
+    Mat mat = img.getContent();
     if (factor > 0 && factor != 1) {
       Debug.log(3, "Finder::possibleImageResizeOrCallback: resize");
       if (!mat.empty()) {
+        // resized in place: the cached content must not be touched
+        mat = mat.clone();
         SXOpenCV.resize(mat, factor);
       }
     } else if (Settings.ImageCallback != null) {
@@ -159,6 +169,21 @@ public class Finder implements Matches {
     return mat;
   }
 
+  // compiled only once per image, resize factor and mask (see Element.getCompiledTarget())
+  private void setTarget(Image img, float oneTimeResize, Image mask) {
+    Mat maskSource = null == mask ? null : mask.getContent();
+    Supplier<CompiledTarget> compiler = () ->
+        CompiledTarget.compile(possibleImageResizeOrCallback(img, oneTimeResize), maskSource, maskSource, false);
+    double factor = getResizeFactor(oneTimeResize);
+    if (Settings.ImageCallback != null && !(factor > 0 && factor != 1)) {
+      // the callback might return something else each time
+      _findInput.setCompiledTarget(compiler.get());
+      return;
+    }
+    String variant = "finder:" + factor + ":" + CompiledTarget.getMaskKey(mask);
+    _findInput.setCompiledTarget(img.getCompiledTarget(variant, maskSource, compiler));
+  }
+
   /**
    * do a find op with the given pattern in the Finder's image
    * (hasNext() and next() will reveal possible match results)
@@ -169,12 +194,10 @@ public class Finder implements Matches {
   public String find(Pattern aPtn) {
     if (aPtn.isValid()) {
       _pattern = aPtn;
-      if (_pattern.hasMask()) {
-        _findInput.setMask(_pattern.getMask().getContent());
-      }
       _image = aPtn.getImage();
-      _findInput.setTarget(possibleImageResizeOrCallback(_image, aPtn.getResize()));
+      setTarget(_image, aPtn.getResize(), _pattern.getMask());
       _findInput.setSimilarity(aPtn.getSimilar());
+      _findInput.setSearchDownsized(aPtn.isSearchDownsized());
       _findInput.setIsPattern();
       _results = Finder2.find(_findInput);
       //currentMatchIndex = 0;
@@ -194,8 +217,9 @@ public class Finder implements Matches {
   public String find(Image img) {
     if (img.isValid()) {
       _image = img;
-      _findInput.setTarget(possibleImageResizeOrCallback(img));
+      setTarget(img, 0, null);
       _findInput.setSimilarity(Settings.MinSimilarity);
+      _findInput.setSearchDownsized(Settings.SearchDownsized);
       _results = Finder2.find(_findInput);
       //currentMatchIndex = 0;
       return img.getFilename();
@@ -264,13 +288,10 @@ public class Finder implements Matches {
     if (aPtn.isValid()) {
       _pattern = aPtn;
       _image = aPtn.getImage();
-      _findInput.setTarget(possibleImageResizeOrCallback(_image, aPtn.getResize()));
+      setTarget(_image, aPtn.getResize(), _pattern.getMask());
       _findInput.setSimilarity(aPtn.getSimilar());
       _findInput.setIsPattern();
       _findInput.setFindAll();
-      if (_pattern.hasMask()) {
-        _findInput.setMask(_pattern.getMask().getContent());
-      }
       Debug timing = Debug.startTimer("Finder.findAll");
       _results = Finder2.find(_findInput);
       //currentMatchIndex = 0;
@@ -291,7 +312,7 @@ public class Finder implements Matches {
   public String findAll(Image img) {
     if (img.isValid()) {
       _image = img;
-      _findInput.setTarget(possibleImageResizeOrCallback(img));
+      setTarget(img, 0, null);
       _findInput.setSimilarity(Settings.MinSimilarity);
       _findInput.setFindAll();
       Debug timing = Debug.startTimer("Finder.findAll");
@@ -411,6 +432,15 @@ public class Finder implements Matches {
     return matches;
   }
 
+  /**
+   * INTERNAL USE: how the last find was done (tests)
+   *
+   * @return true if the match was found in the downsized image and verified in the original
+   */
+  public boolean isFoundDownsized() {
+    return _results != null && _results.isDownsized();
+  }
+
   /**
    * @return true if Finder has a next match, false otherwise
    */
@@ -488,6 +518,20 @@ public class Finder implements Matches {
     IMAGE_DIFF_THRESHOLD = value;
   }
 
+  /**
+   * @return min difference of a gray pixel value to be counted as changed (findChanges, onChange)
+   */
+  public static int getFindChangesPixelDiff() {
+    return PIXEL_DIFF_THRESHOLD;
+  }
+
+  /**
+   * @return min number of changed pixels to report changes (findChanges, onChange)
+   */
+  public static int getFindChangesImageDiff() {
+    return IMAGE_DIFF_THRESHOLD;
+  }
+
   protected static class Finder2 {
 
     static {
@@ -587,78 +631,73 @@ public class Finder implements Matches {
       FindInput2 findInput = fInput;
       log.trace("doFindImage: start %s", findInput);
       mBase = findInput.getBase();
-      boolean success = false;
       long begin_lap = 0;
       long begin_find = new Date().getTime();
       Core.MinMaxLocResult mMinMax = null;
 
       double rfactor = 0;
       boolean downSizeFound = false;
-      double downSizeScore = -1;
-      double downSizeWantedScore = 0;
       Mat findWhere = SXOpenCV.newMat();
       Mat findWhat = SXOpenCV.newMat();
 
-      boolean trueOrFalse = findInput.shouldSearchDownsized(resizeMinFactor);
-      //TODO search downsized?
-      trueOrFalse = false;
-      if (trueOrFalse) {
+      if (findInput.shouldSearchDownsized(resizeMinFactor)) {
         // ************************************************* search in downsized
         begin_lap = new Date().getTime();
         double imgFactor = findInput.getResizeFactor();
-        Size sizeBase, sizePattern;
-        mResult = null;
-        for (double factor : resizeLevels) {
+        double downSizeWantedScore = ((int) ((findInput.getScore() - downSimDiff) * 100)) / 100.0;
+        Size sizeBase;
+        for (float factor : resizeLevels) {
           rfactor = factor * imgFactor;
-          sizeBase = new Size(this.mBase.cols() / rfactor, this.mBase.rows() / rfactor);
-          sizePattern = new Size(findInput.getTarget().cols() / rfactor, findInput.getTarget().rows() / rfactor);
-          Imgproc.resize(this.mBase, findWhere, sizeBase, 0, 0, Imgproc.INTER_AREA);
-          Imgproc.resize(findInput.getTarget(), findWhat, sizePattern, 0, 0, Imgproc.INTER_AREA);
+          if (rfactor < resizeMinFactor) {
+            continue;
+          }
+          sizeBase = new Size(mBase.cols() / rfactor, mBase.rows() / rfactor);
+          Imgproc.resize(mBase, findWhere, sizeBase, 0, 0, Imgproc.INTER_AREA);
+          findWhat = findInput.getTargetLevel(rfactor);
           mResult = doFindMatch(findWhat, findWhere, findInput);
           mMinMax = Core.minMaxLoc(mResult);
-          downSizeWantedScore = ((int) ((findInput.getScore() - downSimDiff) * 100)) / 100.0;
-          downSizeScore = mMinMax.maxVal;
-          if (downSizeScore > downSizeWantedScore) {
+          if (mMinMax.maxVal > downSizeWantedScore) {
             downSizeFound = true;
             break;
           }
         }
-        log.trace("downSizeFound: %s", downSizeFound);
-        log.trace("doFindImage: down: %%%.2f %d msec", 100 * mMinMax.maxVal, new Date().getTime() - begin_lap);
+        if (SX.isNotNull(mMinMax)) {
+          log.trace("doFindImage: down(%.1f): %%%.2f(?%%%.2f) %d msec", rfactor, 100 * mMinMax.maxVal,
+                  100 * downSizeWantedScore, new Date().getTime() - begin_lap);
+        }
       }
-      findWhere = this.mBase;
-      trueOrFalse = !findInput.isFindAll() && downSizeFound;
-      if (trueOrFalse) {
+      findWhere = mBase;
+      if (downSizeFound) {
         // ************************************* check after downsized success
-        if (findWhere.size().equals(findInput.getTarget().size())) {
-          // trust downsized mResult, if images have same size
-          return new FindResult2(mResult, findInput);
-        } else {
-          int maxLocX = (int) (mMinMax.maxLoc.x * rfactor);
-          int maxLocY = (int) (mMinMax.maxLoc.y * rfactor);
-          begin_lap = new Date().getTime();
-          int margin = ((int) findInput.getResizeFactor()) + 1;
-          Rectangle rSub = new Rectangle(Math.max(0, maxLocX - margin), Math.max(0, maxLocY - margin),
-                  Math.min(findInput.getTarget().width() + 2 * margin, findWhere.width()),
-                  Math.min(findInput.getTarget().height() + 2 * margin, findWhere.height()));
-          Rectangle rWhere = new Rectangle(0, 0, findWhere.cols(), findWhere.rows());
-          Rectangle rSubNew = rWhere.intersection(rSub);
+        begin_lap = new Date().getTime();
+        int targetW = findInput.getTarget().width();
+        int targetH = findInput.getTarget().height();
+        int maxLocX = (int) (mMinMax.maxLoc.x * rfactor);
+        int maxLocY = (int) (mMinMax.maxLoc.y * rfactor);
+        int margin = ((int) Math.ceil(rfactor)) + 1;
+        Rectangle rSub = new Rectangle(maxLocX - margin, maxLocY - margin,
+                targetW + 2 * margin, targetH + 2 * margin);
+        Rectangle rWhere = new Rectangle(0, 0, findWhere.cols(), findWhere.rows());
+        final Mat whereAll = findWhere;
+        Rectangle rSubNew = rWhere.intersection(rSub);
+        if (rSubNew.width >= targetW && rSubNew.height >= targetH) {
           Rect rectSub = new Rect(rSubNew.x, rSubNew.y, rSubNew.width, rSubNew.height);
           mResult = doFindMatch(findInput.getTarget(), findWhere.submat(rectSub), findInput);
           mMinMax = Core.minMaxLoc(mResult);
           double maxVal = mMinMax.maxVal;
           double wantedScore = findInput.getScore();
           if (maxVal > wantedScore) {
-            findResult = new FindResult2(mResult, findInput, new int[]{rectSub.x, rectSub.y});
-          }
-          if (SX.isNotNull(findResult)) {
-            log.trace("doFindImage after down: %%%.2f(?%%%.2f) %d msec",
-                    maxVal * 100, wantedScore * 100, new Date().getTime() - begin_lap);
+            findResult = new FindResult2(mResult, findInput, new int[]{rectSub.x, rectSub.y},
+                () -> doFindMatch(findInput.getTarget(), whereAll, findInput));
           }
+          log.trace("doFindImage: after down: %%%.2f(?%%%.2f) %d msec %s",
+                  maxVal * 100, wantedScore * 100, new Date().getTime() - begin_lap,
+                  SX.isNull(findResult) ? "--- not verified" : "");
         }
       }
       // ************************************** search in original
-      if (downSizeScore < 0) {
+      if (SX.isNull(findResult)) {
+        // also taken, if the downsized candidate could not be verified
         begin_lap = new Date().getTime();
         mResult = doFindMatch(findInput.getTarget(), findWhere, findInput);
         mMinMax = Core.minMaxLoc(mResult);
@@ -680,8 +719,10 @@ public class Finder implements Matches {
       if (what.empty()) {
         log.error("doFindMatch: image conversion to cvMat did not work");
       } else {
+        // where might be shared with other finders (e.g. observe): never convert in place
         Mat mWhere = where;
-        if (findInput.isGray()) {
+        if (findInput.isGray() && where.channels() > 1) {
+          mWhere = SXOpenCV.newMat();
           Imgproc.cvtColor(where, mWhere, Imgproc.COLOR_BGR2GRAY);
         }
         if (!findInput.isPlainColor()) {
@@ -695,8 +736,9 @@ public class Finder implements Matches {
           Mat wherePlain = mWhere;
           Mat whatPlain = what;
           if (findInput.isBlack()) {
+            wherePlain = SXOpenCV.newMat();
             Core.bitwise_not(mWhere, wherePlain);
-            Core.bitwise_not(what, whatPlain);
+            whatPlain = findInput.getInverted(what);
           }
           if (findInput.hasMask()) {
             Imgproc.matchTemplate(wherePlain, what, mResult, Imgproc.TM_SQDIFF_NORMED, findInput.getMask());
@@ -727,10 +769,12 @@ public class Finder implements Matches {
       } else {
         text = text.trim();
       }
+      // lines and words from one OCR pass (the words of a matching line are not read again)
+      OCRResult textResult = TextRecognizer.get(OCR.globalOptions()).readResult(bimg);
       if (textLevel == OCR.PAGE_ITERATOR_LEVEL_LINE) {
-        wordsFound = OCR.readLines(bimg);
+        wordsFound = textResult.getLines();
       } else if (textLevel == OCR.PAGE_ITERATOR_LEVEL_WORD) {
-        wordsFound = OCR.readWords(bimg);
+        wordsFound = textResult.getWords();
       } else {
         globalSearch = true;
         textSplit = text.split("\\s");
@@ -740,12 +784,13 @@ public class Finder implements Matches {
             pattern = java.util.regex.Pattern.compile(textSplit[0] + ".*?" + textSplit[2]);
           }
         }
-        wordsFound = OCR.readLines(bimg);
+        wordsFound = textResult.getLines();
       }
       timer = new Date().getTime() - timer;
       List<Match> wordsMatch = new ArrayList<>();
       if (!text.isEmpty()) {
-        for (Match match : wordsFound) {
+        for (int nMatch = 0; nMatch < wordsFound.size(); nMatch++) {
+          Match match = wordsFound.get(nMatch);
           if (isWord()) {
             if (!isTextMatching(match.getText(), text, pattern)) {
               continue;
@@ -761,19 +806,15 @@ public class Finder implements Matches {
           } else {
             continue;
           }
-          Rectangle wordOrLine = match.getRect();
           List<Match> wordsInLine;
           if (globalSearch) {
-            BufferedImage bLine = Image.createSubimage(bimg, wordOrLine);
-            wordsInLine = OCR.readWords(bLine);
+            wordsInLine = textResult.getWordsInLine(nMatch);
             if (singleWord) {
               for (Match wordInLine : wordsInLine) {
                 if (!isTextContained(wordInLine.getText().toLowerCase(), text.toLowerCase(), null)) {
                   continue;
                 }
                 Rectangle rword = new Rectangle(wordInLine.getRect());
-                rword.x += wordOrLine.x;
-                rword.y += wordOrLine.y;
                 wordsMatch.add(new Match(rword, wordInLine.score(), wordInLine.getText(), where));
               }
             } else {
@@ -799,8 +840,6 @@ public class Finder implements Matches {
               if (startText > -1 && endText > -1) {
                 Rectangle rword = (new Rectangle(wordsInLine.get(startText).getRect())).
                         union(new Rectangle(wordsInLine.get(endText).getRect()));
-                rword.x += wordOrLine.x;
-                rword.y += wordOrLine.y;
                 double score = (wordsInLine.get(startText).score() + wordsInLine.get(startText).score()) / 2;
                 String foundText = wordsInLine.get(startText).getText() + " ... " + wordsInLine.get(endText);
                 wordsMatch.add(new Match(rword, score, foundText, where));
@@ -849,43 +888,10 @@ public class Finder implements Matches {
 
     public static List<Region> findChanges(FindInput2 findInput) {
       findInput.setAttributes();
-      Mat previousGray = SXOpenCV.newMat();
-      Mat nextGray = SXOpenCV.newMat();
-      Mat mDiffAbs = SXOpenCV.newMat();
-      Mat mDiffThresh = SXOpenCV.newMat();
-      Imgproc.cvtColor(findInput.getBase(), previousGray, toGray);
-      Imgproc.cvtColor(findInput.getTarget(), nextGray, toGray);
-      Core.absdiff(previousGray, nextGray, mDiffAbs);
-      Imgproc.threshold(mDiffAbs, mDiffThresh, PIXEL_DIFF_THRESHOLD, 0.0, Imgproc.THRESH_TOZERO);
-
-      List<Region> rectangles = new ArrayList<>();
-      if (Core.countNonZero(mDiffThresh) > IMAGE_DIFF_THRESHOLD) {
-        Imgproc.threshold(mDiffAbs, mDiffAbs, PIXEL_DIFF_THRESHOLD, 255, Imgproc.THRESH_BINARY);
-        Imgproc.dilate(mDiffAbs, mDiffAbs, SXOpenCV.newMat());
-        Mat se = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(5, 5));
-        Imgproc.morphologyEx(mDiffAbs, mDiffAbs, Imgproc.MORPH_CLOSE, se);
-        List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
-        Mat mHierarchy = SXOpenCV.newMat();
-        Imgproc.findContours(mDiffAbs, contours, mHierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
-        for (MatOfPoint contour : contours) {
-          int x1 = 99999;
-          int y1 = 99999;
-          int x2 = 0;
-          int y2 = 0;
-          List<org.opencv.core.Point> points = contour.toList();
-          for (Point point : points) {
-            int x = (int) point.x;
-            int y = (int) point.y;
-            if (x < x1) x1 = x;
-            if (x > x2) x2 = x;
-            if (y < y1) y1 = y;
-            if (y > y2) y2 = y;
-          }
-          Region rect = new Region(x1, y1, x2 - x1, y2 - y1);
-          rectangles.add(rect);
-        }
-      }
-      return rectangles;
+      ChangeDetector changeDetector = new ChangeDetector(ChangeDetector.TILE_SIZE_DEFAULT,
+              PIXEL_DIFF_THRESHOLD, IMAGE_DIFF_THRESHOLD);
+      changeDetector.setPrevious(findInput.getBase());
+      return changeDetector.findChanges(findInput.getTarget());
     }
 
     public static List<Region> contoursToRectangle(List<MatOfPoint> contours) {
@@ -969,6 +975,35 @@ public class Finder implements Matches {
 
     public void setTarget(Mat target) {
       this.target = target;
+      compiled = null;
+    }
+
+    // target, mask and attributes already prepared: setAttributes() only takes them
+    private CompiledTarget compiled = null;
+
+    public void setCompiledTarget(CompiledTarget compiled) {
+      this.compiled = compiled;
+      target = compiled.getTarget();
+      mask = compiled.getMask();
+    }
+
+    protected Mat getTargetLevel(double factor) {
+      if (null != compiled && getTarget() == compiled.getTarget()) {
+        return compiled.getLevel(factor);
+      }
+      Mat level = SXOpenCV.newMat();
+      Imgproc.resize(getTarget(), level, new Size(getTarget().cols() / factor, getTarget().rows() / factor),
+              0, 0, Imgproc.INTER_AREA);
+      return level;
+    }
+
+    protected Mat getInverted(Mat what) {
+      if (null != compiled && what == compiled.getTarget()) {
+        return compiled.getInverted();
+      }
+      Mat inverted = SXOpenCV.newMat();
+      Core.bitwise_not(what, inverted);
+      return inverted;
     }
 
     public Mat getTarget() {
@@ -1072,8 +1107,14 @@ public class Finder implements Matches {
       return similarity >= 0.99;
     }
 
+    private boolean searchDownsized = false;
+
+    public void setSearchDownsized(boolean state) {
+      searchDownsized = state;
+    }
+
     public boolean shouldSearchDownsized(float resizeMinFactor) {
-      return !hasMask() && !isExact() && !isFindAll() && getResizeFactor() > resizeMinFactor;
+      return searchDownsized && !hasMask() && !isExact() && !isFindAll() && getResizeFactor() > resizeMinFactor;
     }
 
     protected double getScore() {
@@ -1119,6 +1160,18 @@ public class Finder implements Matches {
       if (targetTypeText) {
         return;
       }
+      if (null != compiled) {
+        targetBGR = compiled.getTarget();
+        mask = compiled.getMask();
+        grayColor = compiled.isGray();
+        plainColor = compiled.isPlain();
+        blackColor = compiled.isBlack();
+        whiteColor = compiled.isWhite();
+        resizeFactor = compiled.getResizeFactor();
+        targetStdDev = compiled.getStdDev();
+        targetMean = compiled.getMean();
+        return;
+      }
       List<Mat> mats = SXOpenCV.extractMask(target, true);
       targetBGR = mats.get(0);
       if (mask.empty()) {
@@ -1219,13 +1272,33 @@ public class Finder implements Matches {
       this.findInput = findInput;
     }
 
-    public FindResult2(Mat result, FindInput2 target, int[] off) {
+    /**
+     * @param result the result of the verification in a part of the image (after the downsized search)
+     * @param off    where the part is in the image
+     * @param whole  gives the result for the whole image (needed when iterating beyond the first match)
+     */
+    public FindResult2(Mat result, FindInput2 target, int[] off, Supplier<Mat> whole) {
       this(result, target);
       offX = off[0];
       offY = off[1];
+      this.whole = whole;
+      downsized = true;
     }
 
-    private Core.MinMaxLocResult resultMinMax = null;
+    // found in the downsized image and verified in the original
+    private boolean downsized = false;
+
+    boolean isDownsized() {
+      return downsized;
+    }
+
+    private Supplier<Mat> whole = null;
+    private List<Match> peaks = null;
+    // false: only the best match is known yet (a find mostly needs no more)
+    private boolean allPeaks = false;
+    private int peakIndex = 0;
+    // the matches given so far (position in the image)
+    private List<int[]> given = new ArrayList<>();
 
     private double currentScore = -1;
     double targetScore = -1;
@@ -1234,15 +1307,6 @@ public class Finder implements Matches {
     double scoreMaxDiff = 0.005;
     int matchCount = 0;
 
-    private int currentX = -1;
-    private int currentY = -1;
-    private int baseW = -1;
-    private int baseH = -1;
-    private int targetW = -1;
-    private int targetH = -1;
-    private int marginX = -1;
-    private int marginY = -1;
-
     public boolean hasNext() {
       if (findInput.isText()) {
         if (matches.size() > 0) {
@@ -1250,39 +1314,51 @@ public class Finder implements Matches {
         }
         return false;
       }
-      resultMinMax = Core.minMaxLoc(result);
-      currentScore = resultMinMax.maxVal;
-      currentX = (int) resultMinMax.maxLoc.x;
-      currentY = (int) resultMinMax.maxLoc.y;
-      if (lastScore < 0) {
-        lastScore = currentScore;
+      if (peaks == null) {
         targetScore = findInput.getScore();
-        baseW = result.width();
-        baseH = result.height();
-        targetW = findInput.getTarget().width();
-        targetH = findInput.getTarget().height();
-        marginX = (int) (targetW * 0.8);
-        marginY = (int) (targetH * 0.8);
+        int targetW = findInput.getTarget().width();
+        int targetH = findInput.getTarget().height();
+        if (findInput.isFindAll()) {
+          peaks = SXOpenCV.doFindAllPeaks(result, targetScore, targetW, targetH);
+          allPeaks = true;
+        } else {
+          peaks = new ArrayList<>();
+          Core.MinMaxLocResult resultMinMax = Core.minMaxLoc(result);
+          if (resultMinMax.maxVal > targetScore) {
+            peaks.add(new Match((int) resultMinMax.maxLoc.x, (int) resultMinMax.maxLoc.y,
+                    targetW, targetH, resultMinMax.maxVal, null));
+          }
+          allPeaks = peaks.isEmpty();
+        }
+        peakIndex = 0;
         matchCount = 0;
       }
+      if (peakIndex >= peaks.size() && !allPeaks) {
+        allPeaks();
+      }
+      if (peakIndex >= peaks.size()) {
+        return false;
+      }
+      currentScore = peaks.get(peakIndex).score();
+      if (lastScore < 0) {
+        lastScore = currentScore;
+      }
       boolean isMatch = false;
-      if (currentScore > targetScore) {
-        if (matchCount == 0) {
-          isMatch = true;
-        } else if (matchCount == 1) {
-          scoreMeanDiff = lastScore - currentScore;
+      if (matchCount == 0) {
+        isMatch = true;
+      } else if (matchCount == 1) {
+        scoreMeanDiff = lastScore - currentScore;
+        isMatch = true;
+      } else {
+        double scoreDiff = lastScore - currentScore;
+        if (findInput.isPattern || scoreDiff <= (scoreMeanDiff + 0.01)) { // 0.005
+          scoreMeanDiff = ((scoreMeanDiff * matchCount) + scoreDiff) / (matchCount + 1);
           isMatch = true;
-        } else {
-          double scoreDiff = lastScore - currentScore;
-          if (findInput.isPattern || scoreDiff <= (scoreMeanDiff + 0.01)) { // 0.005
-            scoreMeanDiff = ((scoreMeanDiff * matchCount) + scoreDiff) / (matchCount + 1);
-            isMatch = true;
-          }
-        }
-        if (!isMatch) {
-          Debug.log(3, "findAll: (%d) stop: %.4f (%.4f) %s", matchCount, currentScore, scoreMeanDiff, findInput);
         }
       }
+      if (!isMatch) {
+        Debug.log(3, "findAll: (%d) stop: %.4f (%.4f) %s", matchCount, currentScore, scoreMeanDiff, findInput);
+      }
       return isMatch;
     }
 
@@ -1292,27 +1368,45 @@ public class Finder implements Matches {
         if (findInput.isText()) {
           return matches.remove(0);
         } else {
-          match = new Match(currentX + offX, currentY + offY, targetW, targetH, currentScore, null);
+          Match peak = peaks.get(peakIndex++);
+          match = new Match(peak.x + offX, peak.y + offY, peak.w, peak.h, peak.score(), null);
+          given.add(new int[]{match.x, match.y});
           matchCount++;
           lastScore = currentScore;
-          //int margin = getPurgeMargin();
-          Range rangeX = new Range(Math.max(currentX - marginX, 0), Math.min(currentX + marginX, result.width()));
-          Range rangeY = new Range(Math.max(currentY - marginY, 0), Math.min(currentY + marginY, result.height()));
-          result.colRange(rangeX).rowRange(rangeY).setTo(new Scalar(0f));
         }
       }
       return match;
     }
 
-    private int getPurgeMargin() {
-      if (currentScore < 0.95) {
-        return 4;
-      } else if (currentScore < 0.85) {
-        return 8;
-      } else if (currentScore < 0.71) {
-        return 16;
+    // iterated beyond the best match of a find: all matches as with findAll,
+    // without those already given (and the ones overlapping them)
+    private void allPeaks() {
+      if (null != whole) {
+        result = whole.get();
+        offX = 0;
+        offY = 0;
+        whole = null;
+      }
+      int targetW = findInput.getTarget().width();
+      int targetH = findInput.getTarget().height();
+      int marginX = Math.max(1, (int) (targetW * 0.8));
+      int marginY = Math.max(1, (int) (targetH * 0.8));
+      List<Match> more = new ArrayList<>();
+      for (Match peak : SXOpenCV.doFindAllPeaks(result, targetScore, targetW, targetH)) {
+        boolean isGiven = false;
+        for (int[] pos : given) {
+          if (Math.abs(peak.x + offX - pos[0]) < marginX && Math.abs(peak.y + offY - pos[1]) < marginY) {
+            isGiven = true;
+            break;
+          }
+        }
+        if (!isGiven) {
+          more.add(peak);
+        }
       }
-      return 2;
+      peaks = more;
+      peakIndex = 0;
+      allPeaks = true;
     }
 
     double bestScore = 0;
@@ -5,6 +5,9 @@ package org.sikuli.script;
 
 import org.opencv.core.Mat;
 import org.sikuli.basics.Settings;
+import org.sikuli.script.support.CompiledTarget;
+import org.sikuli.script.support.ImageGroup;
+import org.sikuli.script.support.SXOpenCV;
 
 import java.awt.*;
 import java.awt.color.ColorSpace;
@@ -205,6 +208,7 @@ public class Image extends Element {
   //<editor-fold desc="001 caching new">
   public static void resetCache() {
     ImageCache.reset();
+    SXOpenCV.releaseIntPixels();
   }
 
   public static Map<URL, List<Object>> getCache() {
@@ -220,54 +224,163 @@ public class Image extends Element {
     static int ITEM_MAT = 0;
     static int ITEM_COUNT = 1;
     static int ITEM_LASTMOD = 2;
+    static int ITEM_BYTES = 3;
+    static int ITEM_TARGETS = 4;
+    static int ITEM_CHECKED = 5;
 
-    static Map<URL, List<Object>> cache = Collections.synchronizedMap(new HashMap<>());
+    // the file of a cached image is checked for changes at most once in this time (msec)
+    private static final long lastModCheckInterval = 1000;
 
-    static Mat put(URL url, Mat mat) {
+    // access ordered: the eldest entry is the least recently used
+    static Map<URL, List<Object>> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    // a dropped content is checked and loaded again under the lock of its url (see Element.getContent)
+    // a fixed number of locks shared by the urls: nothing to remember per url
+    private static final Object[] loadLocks = new Object[64];
+
+    static {
+      for (int n = 0; n < loadLocks.length; n++) {
+        loadLocks[n] = new Object();
+      }
+    }
+
+    static Object getLoadLock(URL url) {
+      return loadLocks[Math.floorMod(url.toString().hashCode(), loadLocks.length)];
+    }
+
+    private static long cacheBytes = 0;
+    private static long hits = 0;
+    private static long misses = 0;
+    private static long evictions = 0;
+
+    static synchronized Mat put(URL url, Mat mat) {
       ArrayList<Object> items = new ArrayList<>();
       items.add(mat);
       items.add(0.0); //reuse count
-      items.add(isFile(url) ? new File(url.getPath()).lastModified() : -1); //to detect external change
-      cache.put(url, items);
+      items.add(isFile(url) ? new File(url.getPath()).lastModified() : -1L); //to detect external change
+      items.add(getBytes(mat));
+      items.add(new HashMap<String, CompiledTarget>()); //the content prepared for matching
+      items.add(System.currentTimeMillis()); //last check for external change
+      List<Object> oldItems = cache.put(url, items);
+      if (null != oldItems) {
+        cacheBytes -= (Long) oldItems.get(ITEM_BYTES);
+      }
+      cacheBytes += (Long) items.get(ITEM_BYTES);
+      evict(url);
       return mat;
     }
 
-    static Mat get(URL key) {
-      List<Object> items = cache.get(key);
+    static synchronized Mat get(URL key) {
+      List<Object> items = getValid(key);
       if (items == null) {
+        misses++;
         return new Mat();
       }
       Object content = items.get(ITEM_MAT);
       if (null == content) {
+        misses++;
         return new Mat();
       }
+      hits++;
       Double count = (Double) items.get(ITEM_COUNT) + 1;
       if (count < Double.MAX_VALUE)
       items.set(ITEM_COUNT, count);
       return (Mat) content;
     }
 
-    static void reset() {
-      cache = Collections.synchronizedMap(new HashMap<>());
+    // dropped together with the content (file changed, reload, update, eviction)
+    static synchronized CompiledTarget getTarget(URL key, String variant) {
+      List<Object> items = getValid(key);
+      if (items == null) {
+        return null;
+      }
+      return ((Map<String, CompiledTarget>) items.get(ITEM_TARGETS)).get(variant);
     }
 
-    public static boolean isValid(URL url) {
-      List<Object> items = cache.get(url);
+    static synchronized void putTarget(URL key, String variant, CompiledTarget target) {
+      List<Object> items = getValid(key);
+      if (items != null) {
+        ((Map<String, CompiledTarget>) items.get(ITEM_TARGETS)).put(variant, target);
+      }
+    }
+
+    static synchronized void reset() {
+      cache = new LinkedHashMap<>(16, 0.75f, true);
+      cacheBytes = 0;
+      hits = 0;
+      misses = 0;
+      evictions = 0;
+    }
+
+    public static synchronized boolean isValid(URL url) {
+      List<Object> items = getValid(url);
       if (items == null) {
         return false;
       }
-      return null != items.get(0) && !((Mat) items.get(0)).empty();
+      return null != items.get(ITEM_MAT) && !((Mat) items.get(ITEM_MAT)).empty();
+    }
+
+    // an entry is dropped, if the file was changed after it was loaded
+    private static List<Object> getValid(URL url) {
+      List<Object> items = cache.get(url);
+      if (items == null || !isFile(url)) {
+        return items;
+      }
+      long now = System.currentTimeMillis();
+      if (now - (Long) items.get(ITEM_CHECKED) < lastModCheckInterval) {
+        return items;
+      }
+      items.set(ITEM_CHECKED, now);
+      long lastModified = new File(url.getPath()).lastModified();
+      if (lastModified > 0 && lastModified != (Long) items.get(ITEM_LASTMOD)) {
+        remove(url);
+        return null;
+      }
+      return items;
+    }
+
+    private static void remove(URL url) {
+      List<Object> items = cache.remove(url);
+      if (null != items) {
+        cacheBytes -= (Long) items.get(ITEM_BYTES);
+      }
+    }
+
+    // drop least recently used entries until the cache fits into Settings.ImageCache (MB)
+    // the Mats are not released: finds in other threads might still use them (freed when collected)
+    private static void evict(URL keep) {
+      if (Settings.ImageCache <= 0) {
+        return;
+      }
+      long maxBytes = Settings.ImageCache * 1024L * 1024L;
+      Iterator<Map.Entry<URL, List<Object>>> entries = cache.entrySet().iterator();
+      while (cacheBytes > maxBytes && entries.hasNext()) {
+        Map.Entry<URL, List<Object>> entry = entries.next();
+        if (entry.getKey().equals(keep)) {
+          continue;
+        }
+        entries.remove();
+        cacheBytes -= (Long) entry.getValue().get(ITEM_BYTES);
+        evictions++;
+      }
+    }
+
+    private static long getBytes(Mat mat) {
+      if (null == mat) {
+        return 0;
+      }
+      return mat.total() * mat.elemSize();
     }
 
-    public static String stats() {
+    public static synchronized String stats() {
       int count = cache.size();
-      double size = 0;
       double used = 0;
       for ( List<Object> items : cache.values()) {
-        size += ((Mat) items.get(0)).width() * ((Mat) items.get(0)).height();
-        used += (Double) items.get(1);
+        used += (Double) items.get(ITEM_COUNT);
       }
-      return String.format("ImageCache: urls(%d) size(%.0f KB) used(%.0f times)", count, size / 1000, used);
+      return String.format("ImageCache: urls(%d) size(%.0f KB of %d MB) used(%.0f times) " +
+              "hits(%d) misses(%d) evictions(%d)",
+          count, cacheBytes / 1024.0, Settings.ImageCache, used, hits, misses, evictions);
     }
   }
   //</editor-fold>
@@ -275,13 +388,24 @@ public class Image extends Element {
   //<editor-fold defaultstate="collapsed" desc="003 lastSeen">
   private Rectangle lastSeen = null;
   private double lastScore = 0.0;
+  private boolean lastSeenLoaded = false;
 
   /**
    * if the image was already found before
+   * (with Settings.LastSeenPersist also in an earlier run)
    *
    * @return the rectangle where it was found
    */
   public Rectangle getLastSeen() {
+    if (null == lastSeen && !lastSeenLoaded) {
+      lastSeenLoaded = true;
+      ImageGroup group = ImageGroup.forImage(this);
+      int[] facts = null == group ? null : group.getImageFacts(this);
+      if (null != facts) {
+        lastSeen = new Rectangle(facts[0], facts[1], facts[2], facts[3]);
+        lastScore = facts[4] / 100.0;
+      }
+    }
     return lastSeen;
   }
 
@@ -304,8 +428,27 @@ public class Image extends Element {
   public Image setLastSeen(Rectangle lastSeen, double sim) {
     this.lastSeen = lastSeen;
     this.lastScore = sim;
+    if (null != lastSeen) {
+      ImageGroup group = ImageGroup.forImage(this);
+      if (null != group) {
+        group.addImageFacts(this, lastSeen, sim);
+      }
+    }
     return this;
   }
+
+  /**
+   * Internal Use: the last seen area was searched first
+   *
+   * @param found true if the image was still there
+   */
+  public void lastSeenChecked(boolean found) {
+    ImageGroup group = ImageGroup.forImage(this);
+    if (null != group && !group.checkedImageFacts(this, found)) {
+      // aged out: search the whole region next time
+      lastSeen = null;
+    }
+  }
   //</editor-fold>
 
   //<editor-fold desc="004 Fields Pattern aspects">
@@ -435,6 +578,36 @@ public class Image extends Element {
     g2d.dispose();
     return newBimg;
   }
+
+  /**
+   * a cheap checksum of the pixels (FNV-1a over the raster data)
+   *
+   * @param bimg the image
+   * @return the checksum - equal for images with equal pixels
+   */
+  public static long checksum(BufferedImage bimg) {
+    long hash = 0xcbf29ce484222325L;
+    WritableRaster raster = bimg.getRaster();
+    DataBuffer buffer = raster.getDataBuffer();
+    if (raster.getParent() == null && buffer.getNumBanks() == 1 && buffer instanceof DataBufferByte) {
+      for (byte value : ((DataBufferByte) buffer).getData()) {
+        hash = (hash ^ value) * 0x100000001b3L;
+      }
+    } else if (raster.getParent() == null && buffer.getNumBanks() == 1 && buffer instanceof DataBufferInt) {
+      for (int value : ((DataBufferInt) buffer).getData()) {
+        hash = (hash ^ value) * 0x100000001b3L;
+      }
+    } else {
+      int[] row = new int[bimg.getWidth()];
+      for (int y = 0; y < bimg.getHeight(); y++) {
+        bimg.getRGB(0, y, row.length, 1, row, 0, row.length);
+        for (int value : row) {
+          hash = (hash ^ value) * 0x100000001b3L;
+        }
+      }
+    }
+    return hash;
+  }
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="710 isText --- to be checked">
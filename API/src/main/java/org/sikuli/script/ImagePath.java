@@ -6,6 +6,7 @@ package org.sikuli.script;
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.FileManager;
 import org.sikuli.basics.Settings;
+import org.sikuli.script.support.ImageGroup;
 import org.sikuli.script.support.RunTime;
 
 import java.io.BufferedReader;
@@ -13,11 +14,26 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.security.CodeSource;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 /**
  * maintain the path list of locations, where images will be searched.
@@ -128,6 +144,11 @@ public class ImagePath {
       imageCachePurge();
     }
     PathEntry bundlePath = getBundle();
+    for (PathEntry pathEntry : imagePaths.subList(1, imagePaths.size())) {
+      if (pathEntry != null) {
+        pathEntry.closeIndex();
+      }
+    }
     imagePaths.clear();
     imagePaths.add(bundlePath);
   }
@@ -223,6 +244,47 @@ public class ImagePath {
       return new File(getPath()).exists();
     }
 
+    private PathIndex index = null;
+
+    /**
+     * @param imageFileName relative file name
+     * @return the URL of the image in this path entry or null if not found
+     */
+    public URL find(String imageFileName) {
+      if (!Settings.ImagePathIndex) {
+        return probe(imageFileName);
+      }
+      PathIndex pathIndex;
+      synchronized (this) {
+        if (null == index) {
+          index = new PathIndex(this);
+        }
+        pathIndex = index;
+      }
+      return pathIndex.find(imageFileName);
+    }
+
+    // without index: each lookup checks the file system or the net
+    private URL probe(String imageFileName) {
+      String proto = pathURL.getProtocol();
+      if ("file".equals(proto)) {
+        File imageFile = new File(pathURL.getPath(), imageFileName);
+        if (imageFile.exists()) {
+          return Element.createURL(imageFile);
+        }
+      } else if ("jar".equals(proto) || proto.startsWith("http")) { //TODO imagepath jar and net
+        return FileManager.getURLForContentFromURL(pathURL, imageFileName);
+      }
+      return null;
+    }
+
+    synchronized void closeIndex() {
+      if (null != index) {
+        index.close();
+        index = null;
+      }
+    }
+
     @Override
     public boolean equals(Object other) {
       if (pathURL == null) {
@@ -516,6 +578,7 @@ public class ImagePath {
         continue;
       }
       it.remove();
+      pathEntry.closeIndex();
       imageCachePurge();
     }
     return true;
@@ -577,6 +640,10 @@ public class ImagePath {
   }
 
   public static File setBundleFolder(File folder) {
+    if (null != folder && null != threadBundle.get()) {
+      // a script running at the same time as others changes only its own bundle path
+      return setThreadBundleFolder(folder);
+    }
     try {
       folder = folder.getCanonicalFile();
     } catch (IOException e) {
@@ -593,6 +660,7 @@ public class ImagePath {
       if (pathEntry.isValid()) {
         setBundle(pathEntry);
         log(lvl, "new BundlePath: %s", pathEntry);
+        ImageGroup.forFolder(pathEntry.getFile()); // the persisted lastSeen (if switched on)
         return pathEntry.getFile();
       }
     }
@@ -600,11 +668,90 @@ public class ImagePath {
   }
 
   static PathEntry getBundle() {
+    PathEntry bundle = threadBundle.get();
+    if (null != bundle) {
+      return bundle;
+    }
     return imagePaths.get(0);
   }
 
+  // the bundle path of a script running at the same time as others
+  // (not inherited: pool threads started by a script would keep it forever - see withThreadBundle())
+  private static final ThreadLocal<PathEntry> threadBundle = new ThreadLocal<>();
+
+  /**
+   * INTERNAL USE: a task run in another thread (e.g. sub-finds in the FindPool)
+   * uses the bundle path of the thread, that created it
+   *
+   * @param task the task
+   * @return the task running with the current thread's bundle path (the task itself if there is none)
+   */
+  public static Runnable withThreadBundle(Runnable task) {
+    PathEntry bundle = threadBundle.get();
+    if (null == bundle) {
+      return task;
+    }
+    return () -> {
+      PathEntry before = threadBundle.get();
+      threadBundle.set(bundle);
+      try {
+        task.run();
+      } finally {
+        // the index belongs to the creating thread: not closed here
+        if (null == before) {
+          threadBundle.remove();
+        } else {
+          threadBundle.set(before);
+        }
+      }
+    };
+  }
+
+  /**
+   * INTERNAL USE: the bundle path only for the current thread,
+   * the global bundle path (entry 0) is not changed (scripts running at the same time)
+   *
+   * @param folder the bundle folder (null: the global bundle path again)
+   * @return the bundle folder or null if not valid
+   */
+  public static File setThreadBundleFolder(File folder) {
+    PathEntry oldBundle = threadBundle.get();
+    if (null == folder) {
+      threadBundle.remove();
+      if (null != oldBundle) {
+        oldBundle.closeIndex();
+      }
+      return null;
+    }
+    try {
+      folder = folder.getCanonicalFile();
+    } catch (IOException e) {
+      log(-1, "canonical file problem: %s", folder);
+      return null;
+    }
+    if (null != oldBundle && oldBundle.equals(folder)) {
+      return folder;
+    }
+    if (folder.exists()) {
+      PathEntry pathEntry = new PathEntry(folder);
+      if (pathEntry.isValid()) {
+        threadBundle.set(pathEntry);
+        if (null != oldBundle) {
+          oldBundle.closeIndex();
+        }
+        log(lvl, "new BundlePath (%s): %s", Thread.currentThread().getName(), pathEntry);
+        ImageGroup.forFolder(pathEntry.getFile());
+        return pathEntry.getFile();
+      }
+    }
+    return null;
+  }
+
   private static void setBundle(PathEntry pathEntry) {
-    imagePaths.set(0, pathEntry);
+    PathEntry oldBundle = imagePaths.set(0, pathEntry);
+    if (null != oldBundle && oldBundle != pathEntry) {
+      oldBundle.closeIndex();
+    }
   }
 
   /**
@@ -635,25 +782,20 @@ public class ImagePath {
    */
   public static URL find(File imageFile) {
     URL fURL = null;
-    String proto = "";
     String imageFileName = imageFile.getPath();
     if (imageFile.isAbsolute() || imageFileName.startsWith("\\")) {
       fURL = Element.createURL(imageFile);
     } else {
-      for (PathEntry path : getPaths()) {
+      PathEntry[] paths;
+      synchronized (imagePaths) {
+        paths = imagePaths.toArray(new PathEntry[0]);
+      }
+      paths[0] = getBundle();
+      for (PathEntry path : paths) {
         if (path == null) {
           continue;
         }
-        proto = path.pathURL.getProtocol();
-        if ("file".equals(proto)) {
-          imageFile = new File(path.pathURL.getPath(), imageFileName);
-          if (imageFile.exists()) {
-            fURL = Element.createURL(imageFile);
-            break;
-          }
-        } else if ("jar".equals(proto) || proto.startsWith("http")) { //TODO imagepath jar and net
-          fURL = FileManager.getURLForContentFromURL(path.pathURL, imageFileName);
-        }
+        fURL = path.find(imageFileName);
         if (fURL != null) {
           break;
         }
@@ -735,4 +877,193 @@ public class ImagePath {
     return false;
   }
   //</editor-fold>
+
+  //<editor-fold desc="11 path index">
+
+  /**
+   * INTERNAL USE: the image files found (or not found) in a path entry
+   * <ul>
+   * <li>folder: each name is looked up once, the result is kept, until the folder changes (WatchService)</li>
+   * <li>jar: the content is listed once</li>
+   * <li>http: each name is checked once</li>
+   * </ul>
+   * <p>on macOS the WatchService of Java polls the folders (about every 10 seconds):
+   * a file created or deleted there might be reported as before for this time.</p>
+   */
+  static class PathIndex {
+
+    private static WatchService watcher = null;
+    private static final Map<WatchKey, PathIndex> watchedBy = new ConcurrentHashMap<>();
+
+    private final PathEntry pathEntry;
+    private final Map<String, Optional<URL>> lookups = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> watched = new ConcurrentHashMap<>();
+    // counted up before lookups are forgotten: a lookup is only kept, if nothing changed while looking
+    private final Map<Path, AtomicLong> folderChanges = new ConcurrentHashMap<>();
+    private final AtomicLong allChanges = new AtomicLong(0);
+    // null: not listed (yet) - empty: listing not possible
+    private Set<String> jarContent = null;
+    private volatile boolean closed = false;
+
+    PathIndex(PathEntry pathEntry) {
+      this.pathEntry = pathEntry;
+    }
+
+    URL find(String imageFileName) {
+      Optional<URL> known = lookups.get(imageFileName);
+      if (null != known) {
+        return known.orElse(null);
+      }
+      URL fURL;
+      Path folder = null;
+      long changes = 0;
+      if (pathEntry.isFile()) {
+        File imageFile = new File(pathEntry.pathURL.getPath(), imageFileName);
+        // watched before looking, so a change while looking is not missed
+        if (!watch(imageFile.getParentFile())) {
+          return pathEntry.probe(imageFileName);
+        }
+        folder = imageFile.getParentFile().toPath();
+        changes = getChanges(folder);
+        fURL = imageFile.exists() ? Element.createURL(imageFile) : null;
+      } else if (pathEntry.isJar()) {
+        Set<String> content = getJarContent();
+        if (content.isEmpty()) {
+          return pathEntry.probe(imageFileName);
+        }
+        fURL = content.contains(imageFileName.replace("\\", "/")) ? pathEntry.probe(imageFileName) : null;
+      } else {
+        fURL = pathEntry.probe(imageFileName);
+      }
+      if (closed) {
+        return fURL;
+      }
+      Optional<URL> lookup = Optional.ofNullable(fURL);
+      lookups.put(imageFileName, lookup);
+      if (null != folder && getChanges(folder) != changes) {
+        // changed while looking: the lookup might already be outdated
+        lookups.remove(imageFileName, lookup);
+      }
+      return fURL;
+    }
+
+    private long getChanges(Path folder) {
+      return allChanges.get() + folderChanges.computeIfAbsent(folder, dir -> new AtomicLong(0)).get();
+    }
+
+    private void forgetAll() {
+      allChanges.incrementAndGet();
+      lookups.clear();
+    }
+
+    private synchronized Set<String> getJarContent() {
+      if (null != jarContent) {
+        return jarContent;
+      }
+      jarContent = new HashSet<>();
+      String spec = pathEntry.pathURL.getPath();
+      int separator = spec.indexOf("!/");
+      if (separator < 0) {
+        return jarContent;
+      }
+      String prefix = spec.substring(separator + 2);
+      if (!prefix.isEmpty() && !prefix.endsWith("/")) {
+        prefix += "/";
+      }
+      try (JarFile jar = new JarFile(new File(new URL(spec.substring(0, separator)).toURI()))) {
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+          String name = entries.nextElement().getName();
+          if (name.startsWith(prefix) && !name.endsWith("/")) {
+            jarContent.add(name.substring(prefix.length()));
+          }
+        }
+        log(lvl + 1, "index: %d files in %s", jarContent.size(), pathEntry.pathURL);
+      } catch (Exception e) {
+        log(-1, "index: jar not listed: %s (%s)", pathEntry.pathURL, e.getMessage());
+      }
+      return jarContent;
+    }
+
+    private boolean watch(File folder) {
+      if (closed || null == folder || !folder.isDirectory()) {
+        return false;
+      }
+      Path dir = folder.toPath();
+      if (watched.containsKey(dir)) {
+        return true;
+      }
+      try {
+        WatchKey key = dir.register(getWatcher(), StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedBy.put(key, this);
+        watched.put(dir, key);
+        return true;
+      } catch (IOException e) {
+        log(-1, "index: folder not watched: %s (%s)", folder, e.getMessage());
+        return false;
+      }
+    }
+
+    private static synchronized WatchService getWatcher() throws IOException {
+      if (null == watcher) {
+        watcher = FileSystems.getDefault().newWatchService();
+        Thread thread = new Thread(PathIndex::watchLoop, "ImagePath-watch");
+        thread.setDaemon(true);
+        thread.start();
+      }
+      return watcher;
+    }
+
+    private static void watchLoop() {
+      while (true) {
+        WatchKey key;
+        try {
+          key = watcher.take();
+        } catch (InterruptedException e) {
+          return;
+        }
+        List<WatchEvent<?>> events = key.pollEvents();
+        PathIndex pathIndex = watchedBy.get(key);
+        Path dir = (Path) key.watchable();
+        boolean valid = key.reset();
+        if (null == pathIndex) {
+          continue;
+        }
+        if (!valid) {
+          // the folder itself is gone
+          watchedBy.remove(key);
+          pathIndex.watched.remove(dir);
+          pathIndex.forgetAll();
+          continue;
+        }
+        for (WatchEvent<?> event : events) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            pathIndex.forgetAll();
+            break;
+          }
+        }
+        pathIndex.changed(dir);
+      }
+    }
+
+    // forget the lookups in the changed folder
+    private void changed(Path dir) {
+      folderChanges.computeIfAbsent(dir, folder -> new AtomicLong(0)).incrementAndGet();
+      File root = new File(pathEntry.pathURL.getPath());
+      lookups.keySet().removeIf(name -> dir.equals(new File(root, name).getParentFile().toPath()));
+      log(lvl + 1, "index: changed: %s", dir);
+    }
+
+    void close() {
+      closed = true;
+      for (WatchKey key : watched.values()) {
+        key.cancel();
+        watchedBy.remove(key);
+      }
+      watched.clear();
+      forgetAll();
+    }
+  }
+  //</editor-fold>
 }
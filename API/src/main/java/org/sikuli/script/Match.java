@@ -3,11 +3,9 @@
  */
 package org.sikuli.script;
 
-import org.opencv.core.Core;
 import org.opencv.core.Mat;
-import org.opencv.core.Range;
-import org.opencv.core.Scalar;
 import org.sikuli.script.support.IScreen;
+import org.sikuli.script.support.SXOpenCV;
 
 import java.awt.*;
 import java.util.ArrayList;
@@ -446,7 +444,8 @@ public class Match extends Region implements Matches, Comparable<Match> {
   //</editor-fold>
 
   //<editor-fold desc="21 Iterator iterate">
-  private Core.MinMaxLocResult resultMinMax = null;
+  private List<Match> peaks = null;
+  private int peakIndex = 0;
 
   private double currentScore = -1;
   double targetScore = -1;
@@ -454,41 +453,35 @@ public class Match extends Region implements Matches, Comparable<Match> {
   double scoreMeanDiff = -1;
   int matchCount = 0;
 
-  private int currentX = -1;
-  private int currentY = -1;
-  private int targetW = -1;
-  private int targetH = -1;
-  private int marginX = -1;
-  private int marginY = -1;
-
   @Override
   public boolean hasNext() {
-    resultMinMax = Core.minMaxLoc(result);
-    currentScore = resultMinMax.maxVal;
-    currentX = (int) resultMinMax.maxLoc.x;
-    currentY = (int) resultMinMax.maxLoc.y;
-    if (lastScore < 0) {
-      lastScore = currentScore;
+    if (SX.isNull(result)) {
+      return false;
+    }
+    if (SX.isNull(peaks)) {
       targetScore = image.similarity();
-      targetW = image.w;
-      targetH = image.h;
-      marginX = (int) (targetW * 0.8);
-      marginY = (int) (targetH * 0.8);
+      peaks = SXOpenCV.doFindAllPeaks(result, targetScore, image.w, image.h);
+      peakIndex = 0;
       matchCount = 0;
     }
+    if (peakIndex >= peaks.size()) {
+      return false;
+    }
+    currentScore = peaks.get(peakIndex).score();
+    if (lastScore < 0) {
+      lastScore = currentScore;
+    }
     boolean isMatch = false;
-    if (currentScore > targetScore) {
-      if (matchCount == 0) {
-        isMatch = true;
-      } else if (matchCount == 1) {
-        scoreMeanDiff = lastScore - currentScore;
+    if (matchCount == 0) {
+      isMatch = true;
+    } else if (matchCount == 1) {
+      scoreMeanDiff = lastScore - currentScore;
+      isMatch = true;
+    } else {
+      double scoreDiff = lastScore - currentScore;
+      if (scoreDiff <= (scoreMeanDiff + 0.01)) { // 0.005
+        scoreMeanDiff = ((scoreMeanDiff * matchCount) + scoreDiff) / (matchCount + 1);
         isMatch = true;
-      } else {
-        double scoreDiff = lastScore - currentScore;
-        if (scoreDiff <= (scoreMeanDiff + 0.01)) { // 0.005
-          scoreMeanDiff = ((scoreMeanDiff * matchCount) + scoreDiff) / (matchCount + 1);
-          isMatch = true;
-        }
       }
     }
     return isMatch;
@@ -498,27 +491,12 @@ public class Match extends Region implements Matches, Comparable<Match> {
   public Match next() {
     Match match = null;
     if (hasNext()) {
-      match = new Match(currentX, currentY, targetW, targetH, currentScore, null);
+      match = peaks.get(peakIndex++);
       matchCount++;
       lastScore = currentScore;
-      //int margin = getPurgeMargin();
-      Range rangeX = new Range(Math.max(currentX - marginX, 0), Math.min(currentX + marginX, result.width()));
-      Range rangeY = new Range(Math.max(currentY - marginY, 0), Math.min(currentY + marginY, result.height()));
-      result.colRange(rangeX).rowRange(rangeY).setTo(new Scalar(0f));
     }
     return match;
   }
-
-  private int getPurgeMargin() {
-    if (currentScore < 0.95) {
-      return 4;
-    } else if (currentScore < 0.85) {
-      return 8;
-    } else if (currentScore < 0.71) {
-      return 16;
-    }
-    return 2;
-  }
   //</editor-fold>
 
   //<editor-fold desc="025 as List / Match">
@@ -18,7 +18,9 @@ import java.util.*;
 /**
  * Static helper class for OCR via Tess4J/Tesseract.
  * <p>
- * The methods in this class are not threadsafe.
+ * Reading text can be done in parallel threads (each request uses its own Tesseract engine,
+ * initialized engines are reused for the same options - see {@link #engineStats()}).
+ * Changing the (global) options is not threadsafe.
  * @see <a href="https://sikulix-2014.readthedocs.io/en/latest/textandocr.html">SikuliX docs: Text and OCR</a>
  */
 public class OCR {
@@ -125,6 +127,23 @@ public class OCR {
   public static void status() {
     Debug.logp("Global settings " + globalOptions().toString());
   }
+
+  /**
+   * Statistics of the reused Tesseract engines (hits, misses, evictions, mean time per request).
+   *
+   * @return the statistics as text
+   */
+  public static String engineStats() {
+    return TextRecognizer.engineStats();
+  }
+
+  /**
+   * Closes the currently idle Tesseract engines (releasing their memory).
+   * <p>Engines are created again as needed.
+   */
+  public static void closeEngines() {
+    TextRecognizer.closeEngines();
+  }
   //</editor-fold>
 
   //<editor-fold desc="20 Read text">
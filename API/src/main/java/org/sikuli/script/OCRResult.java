@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * INTERNAL USE: the text found by one Tesseract pass over an image as hierarchy block - line - word
+ * <p>the boxes are relative to the image given to OCR (already scaled back, if the image was resized for OCR).</p>
+ * <p>The lists of matches are created new with each call, so they can be relocated by the caller
+ * without affecting a cached result.</p>
+ */
+public class OCRResult {
+
+  /**
+   * a word or a line: the text, its confidence (0 ... 100) and its bounding box
+   */
+  protected static class Item {
+    final String text;
+    final double confidence;
+    final Rectangle box;
+
+    Item(String text, double confidence, Rectangle box) {
+      this.text = text;
+      this.confidence = confidence;
+      this.box = box;
+    }
+
+    Match toMatch() {
+      return new Match(new Rectangle(box), confidence, text);
+    }
+  }
+
+  /**
+   * a line with its words and the number of the containing text block
+   */
+  protected static class Line {
+    final Item item;
+    final int block;
+    final List<Item> words = new ArrayList<>();
+
+    Line(Item item, int block) {
+      this.item = item;
+      this.block = block;
+    }
+  }
+
+  private final List<Line> lines = new ArrayList<>();
+  private int blocks = 0;
+
+  protected Line addLine(Item line, boolean newBlock) {
+    if (newBlock || blocks == 0) {
+      blocks++;
+    }
+    Line newLine = new Line(line, blocks - 1);
+    lines.add(newLine);
+    return newLine;
+  }
+
+  protected List<Line> lines() {
+    return Collections.unmodifiableList(lines);
+  }
+
+  /**
+   * @return number of text blocks
+   */
+  public int getBlockCount() {
+    return blocks;
+  }
+
+  /**
+   * @return number of lines
+   */
+  public int getLineCount() {
+    return lines.size();
+  }
+
+  /**
+   * @return all lines as text matches (top left to bottom right)
+   */
+  public List<Match> getLines() {
+    List<Match> matches = new ArrayList<>();
+    for (Line line : lines) {
+      matches.add(line.item.toMatch());
+    }
+    return matches;
+  }
+
+  /**
+   * @param block number of the text block
+   * @return the lines of the given block as text matches
+   */
+  public List<Match> getLines(int block) {
+    List<Match> matches = new ArrayList<>();
+    for (Line line : lines) {
+      if (line.block == block) {
+        matches.add(line.item.toMatch());
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * @return all words as text matches (top left to bottom right)
+   */
+  public List<Match> getWords() {
+    List<Match> matches = new ArrayList<>();
+    for (Line line : lines) {
+      for (Item word : line.words) {
+        matches.add(word.toMatch());
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * @param nLine number of the line as in getLines()
+   * @return the words of the given line as text matches
+   */
+  public List<Match> getWordsInLine(int nLine) {
+    List<Match> matches = new ArrayList<>();
+    if (nLine >= 0 && nLine < lines.size()) {
+      for (Item word : lines.get(nLine).words) {
+        matches.add(word.toMatch());
+      }
+    }
+    return matches;
+  }
+
+  @Override
+  public String toString() {
+    int words = 0;
+    for (Line line : lines) {
+      words += line.words.size();
+    }
+    return String.format("OCRResult: blocks: %d lines: %d words: %d", blocks, lines.size(), words);
+  }
+}
@@ -40,6 +40,7 @@ public class Pattern {
     offset.y = pattern.offset.y;
     maskImage = pattern.getMask();
     resizeFactor = pattern.resizeFactor;
+    searchDownsized = pattern.searchDownsized;
     waitAfter = pattern.waitAfter;
   }
 
@@ -97,6 +98,32 @@ public class Pattern {
   private float resizeFactor = 0;
   //</editor-fold>
 
+  //<editor-fold desc="search downsized">
+  private Boolean searchDownsized = null;
+
+  /**
+   * search this pattern in a downsized version of the image first
+   * (overrides Settings.SearchDownsized for this pattern)
+   *
+   * @param state true or false
+   * @return the Pattern object itself
+   */
+  public Pattern searchDownsized(boolean state) {
+    searchDownsized = state;
+    return this;
+  }
+
+  /**
+   * @return the per pattern setting if set, Settings.SearchDownsized otherwise
+   */
+  public boolean isSearchDownsized() {
+    if (searchDownsized == null) {
+      return Settings.SearchDownsized;
+    }
+    return searchDownsized;
+  }
+  //</editor-fold>
+
   //<editor-fold desc="mask">
   public <SUFEBMP> Pattern mask(SUFEBMP what) {
     Image image = new Image(what, Element.asMaskImage());
@@ -13,9 +13,12 @@ import org.sikuli.util.Highlight;
 import java.awt.*;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A Region is a rectangular area on a screen.
@@ -1701,7 +1704,7 @@ public class Region extends Element {
       return null;
     }
     Match mResult = null;
-    List<Match> mList = findAnyCollect(pList);
+    List<Match> mList = findAnyCollect(pList, Settings.FindBestFirstScore);
     if (mList.size() > 0) {
       Collections.sort(mList, (m1, m2) -> {
         double ms = m2.score() - m1.score();
@@ -1841,6 +1844,12 @@ public class Region extends Element {
    * waiting.
    */
   private <PSI> Match doFind(PSI ptn, Image img, RepeatableFind repeating) {
+    ScriptAbort.check();
+    // the screen might limit the finds running at the same time (VNC sessions)
+    return getScreen().runFind(() -> doFindScan(ptn, img, repeating));
+  }
+
+  private <PSI> Match doFindScan(PSI ptn, Image img, RepeatableFind repeating) {
     Finder finder = null;
     Match match = null;
     //IScreen screen = null;
@@ -1853,7 +1862,11 @@ public class Region extends Element {
     }
     if (repeating != null && repeating._finder != null) {
       finder = repeating._finder;
-      simg = getScreen().capture(this);
+      simg = repeating.frame.capture(this);
+      if (repeating.frame.isUnchanged()) {
+        // same pixels as in the last scan - same result
+        return repeating._match;
+      }
       finder.setScreenImage(simg);
       //TODO finder.setRepeating();
       if (Settings.FindProfiling) {
@@ -1872,7 +1885,7 @@ public class Region extends Element {
         } else {
           if (img.isValid()) {
             lastSearchTime = (new Date()).getTime();
-            finder = checkLastSeenAndCreateFinder(img, findTimeout, null);
+            finder = checkLastSeenAndCreateFinder(repeating, img, findTimeout, null);
             if (!finder.hasNext()) {
               runFinder(finder, img);
             }
@@ -1890,7 +1903,7 @@ public class Region extends Element {
       } else if (ptn instanceof Pattern) {
         if (img.isValid()) {
           lastSearchTime = (new Date()).getTime();
-          finder = checkLastSeenAndCreateFinder(img, findTimeout, (Pattern) ptn);
+          finder = checkLastSeenAndCreateFinder(repeating, img, findTimeout, (Pattern) ptn);
           if (!finder.hasNext()) {
             runFinder(finder, ptn);
           }
@@ -1898,7 +1911,7 @@ public class Region extends Element {
       } else if (ptn instanceof Image || ptn instanceof ScreenImage) {
         if (img.isValid()) {
           lastSearchTime = (new Date()).getTime();
-          finder = checkLastSeenAndCreateFinder(img, findTimeout, null);
+          finder = checkLastSeenAndCreateFinder(repeating, img, findTimeout, null);
           if (!finder.hasNext()) {
             runFinder(finder, img);
           }
@@ -1942,8 +1955,12 @@ public class Region extends Element {
     }
   }
 
-  private Finder checkLastSeenAndCreateFinder(Image img, double findTimeout, Pattern ptn) {
-    return doCheckLastSeenAndCreateFinder(null, img, findTimeout, ptn);
+  private Finder checkLastSeenAndCreateFinder(Repeatable repeating, Image img, double findTimeout, Pattern ptn) {
+    ScreenImage base = null;
+    if (repeating != null) {
+      base = repeating.frame.capture(this);
+    }
+    return doCheckLastSeenAndCreateFinder(base, img, findTimeout, ptn);
   }
 
   private Finder doCheckLastSeenAndCreateFinder(ScreenImage base, Image img, double findTimeout, Pattern ptn) {
@@ -1958,6 +1975,8 @@ public class Region extends Element {
         if (!(ptn.getSimilar() > score)) {
           shouldCheckLastSeen = true;
         }
+      } else if (Settings.LastSeenPersist && !(img.similarity() > score)) {
+        shouldCheckLastSeen = true;
       }
     }
     if (shouldCheckLastSeen) {
@@ -1977,9 +1996,11 @@ public class Region extends Element {
         }
         if (f.hasNext()) {
           log(logLevel, "checkLastSeen: still there");
+          img.lastSeenChecked(true);
           return f;
         }
         log(logLevel, "checkLastSeen: not there");
+        img.lastSeenChecked(false);
       }
     }
     return new Finder(base, this);
@@ -1990,12 +2011,22 @@ public class Region extends Element {
    * without waiting.
    */
   private <PSI> Matches doFindAll(PSI ptn, RepeatableFindAll repeating) {
+    ScriptAbort.check();
+    return getScreen().runFind(() -> doFindAllScan(ptn, repeating));
+  }
+
+  private <PSI> Matches doFindAllScan(PSI ptn, RepeatableFindAll repeating) {
     boolean findingText = false;
     Finder finder = null;
     String someText = "";
     if (repeating != null && repeating._finder != null) {
       finder = repeating._finder;
-      finder.setScreenImage(getScreen().capture(x, y, w, h));
+      ScreenImage simg = repeating.frame.capture(this);
+      if (repeating.frame.isUnchanged()) {
+        // same pixels as in the last (failed) scan - same result
+        return null;
+      }
+      finder.setScreenImage(simg);
       //TODO finder.setRepeating();
       finder.findAllRepeat();
     } else {
@@ -2007,7 +2038,7 @@ public class Region extends Element {
         } else {
           img = Image.create((String) ptn);
           if (img.isValid()) {
-            finder = new Finder(getScreen().capture(x, y, w, h), this);
+            finder = new Finder(captureForFindAll(repeating), this);
             finder.findAll(img);
           } else if (img.isText()) {
             findingText = true;
@@ -2021,13 +2052,13 @@ public class Region extends Element {
       } else if (ptn instanceof Pattern) {
         if (((Pattern) ptn).isValid()) {
           img = ((Pattern) ptn).getImage();
-          finder = new Finder(getScreen().capture(x, y, w, h), this);
+          finder = new Finder(captureForFindAll(repeating), this);
           finder.findAll((Pattern) ptn);
         }
       } else if (ptn instanceof Image) {
         if (((Image) ptn).isValid()) {
           img = ((Image) ptn);
-          finder = new Finder(getScreen().capture(x, y, w, h), this);
+          finder = new Finder(captureForFindAll(repeating), this);
           finder.findAll((Image) ptn);
         }
       } else {
@@ -2044,10 +2075,53 @@ public class Region extends Element {
     return null;
   }
 
+  private ScreenImage captureForFindAll(Repeatable repeating) {
+    if (repeating != null) {
+      return repeating.frame.capture(this);
+    }
+    return getScreen().capture(x, y, w, h);
+  }
+
 
   // Repeatable Find ////////////////////////////////
+
+  /**
+   * the captures of a repeated find (wait, exists, waitVanish, findAll with wait):
+   * a checksum of the pixels tells, whether the screen has changed since the last scan
+   * (an unchanged frame is neither converted nor searched again - the returned image shares the last content).
+   * <p>The content is never changed after the conversion: it is not reused for the next frame,
+   * since the returned images live on (Screen.lastScreenImage, images of matches).
+   * Only the pixel buffers of the conversion are pooled (SXOpenCV).</p>
+   */
+  private static class RepeatFrame {
+    private Mat content = null;
+    private long checksum = 0;
+    private boolean unchanged = false;
+
+    ScreenImage capture(Region region) {
+      ScreenImage simg = region.getScreen().capture(region);
+      BufferedImage bimg = simg.getBufferedImage();
+      long nextChecksum = Image.checksum(bimg);
+      unchanged = null != content && nextChecksum == checksum
+          && content.cols() == bimg.getWidth() && content.rows() == bimg.getHeight();
+      checksum = nextChecksum;
+      if (!unchanged) {
+        // never converted in place: the content of returned images stays as it is
+        // (Screen.lastScreenImage, images of earlier matches)
+        content = SXOpenCV.makeMat(bimg);
+      }
+      simg.setContent(content);
+      return simg;
+    }
+
+    boolean isUnchanged() {
+      return unchanged;
+    }
+  }
+
   private abstract class Repeatable {
 
+    RepeatFrame frame = new RepeatFrame();
 
     private double findTimeout;
 
@@ -2068,8 +2142,11 @@ public class Region extends Element {
       int MaxTimePerScan = (int) (1000.0 / getWaitScanRate());
       int timeoutMilli = (int) (timeout * 1000);
       long begin_t = (new Date()).getTime();
+      IScreen screen = getScreen();
       do {
         long before_find = (new Date()).getTime();
+        // screens knowing about updates (VNC): the next scan only after the region was updated
+        long updates = null == screen ? -1 : screen.getUpdateCount();
         run();
         if (ifSuccessful()) {
           return true;
@@ -2077,7 +2154,12 @@ public class Region extends Element {
           return false;
         }
         long after_find = (new Date()).getTime();
-        if (after_find - before_find < MaxTimePerScan) {
+        if (updates > -1) {
+          long remaining = begin_t + timeoutMilli - after_find;
+          if (remaining > 0) {
+            screen.waitForUpdate(getRect(), updates, remaining);
+          }
+        } else if (after_find - before_find < MaxTimePerScan) {
           getRobotForElement().delay((int) (MaxTimePerScan - (after_find - before_find)));
         } else {
           getRobotForElement().delay(10);
@@ -2167,59 +2249,26 @@ public class Region extends Element {
     }
   }
 
-  private class SubFindRun implements Runnable {
-
-    Match[] mArray;
-    ScreenImage base;
-    Object target;
-    Region reg;
-    boolean finished = false;
-    int subN;
-
-    public SubFindRun(Match[] pMArray, int pSubN,
-                      ScreenImage pBase, Object pTarget, Region pReg) {
-      subN = pSubN;
-      base = pBase;
-      target = pTarget;
-      reg = pReg;
-      mArray = pMArray;
-    }
-
-    @Override
-    public void run() {
-      try {
-        mArray[subN] = reg.findInImage(base, target);
-      } catch (Exception ex) {
-        log(-1, "findAnyCollect: image file not found:\n", target);
-      }
-      hasFinished(true);
-    }
-
-    public boolean hasFinished() {
-      return hasFinished(false);
-    }
-
-    public synchronized boolean hasFinished(boolean state) {
-      if (state) {
-        finished = true;
-      }
-      return finished;
-    }
-  }
-
-  private Match findInImage(ScreenImage base, Object target) throws IOException {
+  // cancelled: checked between the stages (load image, check last seen, search), a running search is not stopped
+  private Match findInImage(ScreenImage base, Object target, AtomicBoolean cancelled) throws IOException {
     Finder finder = null;
     Match match = null;
     boolean findingText = false;
     Image img = null;
+    if (cancelled.get()) {
+      return null;
+    }
     if (target instanceof String) {
       if (((String) target).startsWith("\t") && ((String) target).endsWith("\t")) {
         findingText = true;
       } else {
         img = Image.create((String) target);
+        if (cancelled.get()) {
+          return null;
+        }
         if (img.isValid()) {
           finder = doCheckLastSeenAndCreateFinder(base, img, 0.0, null);
-          if (!finder.hasNext()) {
+          if (!finder.hasNext() && !cancelled.get()) {
             runFinder(finder, img);
           }
         } else if (img.isText()) {
@@ -2229,6 +2278,9 @@ public class Region extends Element {
         }
       }
       if (findingText) {
+          if (cancelled.get()) {
+            return null;
+          }
           log(logLevel, "findInImage: Switching to TextSearch");
           finder = new Finder(getScreen().capture(x, y, w, h), this);
           finder.findText((String) target);
@@ -2237,7 +2289,7 @@ public class Region extends Element {
       if (((Pattern) target).isValid()) {
         img = ((Pattern) target).getImage();
         finder = doCheckLastSeenAndCreateFinder(base, img, 0.0, (Pattern) target);
-        if (!finder.hasNext()) {
+        if (!finder.hasNext() && !cancelled.get()) {
           runFinder(finder, target);
         }
       } else {
@@ -2247,7 +2299,7 @@ public class Region extends Element {
       if (((Image) target).isValid()) {
         img = ((Image) target);
         finder = doCheckLastSeenAndCreateFinder(base, img, 0.0, null);
-        if (!finder.hasNext()) {
+        if (!finder.hasNext() && !cancelled.get()) {
           runFinder(finder, img);
         }
       } else {
@@ -2266,32 +2318,69 @@ public class Region extends Element {
   }
 
   private List<Match> findAnyCollect(List<Object> pList) {
+    return findAnyCollect(pList, 0);
+  }
+
+  /**
+   * the targets are searched in parallel using the shared FindPool<br>
+   * cancelling (stopScore): searches not yet started are skipped, running ones stop at their next stage
+   * (image loaded, last seen checked) - a search already running in OpenCV (matchTemplate) is not interrupted
+   * and still occupies its pool thread until finished (the result is ignored)
+   *
+   * @param pList     targets
+   * @param stopScore &gt; 0: the first match with at least this score wins, the remaining searches are cancelled
+   * @return the matches
+   */
+  private List<Match> findAnyCollect(List<Object> pList, double stopScore) {
     List<Match> mList = new ArrayList<Match>();
     if (pList == null) {
       return mList;
     }
     Match[] mArray = new Match[pList.size()];
-    SubFindRun[] theSubs = new SubFindRun[pList.size()];
-    int nobj = 0;
+    List<CompletableFuture<Match>> theSubs = new ArrayList<>();
+    CompletableFuture<Match> firstGood = new CompletableFuture<>();
+    AtomicBoolean cancelled = new AtomicBoolean(false);
     ScreenImage base = getScreen().capture(this);
     for (Object obj : pList) {
-      mArray[nobj] = null;
       if (obj instanceof Pattern || obj instanceof String || obj instanceof Image) {
-        theSubs[nobj] = new SubFindRun(mArray, nobj, base, obj, this);
-        new Thread(theSubs[nobj]).start();
+        CompletableFuture<Match> sub = CompletableFuture.supplyAsync(() -> {
+          try {
+            return findInImage(base, obj, cancelled);
+          } catch (Exception ex) {
+            log(-1, "findAnyCollect: image file not found:\n", obj);
+          }
+          return null;
+        }, FindPool.get());
+        if (stopScore > 0) {
+          sub.thenAccept(match -> {
+            if (match != null && match.score() >= stopScore) {
+              cancelled.set(true); // as early as possible: the other searches stop at their next stage
+              firstGood.complete(match);
+            }
+          });
+        }
+        theSubs.add(sub);
+      } else {
+        theSubs.add(CompletableFuture.completedFuture(null));
       }
-      nobj++;
     }
     Debug.log(logLevel, "findAnyCollect: waiting for SubFindRuns");
-    nobj = 0;
-    boolean all = false;
-    while (!all) {
-      all = true;
-      for (SubFindRun sub : theSubs) {
-        all &= sub.hasFinished();
+    CompletableFuture<Void> all = CompletableFuture.allOf(theSubs.toArray(new CompletableFuture[0]));
+    CompletableFuture.anyOf(all, firstGood).join();
+    if (firstGood.isDone()) {
+      for (CompletableFuture<Match> sub : theSubs) {
+        sub.cancel(false);
       }
+      Debug.log(logLevel, "findAnyCollect: first match wins: %s", firstGood.join());
     }
     Debug.log(logLevel, "findAnyCollect: SubFindRuns finished");
+    int nobj = 0;
+    for (CompletableFuture<Match> sub : theSubs) {
+      if (sub.isDone() && !sub.isCancelled()) {
+        mArray[nobj] = sub.join();
+      }
+      nobj++;
+    }
     nobj = 0;
     for (Match match : mArray) {
       if (match != null) {
@@ -2786,9 +2875,11 @@ public class Region extends Element {
     regionObserver.initialize();
     observing = true;
     Observing.addRunningObserver(this);
+    IScreen screen = getScreen();
     while (observing && stop_t > (new Date()).getTime()) {
       long before_find = (new Date()).getTime();
-      ScreenImage simg = getScreen().capture(x, y, w, h);
+      long updates = screen.getUpdateCount();
+      ScreenImage simg = screen.capture(x, y, w, h);
       if (!regionObserver.update(simg)) {
         observing = false;
         break;
@@ -2797,11 +2888,19 @@ public class Region extends Element {
         break;
       }
       long after_find = (new Date()).getTime();
+      if (after_find - before_find > MaxTimePerScan) {
+        log(logLevel + 1, "observe: scan took %d msec (patterns: %d msec) - ObserveScanRate %.1f not reached",
+            after_find - before_find, regionObserver.getLastScanTime(), getObserveScanRate());
+      }
       try {
         if (after_find - before_find < MaxTimePerScan) {
           Thread.sleep((int) (MaxTimePerScan - (after_find - before_find)));
         }
       } catch (Exception e) {
+        ScriptAbort.check();
+      }
+      if (updates > -1) {
+        waitForObserveUpdate(screen, updates, stop_t);
       }
     }
     boolean observeSuccess = false;
@@ -2816,6 +2915,19 @@ public class Region extends Element {
     return observeSuccess;
   }
 
+  // the next scan not before the region was updated (at least once per observeUpdateMaxWait, so repeated events happen)
+  private void waitForObserveUpdate(IScreen screen, long updates, long stop_t) {
+    long until = Math.min(stop_t, new Date().getTime() + observeUpdateMaxWait);
+    while (observing) {
+      long remaining = Math.min(until - new Date().getTime(), 100);
+      if (remaining <= 0 || screen.waitForUpdate(getRect(), updates, remaining)) {
+        break;
+      }
+    }
+  }
+
+  private static final int observeUpdateMaxWait = 1000;
+
   /**
    * start an observer in this region for the given time that runs in background - for details about the observe event
    * handler: {@link ObserverCallBack} for details about APPEAR/VANISH/CHANGE events: {@link ObserveEvent}
@@ -3357,6 +3469,7 @@ public class Region extends Element {
    * @return 0 for success 1 otherwise
    */
   public int write(String text) {
+    ScriptAbort.check();
     Debug.info("Write: " + text);
     char c;
     String token, tokenSave;
@@ -3365,6 +3478,8 @@ public class Region extends Element {
     IRobot robot = getRobotForElement();
     int pause = 20 + (Settings.TypeDelay > 1 ? 1000 : (int) (Settings.TypeDelay * 1000));
     Settings.TypeDelay = 0.0;
+    // plain characters are collected and typed together (Settings.TypeBatchSize)
+    StringBuilder plainText = new StringBuilder();
     robot.typeStarts();
     for (int i = 0; i < text.length(); i++) {
       log(logLevel + 1, "write: (%d) %s", i, text.substring(i));
@@ -3372,6 +3487,7 @@ public class Region extends Element {
       token = null;
       boolean isModifier = false;
       if (c == '#') {
+        writePlainText(robot, plainText, pause);
         if (text.charAt(i + 1) == '#') {
           log(logLevel, "write at: %d: %s", i, c);
           i += 1;
@@ -3452,6 +3568,10 @@ public class Region extends Element {
           }
         }
       }
+      if (Settings.TypeBatchSize > 0 && modifier.isEmpty() && key < 0) {
+        plainText.append(c);
+        continue;
+      }
       if (!modifier.isEmpty()) {
         log(logLevel + 1, "write: modifier + " + modifier);
         for (int n = 0; n < modifier.length(); n++) {
@@ -3472,12 +3592,21 @@ public class Region extends Element {
       robot.delay(pause);
       modifier = "";
     }
-
+    writePlainText(robot, plainText, pause);
     robot.typeEnds();
     robot.waitForIdle();
     return 0;
   }
 
+  private void writePlainText(IRobot robot, StringBuilder plainText, int pause) {
+    if (plainText.length() > 0) {
+      log(logLevel + 1, "write: text: %s", plainText);
+      // without the base delay of 20 msec per character
+      robot.typeText(plainText.toString(), 0, pause - 20);
+      plainText.setLength(0);
+    }
+  }
+
   /**
    * enters the given text one character/key after another using keyDown/keyUp.
    * <br>about the usable Key constants see keyDown(keys)
@@ -3600,6 +3729,7 @@ public class Region extends Element {
   }
 
   private <PFRML> int keyin(PFRML target, String text, int modifiers) throws FindFailed {
+    ScriptAbort.check();
     if (target != null && 0 == click(target, 0)) {
       return 0;
     }
@@ -3631,11 +3761,15 @@ public class Region extends Element {
       Settings.TypeDelay = 0.0;
       profiler.lap("before typing");
       r.typeStarts();
-      for (int i = 0; i < text.length(); i++) {
-        r.pressModifiers(modifiers);
-        r.typeChar(text.charAt(i), IRobot.KeyMode.PRESS_RELEASE);
-        r.releaseModifiers(modifiers);
-        r.delay(pause);
+      if (Settings.TypeBatchSize > 0) {
+        r.typeText(text, modifiers, pause - 20);
+      } else {
+        for (int i = 0; i < text.length(); i++) {
+          r.pressModifiers(modifiers);
+          r.typeChar(text.charAt(i), IRobot.KeyMode.PRESS_RELEASE);
+          r.releaseModifiers(modifiers);
+          r.delay(pause);
+        }
       }
       r.typeEnds();
       profiler.lap("after typing, before waitForIdle");
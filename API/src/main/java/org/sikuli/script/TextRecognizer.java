@@ -3,7 +3,7 @@
  */
 package org.sikuli.script;
 
-import net.sourceforge.tess4j.ITesseract;
+import com.sun.jna.Pointer;
 import net.sourceforge.tess4j.Tesseract1;
 import net.sourceforge.tess4j.TesseractException;
 import net.sourceforge.tess4j.Word;
@@ -18,10 +18,9 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.nio.IntBuffer;
+import java.util.*;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Intended to be used only internally - still public for being backward compatible
@@ -76,9 +75,9 @@ public class TextRecognizer {
     return textRecognizer;
   }
 
-  private ITesseract getTesseractAPI() {
+  private TesseractEngine getTesseractAPI(String key) {
     try {
-      ITesseract tesseract = new Tesseract1();
+      TesseractEngine tesseract = new TesseractEngine(key);
       tesseract.setOcrEngineMode(options.oem());
       tesseract.setPageSegMode(options.psm());
       tesseract.setLanguage(options.language());
@@ -129,6 +128,261 @@ public class TextRecognizer {
   }
   //</editor-fold>
 
+  //<editor-fold desc="01 engine pool">
+  /**
+   * A Tesseract engine, that stays initialized (traineddata loaded) after a doOCR/getWords,
+   * so it can be reused for the next request with the same options.
+   */
+  private static class TesseractEngine extends Tesseract1 {
+    private final String key;
+    private boolean initialized = false;
+    private long lastUsed = 0;
+
+    TesseractEngine(String key) {
+      this.key = key;
+    }
+
+    @Override
+    protected void init() {
+      if (!initialized) {
+        super.init();
+        initialized = true;
+      }
+    }
+
+    @Override
+    protected void dispose() {
+      // kept for reuse - released with close()
+    }
+
+    void close() {
+      if (initialized) {
+        super.dispose();
+        initialized = false;
+      }
+    }
+
+    /**
+     * one recognition pass, walking the words and noting where lines and blocks begin
+     *
+     * @param bimg    the image given to Tesseract
+     * @param wFactor to scale the boxes horizontally back to the original image
+     * @param hFactor to scale the boxes vertically back to the original image
+     * @return the block - line - word hierarchy
+     * @throws IOException if the image could not be given to Tesseract
+     */
+    OCRResult getResult(BufferedImage bimg, double wFactor, double hFactor) throws IOException {
+      OCRResult result = new OCRResult();
+      init();
+      setTessVariables();
+      setImage(bimg, null);
+      TessBaseAPI handle = getHandle();
+      TessBaseAPIRecognize(handle, null);
+      TessResultIterator ri = TessBaseAPIGetIterator(handle);
+      if (ri == null) {
+        return result;
+      }
+      try {
+        TessPageIterator pi = TessResultIteratorGetPageIterator(ri);
+        TessPageIteratorBegin(pi);
+        OCRResult.Line line = null;
+        do {
+          OCRResult.Item word = getItem(ri, pi, TessPageIteratorLevel.RIL_WORD, wFactor, hFactor);
+          if (word == null) {
+            continue;
+          }
+          if (line == null || TessPageIteratorIsAtBeginningOf(pi, TessPageIteratorLevel.RIL_TEXTLINE) == TRUE) {
+            OCRResult.Item lineItem = getItem(ri, pi, TessPageIteratorLevel.RIL_TEXTLINE, wFactor, hFactor);
+            if (lineItem == null) {
+              lineItem = word;
+            }
+            line = result.addLine(lineItem, TessPageIteratorIsAtBeginningOf(pi, TessPageIteratorLevel.RIL_BLOCK) == TRUE);
+          }
+          line.words.add(word);
+        } while (TessPageIteratorNext(pi, TessPageIteratorLevel.RIL_WORD) == TRUE);
+      } finally {
+        TessResultIteratorDelete(ri);
+      }
+      return result;
+    }
+
+    private OCRResult.Item getItem(TessResultIterator ri, TessPageIterator pi, int level, double wFactor, double hFactor) {
+      Pointer ptr = TessResultIteratorGetUTF8Text(ri, level);
+      if (ptr == null) {
+        return null;
+      }
+      String text = ptr.getString(0).trim();
+      TessDeleteText(ptr);
+      float confidence = TessResultIteratorConfidence(ri, level);
+      IntBuffer left = IntBuffer.allocate(1);
+      IntBuffer top = IntBuffer.allocate(1);
+      IntBuffer right = IntBuffer.allocate(1);
+      IntBuffer bottom = IntBuffer.allocate(1);
+      TessPageIteratorBoundingBox(pi, level, left, top, right, bottom);
+      Rectangle boundingBox = new Rectangle(left.get(0), top.get(0), right.get(0) - left.get(0), bottom.get(0) - top.get(0));
+      return new OCRResult.Item(text, confidence, realBox(boundingBox, wFactor, hFactor));
+    }
+  }
+
+  private static final Map<String, Deque<TesseractEngine>> idleEngines = new HashMap<>();
+  private static long poolHits = 0;
+  private static long poolMisses = 0;
+  private static long poolEvictions = 0;
+  private static long ocrCount = 0;
+  private static long ocrTime = 0;
+
+  // the options, that are used, when the engine is initialized
+  private static String engineKey(OCR.Options options) {
+    return String.format("%d|%d|%s|%s|%s|%s", options.oem(), options.psm(), options.language(),
+        options.dataPath(), options.variables(), options.configs());
+  }
+
+  /**
+   * gets an engine for the effective options for exclusive use by the calling thread<br>
+   * an idle engine initialized with the same options is reused, otherwise a new one is created
+   *
+   * @return the engine - must be given back with checkinEngine()
+   */
+  private TesseractEngine checkoutEngine() {
+    String key = engineKey(options);
+    synchronized (idleEngines) {
+      evictIdleEngines(System.currentTimeMillis());
+      Deque<TesseractEngine> engines = idleEngines.get(key);
+      if (engines != null && !engines.isEmpty()) {
+        poolHits++;
+        return engines.pop();
+      }
+      poolMisses++;
+    }
+    Debug.log(lvl + 1, "OCR: pool: new engine: %s", key);
+    return getTesseractAPI(key);
+  }
+
+  /**
+   * gives the engine back to the pool (or closes it, if it failed or enough engines are idle)
+   *
+   * @param engine    as got from checkoutEngine()
+   * @param startTime when the OCR request started
+   * @param success   false: the engine might be in a bad state and is closed
+   */
+  private static void checkinEngine(TesseractEngine engine, long startTime, boolean success) {
+    long now = System.currentTimeMillis();
+    synchronized (idleEngines) {
+      ocrCount++;
+      ocrTime += now - startTime;
+      if (success && Settings.OcrEngineIdleTime > 0) {
+        Deque<TesseractEngine> engines = idleEngines.computeIfAbsent(engine.key, k -> new ArrayDeque<>());
+        if (engines.size() < Math.max(1, Settings.OcrEnginesPerOptions)) {
+          engine.lastUsed = now;
+          engines.push(engine);
+          return;
+        }
+      }
+    }
+    engine.close();
+  }
+
+  // engines not used for more than Settings.OcrEngineIdleTime seconds are closed
+  private static void evictIdleEngines(long now) {
+    long maxIdle = (long) (Math.max(0, Settings.OcrEngineIdleTime) * 1000);
+    Iterator<Map.Entry<String, Deque<TesseractEngine>>> entries = idleEngines.entrySet().iterator();
+    while (entries.hasNext()) {
+      Deque<TesseractEngine> engines = entries.next().getValue();
+      // the least recently used engines are at the end
+      while (!engines.isEmpty() && now - engines.peekLast().lastUsed > maxIdle) {
+        engines.removeLast().close();
+        poolEvictions++;
+      }
+      if (engines.isEmpty()) {
+        entries.remove();
+      }
+    }
+  }
+
+  /**
+   * closes all idle engines (releasing the native memory)
+   */
+  protected static void closeEngines() {
+    synchronized (idleEngines) {
+      for (Deque<TesseractEngine> engines : idleEngines.values()) {
+        for (TesseractEngine engine : engines) {
+          engine.close();
+        }
+      }
+      idleEngines.clear();
+    }
+  }
+
+  /**
+   * @return engine pool statistics: hits, misses, evictions, idle engines, mean time per OCR request
+   */
+  protected static String engineStats() {
+    synchronized (idleEngines) {
+      int idle = 0;
+      for (Deque<TesseractEngine> engines : idleEngines.values()) {
+        idle += engines.size();
+      }
+      return String.format("OCR engines: hits: %d misses: %d evictions: %d idle: %d (%d option sets) " +
+              "requests: %d mean: %d msec (cached results used: %d)", poolHits, poolMisses, poolEvictions, idle,
+          idleEngines.size(), ocrCount, ocrCount > 0 ? ocrTime / ocrCount : 0, cacheHits);
+    }
+  }
+
+  private static class CachedResult {
+    final OCRResult result;
+    long lastUsed;
+
+    CachedResult(OCRResult result, long lastUsed) {
+      this.result = result;
+      this.lastUsed = lastUsed;
+    }
+  }
+
+  private static final int resultCacheMax = 8;
+  private static final Map<String, CachedResult> resultCache = new LinkedHashMap<>(16, 0.75f, true);
+  private static long cacheHits = 0;
+
+  // the same pixels read with the same options give the same result
+  private String resultKey(BufferedImage bimg) {
+    return String.format("%s|%s|%s|%dx%d|%d|%016x", engineKey(options), options.factor(), options.resizeInterpolation(),
+        bimg.getWidth(), bimg.getHeight(), bimg.getType(), Image.checksum(bimg));
+  }
+
+  private static OCRResult getCachedResult(String key, long now) {
+    synchronized (resultCache) {
+      long maxAge = (long) (Settings.OcrResultCacheTime * 1000);
+      resultCache.values().removeIf(cached -> now - cached.lastUsed > maxAge);
+      CachedResult cached = resultCache.get(key);
+      if (cached == null) {
+        return null;
+      }
+      cacheHits++;
+      cached.lastUsed = now;
+      return cached.result;
+    }
+  }
+
+  private static void putCachedResult(String key, OCRResult result, long now) {
+    synchronized (resultCache) {
+      resultCache.put(key, new CachedResult(result, now));
+      Iterator<String> keys = resultCache.keySet().iterator();
+      while (resultCache.size() > resultCacheMax && keys.hasNext()) {
+        keys.next();
+        keys.remove();
+      }
+    }
+  }
+
+  /**
+   * drops the cached OCR results
+   */
+  protected static void resetResultCache() {
+    synchronized (resultCache) {
+      resultCache.clear();
+    }
+  }
+  //</editor-fold>
+
   //<editor-fold desc="02 set OEM, PSM">
 
   /**
@@ -273,13 +527,51 @@ public class TextRecognizer {
   }
 
   protected <SFIRBS> List<Match> readLines(SFIRBS from) {
-    BufferedImage bimg = Element.getBufferedImage(from);
-    return readTextItems(bimg, OCR.PAGE_ITERATOR_LEVEL_LINE);
+    return readResult(from).getLines();
   }
 
   protected <SFIRBS> List<Match> readWords(SFIRBS from) {
+    return readResult(from).getWords();
+  }
+
+  /**
+   * lines and words in one Tesseract pass<br>
+   * for the same pixels and options a result not older than Settings.OcrResultCacheTime is reused
+   *
+   * @param from     source to read text from
+   * @param <SFIRBS> File name, File, Image, Region, BufferdImage or ScreenImage
+   * @return the block - line - word hierarchy
+   */
+  protected <SFIRBS> OCRResult readResult(SFIRBS from) {
     BufferedImage bimg = Element.getBufferedImage(from);
-    return readTextItems(bimg, OCR.PAGE_ITERATOR_LEVEL_WORD);
+    long startTime = System.currentTimeMillis();
+    String key = null;
+    if (Settings.OcrResultCacheTime > 0) {
+      key = resultKey(bimg);
+      OCRResult cached = getCachedResult(key, startTime);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    BufferedImage bimgResized = SXOpenCV.optimize(bimg, options.factor(), options.resizeInterpolation());
+    double wFactor = (double) bimg.getWidth() / bimgResized.getWidth();
+    double hFactor = (double) bimg.getHeight() / bimgResized.getHeight();
+    OCRResult result;
+    TesseractEngine engine = checkoutEngine();
+    boolean success = false;
+    try {
+      result = engine.getResult(bimgResized, wFactor, hFactor);
+      success = true;
+    } catch (IOException e) {
+      Debug.error("OCR: read: Tess4J: %s", e.getMessage());
+      return new OCRResult();
+    } finally {
+      checkinEngine(engine, startTime, success);
+    }
+    if (key != null) {
+      putCachedResult(key, result, System.currentTimeMillis());
+    }
+    return result;
   }
   //</editor-fold>
 
@@ -309,12 +601,18 @@ public class TextRecognizer {
   protected <SFIRBS> String doRead(SFIRBS from) {
     String text = "";
     BufferedImage bimg = Element.getBufferedImage(from);
+    BufferedImage bimgResized = SXOpenCV.optimize(bimg, options.factor(), options.resizeInterpolation());
+    long startTime = System.currentTimeMillis();
+    TesseractEngine engine = checkoutEngine();
+    boolean success = false;
     try {
-      text = getTesseractAPI().doOCR(SXOpenCV.optimize(bimg, options.factor(), options.resizeInterpolation()))
-          .trim().replace("\n\n", "\n");
+      text = engine.doOCR(bimgResized).trim().replace("\n\n", "\n");
+      success = true;
     } catch (TesseractException e) {
       Debug.error("OCR: read: Tess4J: doOCR: %s", e.getMessage());
       return "";
+    } finally {
+      checkinEngine(engine, startTime, success);
     }
     return text;
   }
@@ -323,20 +621,33 @@ public class TextRecognizer {
     List<Match> lines = new ArrayList<>();
     BufferedImage bimg = Element.getBufferedImage(from);
     BufferedImage bimgResized = SXOpenCV.optimize(bimg, options.factor(), options.resizeInterpolation());
-    List<Word> textItems = getTesseractAPI().getWords(bimgResized, level);
+    List<Word> textItems;
+    long startTime = System.currentTimeMillis();
+    TesseractEngine engine = checkoutEngine();
+    boolean success = false;
+    try {
+      textItems = engine.getWords(bimgResized, level);
+      success = true;
+    } finally {
+      checkinEngine(engine, startTime, success);
+    }
     double wFactor = (double) bimg.getWidth() / bimgResized.getWidth();
     double hFactor = (double) bimg.getHeight() / bimgResized.getHeight();
     for (Word textItem : textItems) {
-      Rectangle boundingBox = textItem.getBoundingBox();
-      Rectangle realBox = new Rectangle(
-          (int) (boundingBox.x * wFactor) - 1,
-          (int) (boundingBox.y * hFactor) - 1,
-          1 + (int) (boundingBox.width * wFactor) + 2,
-          1 + (int) (boundingBox.height * hFactor) + 2);
+      Rectangle realBox = realBox(textItem.getBoundingBox(), wFactor, hFactor);
       lines.add(new Match(realBox, textItem.getConfidence(), textItem.getText().trim()));
     }
     return lines;
   }
+
+  // box relative to the original image (with a pixel margin)
+  private static Rectangle realBox(Rectangle boundingBox, double wFactor, double hFactor) {
+    return new Rectangle(
+        (int) (boundingBox.x * wFactor) - 1,
+        (int) (boundingBox.y * hFactor) - 1,
+        1 + (int) (boundingBox.width * wFactor) + 2,
+        1 + (int) (boundingBox.height * hFactor) + 2);
+  }
   //</editor-fold>
 
   //<editor-fold desc="99 obsolete">
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script.runnerSupport;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * INTERNAL USE: a pool of initialized interpreters, so that scripts can run at the same time
+ * without paying the interpreter startup with each run
+ * <p>size: Settings.ScriptInterpreters - missing interpreters are created in background.
+ * An interpreter is reset after each run and replaced by a new one
+ * after Settings.ScriptInterpreterUses runs.</p>
+ *
+ * @param <T> the interpreter (e.g. JythonSupport)
+ */
+public class InterpreterPool<T> {
+
+  private static String me = "InterpreterPool: ";
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  /**
+   * creates, resets and closes the pooled interpreters
+   *
+   * @param <T> the interpreter
+   */
+  public interface Factory<T> {
+    /**
+     * @return a new interpreter ready to run scripts
+     */
+    T create();
+
+    /**
+     * @param interpreter after a script run
+     * @return false if the interpreter cannot be reused
+     */
+    boolean reset(T interpreter);
+
+    void close(T interpreter);
+  }
+
+  private final String name;
+  private final Factory<T> factory;
+  private final Deque<T> idle = new ArrayDeque<>();
+  private final Map<T, Integer> uses = new IdentityHashMap<>();
+  // idle, in use and being created
+  private int alive = 0;
+  private int created = 0;
+  private boolean closed = false;
+  private ExecutorService warmer = null;
+
+  public InterpreterPool(String name, Factory<T> factory) {
+    this.name = name;
+    this.factory = factory;
+  }
+
+  private static int getSize() {
+    return Math.max(1, Settings.ScriptInterpreters);
+  }
+
+  /**
+   * creates the missing interpreters in background
+   */
+  public synchronized void warmUp() {
+    closed = false;
+    if (null == warmer) {
+      warmer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "InterpreterPool-" + name);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    while (alive < getSize()) {
+      alive++;
+      warmer.execute(() -> {
+        try {
+          T interpreter = create();
+          synchronized (this) {
+            idle.addLast(interpreter);
+            notifyAll();
+          }
+        } catch (Exception e) {
+          log(-1, "%s: create: %s", name, e.getMessage());
+          synchronized (this) {
+            alive--;
+            notifyAll();
+          }
+        }
+      });
+    }
+  }
+
+  private T create() {
+    long start = System.currentTimeMillis();
+    T interpreter = factory.create();
+    synchronized (this) {
+      uses.put(interpreter, 0);
+      created++;
+    }
+    log(3, "%s: interpreter ready (%d msec)", name, System.currentTimeMillis() - start);
+    return interpreter;
+  }
+
+  /**
+   * waits for an idle interpreter - created in the calling thread, if the pool is not yet full
+   *
+   * @return the interpreter to be given back with checkin()
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public T checkout() throws InterruptedException {
+    synchronized (this) {
+      closed = false;
+      while (true) {
+        if (!idle.isEmpty()) {
+          return idle.removeFirst();
+        }
+        if (alive < getSize()) {
+          alive++;
+          break;
+        }
+        wait();
+      }
+    }
+    try {
+      return create();
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        alive--;
+        notifyAll();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * @param interpreter as got with checkout() - reset or replaced by a new one
+   */
+  public void checkin(T interpreter) {
+    int used;
+    synchronized (this) {
+      used = uses.merge(interpreter, 1, Integer::sum);
+    }
+    boolean reusable = used < Math.max(1, Settings.ScriptInterpreterUses);
+    if (reusable) {
+      try {
+        reusable = factory.reset(interpreter);
+      } catch (Exception e) {
+        log(-1, "%s: reset: %s", name, e.getMessage());
+        reusable = false;
+      }
+    }
+    boolean replace;
+    synchronized (this) {
+      if (reusable && !closed && alive <= getSize()) {
+        idle.addLast(interpreter);
+        notifyAll();
+        return;
+      }
+      uses.remove(interpreter);
+      alive--;
+      replace = !closed;
+      notifyAll();
+    }
+    log(3, "%s: interpreter retired after %d runs", name, used);
+    factory.close(interpreter);
+    if (replace) {
+      warmUp();
+    }
+  }
+
+  /**
+   * closes the idle interpreters (the ones in use are closed, when given back)
+   */
+  public void close() {
+    Deque<T> closing;
+    synchronized (this) {
+      closed = true;
+      closing = new ArrayDeque<>(idle);
+      idle.clear();
+      for (T interpreter : closing) {
+        uses.remove(interpreter);
+        alive--;
+      }
+    }
+    for (T interpreter : closing) {
+      factory.close(interpreter);
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%s: interpreters: %d (idle %d) created: %d", name, alive, idle.size(), created);
+  }
+}
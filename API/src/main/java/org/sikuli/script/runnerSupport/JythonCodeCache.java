@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script.runnerSupport;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.python.core.BytecodeLoader;
+import org.python.core.PyCode;
+import org.python.core.imp;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+import org.sikuli.script.support.RunTime;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * INTERNAL USE: the compiled code of Jython scripts and imported .sikuli modules
+ * <p>in memory (Settings.ScriptCodeCacheSize entries) and on disk (SikulixStore/JythonCode, $py.class format),
+ * keyed by the hash of name and content. As long as size and mtime of a file did not change,
+ * the file is not even read again. The compiled code is shared by all interpreters.
+ * The code of a changed file replaces its former code on disk, the files on disk are limited
+ * to Settings.ScriptCodeCacheOnDiskFiles (least recently used are deleted).</p>
+ */
+public class JythonCodeCache {
+
+  private static String me = "JythonCodeCache: ";
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  private static class Entry {
+    final long mtime;
+    final long size;
+    final String hash;
+    final PyCode code;
+
+    Entry(long mtime, long size, String hash, PyCode code) {
+      this.mtime = mtime;
+      this.size = size;
+      this.hash = hash;
+      this.code = code;
+    }
+  }
+
+  // the files by absolute path, least recently used first
+  private static final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > Math.max(1, Settings.ScriptCodeCacheSize);
+    }
+  };
+
+  private static int hits = 0;
+  private static int diskHits = 0;
+  private static int compiled = 0;
+
+  /**
+   * @param pyFile a Jython script (.py)
+   * @return the compiled code - compiled only if not yet cached for this content
+   * @throws IOException if the file cannot be read
+   */
+  public static PyCode get(File pyFile) throws IOException {
+    String path = pyFile.getAbsolutePath();
+    long mtime = pyFile.lastModified();
+    long size = pyFile.length();
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(path);
+      if (null != entry && entry.mtime == mtime && entry.size == size) {
+        hits++;
+        return entry.code;
+      }
+    }
+    byte[] source = FileUtils.readFileToByteArray(pyFile);
+    String name = FilenameUtils.getBaseName(path);
+    String hash = getHash(name, source);
+    PyCode code;
+    if (null != entry && entry.hash.equals(hash)) {
+      // touched, but not changed
+      code = entry.code;
+      synchronized (entries) {
+        hits++;
+      }
+    } else {
+      code = load(name, hash, source, path, mtime);
+    }
+    String formerHash = null;
+    synchronized (entries) {
+      entries.put(path, new Entry(mtime, size, hash, code));
+      if (null != entry && !entry.hash.equals(hash) && !isUsed(entry.hash)) {
+        formerHash = entry.hash;
+      }
+    }
+    if (null != formerHash) {
+      // the file was edited: its former code is no longer needed
+      File fFormer = getCacheFile(formerHash);
+      if (null != fFormer) {
+        fFormer.delete();
+      }
+    }
+    return code;
+  }
+
+  // caller holds entries: another file (a copy) has the same content
+  private static boolean isUsed(String hash) {
+    for (Entry entry : entries.values()) {
+      if (entry.hash.equals(hash)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param pyFile a Jython script (.py)
+   * @return the content hash of the file as last got with get() (null if not cached)
+   */
+  public static String getHash(File pyFile) {
+    synchronized (entries) {
+      Entry entry = entries.get(pyFile.getAbsolutePath());
+      return null == entry ? null : entry.hash;
+    }
+  }
+
+  /**
+   * @param pyFile a Jython script (.py)
+   * @return the current content hash of the file (null if it cannot be read)
+   */
+  public static String getCurrentHash(File pyFile) {
+    synchronized (entries) {
+      Entry entry = entries.get(pyFile.getAbsolutePath());
+      if (null != entry && entry.mtime == pyFile.lastModified() && entry.size == pyFile.length()) {
+        return entry.hash;
+      }
+    }
+    try {
+      return getHash(FilenameUtils.getBaseName(pyFile.getName()), FileUtils.readFileToByteArray(pyFile));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static PyCode load(String name, String hash, byte[] source, String path, long mtime) {
+    File fCached = getCacheFile(hash);
+    if (null != fCached && fCached.exists()) {
+      try {
+        PyCode code = BytecodeLoader.makeCode(name + "$py", FileUtils.readFileToByteArray(fCached), path);
+        // recently used: kept when pruning
+        fCached.setLastModified(System.currentTimeMillis());
+        synchronized (entries) {
+          diskHits++;
+        }
+        return code;
+      } catch (Exception e) {
+        log(-1, "cached code not usable (compiling again): %s (%s)", path, e.getMessage());
+        fCached.delete();
+      }
+    }
+    long start = System.currentTimeMillis();
+    byte[] data = imp.compileSource(name, new ByteArrayInputStream(source), path, mtime);
+    PyCode code = BytecodeLoader.makeCode(name + "$py", data, path);
+    synchronized (entries) {
+      compiled++;
+    }
+    log(3, "compiled: %s (%d msec)", path, System.currentTimeMillis() - start);
+    if (null != fCached) {
+      store(fCached, data);
+      prune(fCached.getParentFile());
+    }
+    return code;
+  }
+
+  private static final long TEMP_MAX_AGE = 3600 * 1000L;
+
+  // the least recently used beyond Settings.ScriptCodeCacheOnDiskFiles and left over temp files
+  private static void prune(File folder) {
+    File[] files = folder.listFiles();
+    if (null == files) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    List<File> codeFiles = new ArrayList<>();
+    for (File file : files) {
+      if (file.getName().endsWith("$py.class")) {
+        codeFiles.add(file);
+      } else if (file.getName().endsWith(".tmp") && now - file.lastModified() > TEMP_MAX_AGE) {
+        file.delete();
+      }
+    }
+    int tooMany = codeFiles.size() - Math.max(1, Settings.ScriptCodeCacheOnDiskFiles);
+    if (tooMany <= 0) {
+      return;
+    }
+    Map<File, Long> used = new HashMap<>();
+    for (File file : codeFiles) {
+      used.put(file, file.lastModified());
+    }
+    codeFiles.sort(Comparator.comparingLong(used::get));
+    for (File file : codeFiles.subList(0, tooMany)) {
+      file.delete();
+    }
+    log(3, "pruned: %d files in %s", tooMany, folder);
+  }
+
+  private static void store(File fCached, byte[] data) {
+    try {
+      fCached.getParentFile().mkdirs();
+      File fTemp = File.createTempFile("code", ".tmp", fCached.getParentFile());
+      FileUtils.writeByteArrayToFile(fTemp, data);
+      // other processes might store the same code at the same time
+      Files.move(fTemp.toPath(), fCached.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (Exception e) {
+      log(-1, "not stored: %s (%s)", fCached, e.getMessage());
+    }
+  }
+
+  private static File getCacheFile(String hash) {
+    if (!Settings.ScriptCodeCacheOnDisk) {
+      return null;
+    }
+    File fStore = RunTime.get().fSikulixStore;
+    if (null == fStore) {
+      return null;
+    }
+    return new File(new File(fStore, "JythonCode"), hash + "$py.class");
+  }
+
+  // name: the class name of the compiled code depends on it
+  private static String getHash(String name, byte[] source) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update((imp.getAPIVersion() + ":" + name + ":").getBytes(StandardCharsets.UTF_8));
+      byte[] hash = digest.digest(source);
+      StringBuilder hex = new StringBuilder();
+      for (byte b : hash) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("JythonCodeCache: no SHA-256", e);
+    }
+  }
+
+  /**
+   * forget the compiled code in memory (the files on disk are kept)
+   */
+  public static void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  public static String getStats() {
+    synchronized (entries) {
+      return String.format("cached: %d hits: %d (from disk %d) compiled: %d", entries.size(), hits, diskHits, compiled);
+    }
+  }
+}
@@ -6,9 +6,13 @@ package org.sikuli.script.runnerSupport;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.python.core.BytecodeLoader;
+import org.python.core.Py;
 import org.python.core.PyCode;
 import org.python.core.PyList;
+import org.python.core.PyObject;
+import org.python.core.PyStringMap;
 import org.python.core.PySystemState;
+import org.python.core.imp;
 import org.python.util.PythonInterpreter;
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.FileManager;
@@ -25,7 +29,9 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -53,14 +59,28 @@ public class JythonSupport implements IRunnerSupport {
   //<editor-fold desc="01 instance">
   private static JythonSupport instance = null;
 
-  private static PythonInterpreter interpreter = null;
+  // a pooled instance used by the script running in this thread
+  private static final ThreadLocal<JythonSupport> boundInstance = new ThreadLocal<>();
+
+  private PythonInterpreter interpreter = null;
 
   private static RunTime runTime;
 
   private JythonSupport() {
   }
 
+  /**
+   * @return the instance bound to the current thread (pooled interpreter) or the shared one
+   */
   public static JythonSupport get() {
+    JythonSupport bound = boundInstance.get();
+    if (null != bound) {
+      return bound;
+    }
+    return getShared();
+  }
+
+  private static synchronized JythonSupport getShared() {
     if (null == instance) {
       instance = new JythonSupport();
       init();
@@ -68,6 +88,32 @@ public class JythonSupport implements IRunnerSupport {
     return instance;
   }
 
+  /**
+   * INTERNAL USE: a new instance with its own interpreter and sys state (interpreter pool)
+   *
+   * @return the new instance
+   */
+  public static JythonSupport createIsolated() {
+    JythonSupport shared = getShared();
+    if (null == shared.interpreter) {
+      return null;
+    }
+    JythonSupport isolated = new JythonSupport();
+    isolated.interpreter = new PythonInterpreter(null, new PySystemState());
+    return isolated;
+  }
+
+  /**
+   * INTERNAL USE: get() returns this instance in the current thread until unbind()
+   */
+  public void bind() {
+    boundInstance.set(this);
+  }
+
+  public static void unbind() {
+    boundInstance.remove();
+  }
+
   public static boolean isSupported() {
     try {
       Class.forName("org.python.util.PythonInterpreter");
@@ -90,7 +136,7 @@ public class JythonSupport implements IRunnerSupport {
     runTime = RunTime.get();
     runTime.exportLib();
     try {
-      interpreter = new PythonInterpreter();
+      instance.interpreter = new PythonInterpreter();
       cPyException = Class.forName("org.python.core.PyException");
       cPyFunction = Class.forName("org.python.core.PyFunction");
       cPyMethod = Class.forName("org.python.core.PyMethod");
@@ -98,7 +144,7 @@ public class JythonSupport implements IRunnerSupport {
       cPyString = Class.forName("org.python.core.PyString");
     } catch (Exception ex) {
       instance.log(-1, "reflection problem: %s", ex.getMessage());
-      interpreter = null;
+      instance.interpreter = null;
     }
     //instance.log(lvl, "init: success");
     runTime.isJythonReady = true;
@@ -125,6 +171,39 @@ public class JythonSupport implements IRunnerSupport {
     }
   }
 
+  private List<String> savedSysPath = null;
+
+  /**
+   * INTERNAL USE: remembers sys.path as the state to return to with interpreterReset()
+   */
+  public void interpreterSaveState() {
+    synchronized (sysPath) {
+      getSysPath();
+      savedSysPath = new ArrayList<>(sysPath);
+    }
+  }
+
+  /**
+   * INTERNAL USE: after a script run with a pooled interpreter:
+   * new empty globals, sys.path as saved - loaded modules are kept
+   */
+  public void interpreterReset() {
+    interpreter.cleanup();
+    PyStringMap globals = new PyStringMap();
+    globals.__setitem__("__name__", Py.newString("__main__"));
+    interpreter.setLocals(globals);
+    synchronized (sysPath) {
+      if (null != savedSysPath) {
+        sysPath.clear();
+        sysPath.addAll(savedSysPath);
+        setSysPath();
+      }
+    }
+    importedScripts.clear();
+    importedHashes.clear();
+    lastRun = 0;
+  }
+
   public boolean interpreterRedirect(PrintStream stdout, PrintStream stderr) {
     if (interpreter == null) {
       return false;
@@ -323,6 +402,24 @@ public class JythonSupport implements IRunnerSupport {
     interpreter.execfile(script);
   }
 
+  /**
+   * like interpreterExecFile(), but the compiled code is taken from the JythonCodeCache,
+   * so the script is only compiled, when its content has changed
+   *
+   * @param script the .py file
+   */
+  public void interpreterExecCached(String script) {
+    PyCode pyCode;
+    try {
+      pyCode = JythonCodeCache.get(new File(script));
+    } catch (IOException e) {
+      log(-1, "exec cached script: %s (%s)", script, e.getMessage());
+      interpreterExecFile(script);
+      return;
+    }
+    interpreter.exec(pyCode);
+  }
+
   public void executeScriptHeader(List<String> codeBefore) {
     for (String line : SCRIPT_HEADER) {
       log(lvl + 1, "executeScriptHeader: %s", line);
@@ -351,6 +448,8 @@ public class JythonSupport implements IRunnerSupport {
   int nPathAdded = 0;
   int nPathSaved = -1;
   private List<File> importedScripts = new ArrayList<File>();
+  // the content hashes of the modules loaded from the code cache (see reloadImported())
+  private Map<String, String> importedHashes = new HashMap<>();
   String name = "";
   private long lastRun = 0;
 
@@ -549,7 +648,13 @@ public class JythonSupport implements IRunnerSupport {
     if (lastRun > 0) {
       for (File fMod : importedScripts) {
         name = getPyName(fMod);
-        if (new File(fMod, name + ".py").lastModified() > lastRun) {
+        File pyFile = new File(fMod, name + ".py");
+        if (pyFile.lastModified() > lastRun) {
+          String loaded = importedHashes.get(pyFile.getAbsolutePath());
+          if (null != loaded && loaded.equals(JythonCodeCache.getCurrentHash(pyFile))) {
+            log(lvl + 1, "reload: not changed: %s", fMod);
+            continue;
+          }
           log(lvl, "reload: %s", fMod);
           interpreterExecString("reload(" + name + ")");
         }
@@ -614,6 +719,40 @@ public class JythonSupport implements IRunnerSupport {
     return modName;
   }
 
+  /**
+   * @param modName the module name as returned by loadModulePrepare()
+   * @param modPath the .sikuli folder
+   * @return the module's .py file, if it should be loaded with loadModule() (null: use the standard import)
+   */
+  public String getModuleCodeFile(String modName, String modPath) {
+    if (!Settings.ScriptCodeCache) {
+      return null;
+    }
+    File pyFile = new File(modPath, modName + ".py");
+    return pyFile.exists() ? pyFile.getAbsolutePath() : null;
+  }
+
+  /**
+   * loads (or reloads) the module with the compiled code from the JythonCodeCache
+   *
+   * @param modName the module name
+   * @param pyFile  as returned by getModuleCodeFile()
+   * @return the module (registered in sys.modules)
+   */
+  public PyObject loadModule(String modName, String pyFile) {
+    File fPy = new File(pyFile);
+    PyCode pyCode;
+    try {
+      pyCode = JythonCodeCache.get(fPy);
+    } catch (IOException e) {
+      throw Py.ImportError(String.format("%s: %s", pyFile, e.getMessage()));
+    }
+    log(lvl + 1, "loadModule: %s from %s", modName, pyFile);
+    PyObject module = imp.createFromCode(modName, pyCode, pyFile);
+    importedHashes.put(fPy.getAbsolutePath(), JythonCodeCache.getHash(fPy));
+    return module;
+  }
+
   private File existsModule(String mName, File fFolder) {
     if (mName.endsWith(".sikuli") || mName.endsWith(".py")) {
       return null;
@@ -13,7 +13,12 @@ public abstract class AbstractLocalFileScriptRunner extends AbstractScriptRunner
 
   protected void prepareFileLocation(File scriptFile, IScriptRunner.Options options) {
     if (!options.isRunningInIDE() && scriptFile.exists()) {
+      if (canRunConcurrently()) {
+        // only for this run (reset at the end of runScript)
+        ImagePath.setThreadBundleFolder(scriptFile.getParentFile());
+      } else {
         ImagePath.setBundleFolder(scriptFile.getParentFile());
+      }
     }
   }
 
@@ -7,16 +7,21 @@ package org.sikuli.script.runners;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntSupplier;
 
 import org.sikuli.basics.Debug;
+import org.sikuli.script.ImagePath;
 import org.sikuli.script.SikuliXception;
 import org.sikuli.script.support.IScriptRunner;
 import org.sikuli.script.support.Runner;
+import org.sikuli.script.support.ScriptAbort;
 
 import com.sun.jna.ptr.IntByReference;
 
@@ -42,10 +47,16 @@ public abstract class AbstractScriptRunner implements IScriptRunner {
 //    return TYPE;
 //  }
 
-  private boolean ready = false;
+  private volatile boolean ready = false;
 
   private boolean running = false;
 
+  // scripts running at the same time (see canRunConcurrently())
+  private final AtomicInteger concurrentRuns = new AtomicInteger(0);
+
+  // the running scripts of this runner (to be aborted as a whole, see ScriptAbort)
+  private final Set<ScriptAbort.Run> scriptRuns = ConcurrentHashMap.newKeySet();
+
   PrintStream redirectedStdout;
   PrintStream redirectedStderr;
 
@@ -164,6 +175,10 @@ public abstract class AbstractScriptRunner implements IScriptRunner {
   public final int runScript(String script, String[] scriptArgs, IScriptRunner.Options maybeOptions) {
     IScriptRunner.Options options = null != maybeOptions ? maybeOptions : new IScriptRunner.Options();
 
+    if (canRunConcurrently()) {
+      // the debug level is global: scripts running at the same time leave it as is
+      return runConcurrently(options, () -> doRunScript(script, scriptArgs, options));
+    }
     return runSynchronized(options, () -> {
       int savedLevel = Debug.getDebugLevel();
       if (!Debug.isGlobalDebug()) {
@@ -177,6 +192,17 @@ public abstract class AbstractScriptRunner implements IScriptRunner {
     });
   }
 
+  /**
+   * runScript() normally runs one script after the other in a worker thread (all runners).
+   * If true, runScript() runs the script in the calling thread at the same time as others
+   * (e.g. with a pool of interpreters) - doRunScript() has to care for its shared state.
+   *
+   * @return true if scripts can run at the same time
+   */
+  public boolean canRunConcurrently() {
+    return false;
+  }
+
   public EffectiveRunner getEffectiveRunner(String script) {
     return new EffectiveRunner(this, script, false);
   }
@@ -266,7 +292,7 @@ public abstract class AbstractScriptRunner implements IScriptRunner {
   static ArrayList<String> codeAfter = null;
 
   public final boolean isRunning() {
-    return running;
+    return running || concurrentRuns.get() > 0;
   }
 
   public boolean isAbortSupported() {
@@ -275,8 +301,12 @@ public abstract class AbstractScriptRunner implements IScriptRunner {
 
   public final void abort() {
     synchronized (WORKER_LOCK) {
-      if (worker != null && running && isAbortSupported()) {
+      if (isRunning() && isAbortSupported()) {
         aborted = true;
+        for (ScriptAbort.Run run : scriptRuns) {
+          // the next API call (find, wait, mouse, keyboard) in the script throws ScriptAbort.Aborted
+          ScriptAbort.abort(run);
+        }
         doAbort();
       }
     }
@@ -289,11 +319,20 @@ public abstract class AbstractScriptRunner implements IScriptRunner {
    * is not needed.
    */
   protected void doAbort() {
-    worker.interrupt();
+    if (worker != null) {
+      worker.interrupt();
+    }
   }
 
+  /**
+   * @return in a script's thread: whether this script run was aborted, otherwise: whether the last abort()
+   * happened after the last run was started
+   */
   @Override
   public final boolean isAborted() {
+    if (ScriptAbort.isRunning()) {
+      return ScriptAbort.isAborted();
+    }
     synchronized (WORKER_LOCK) {
       return aborted;
     }
@@ -312,9 +351,13 @@ public abstract class AbstractScriptRunner implements IScriptRunner {
           @Override
           public void run() {
             synchronized (AbstractScriptRunner.class) {
+              ScriptAbort.Run run = ScriptAbort.start();
+              scriptRuns.add(run);
               try {
                 exitCode.setValue(block.getAsInt());
               } finally {
+                scriptRuns.remove(run);
+                ScriptAbort.end(run);
                 AbstractScriptRunner.class.notify();
               }
             }
@@ -355,6 +398,40 @@ public abstract class AbstractScriptRunner implements IScriptRunner {
     return exitCode.getValue();
   }
 
+  // a timeout interrupts the script's thread
+  private int runConcurrently(IScriptRunner.Options options, IntSupplier block) {
+    if (!ready) {
+      init(null);
+    }
+    synchronized (WORKER_LOCK) {
+      if (concurrentRuns.getAndIncrement() == 0 && worker == null) {
+        aborted = false;
+      }
+    }
+    ScriptAbort.Run run = ScriptAbort.start();
+    scriptRuns.add(run);
+    ScheduledFuture<?> timeoutFuture = null;
+    try {
+      if (options.getTimeout() > 0) {
+        final long timeout = options.getTimeout();
+        timeoutFuture = TIMEOUT_EXECUTOR.schedule(() -> {
+          Debug.info("%s script timed out after %d ms", getName(), timeout);
+          ScriptAbort.abort(run);
+        }, timeout, TimeUnit.MILLISECONDS);
+      }
+      return block.getAsInt();
+    } finally {
+      if (timeoutFuture != null) {
+        timeoutFuture.cancel(false);
+      }
+      scriptRuns.remove(run);
+      ImagePath.setThreadBundleFolder(null);
+      // clears the interrupt of an abort (not meant for the caller)
+      ScriptAbort.end(run);
+      concurrentRuns.decrementAndGet();
+    }
+  }
+
   private int runSynchronized(IScriptRunner.Options options, IntSupplier block) {
     synchronized (AbstractScriptRunner.class) {
       running = true;
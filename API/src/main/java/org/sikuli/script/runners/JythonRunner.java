@@ -4,7 +4,9 @@
 package org.sikuli.script.runners;
 
 import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
 import org.sikuli.script.Sikulix;
+import org.sikuli.script.runnerSupport.InterpreterPool;
 import org.sikuli.script.runnerSupport.JythonSupport;
 import org.sikuli.script.support.IScriptRunner;
 import org.sikuli.script.support.RunTime;
@@ -85,14 +87,8 @@ public class JythonRunner extends AbstractLocalFileScriptRunner {
       log(lvl, "starting initialization");
 
       jythonSupport = JythonSupport.get();
-      jythonSupport.getSysPath();
-      String fpAPILib = runTime.fSikulixLib.getAbsolutePath();
-      jythonSupport.putSysPath(fpAPILib, 0);
-      jythonSupport.setSysPath();
-      jythonSupport.addSitePackages();
+      prepareInterpreter(jythonSupport);
       jythonSupport.showSysPath();
-      jythonSupport.interpreterExecString("import sys");
-      jythonSupport.interpreterExecString("import org.sikuli.script.support.Runner as Runner");
       String interpreterVersion = jythonSupport.interpreterEval("sys.version.split(\"(\")[0]\n").toString();
       if (interpreterVersion.isEmpty()) {
         interpreterVersion = "could not be evaluated";
@@ -101,10 +97,29 @@ public class JythonRunner extends AbstractLocalFileScriptRunner {
       log(lvl, "ready: version %s", interpreterVersion);
       Debug.unsetWithTimeElapsed();
     }
+    if (canRunConcurrently()) {
+      getPool().warmUp();
+    }
+  }
+
+  private static void prepareInterpreter(JythonSupport support) {
+    support.getSysPath();
+    String fpAPILib = runTime.fSikulixLib.getAbsolutePath();
+    support.putSysPath(fpAPILib, 0);
+    support.setSysPath();
+    support.addSitePackages();
+    support.interpreterExecString("import sys");
+    support.interpreterExecString("import org.sikuli.script.support.Runner as Runner");
   }
 
-  private void initAbort() {
-    jythonSupport.interpreterExecString("runner = Runner.getRunner(\"" + NAME + "\")\n"
+  // abort is checked by the API calls (see ScriptAbort) - the per-line trace hook only on request
+  private void initAbort(JythonSupport support) {
+    if (!Settings.ScriptAbortTrace) {
+      support.interpreterExecString("runner = Runner.getRunner(\"" + NAME + "\")\n"
+                                        + "sys.settrace(None)");
+      return;
+    }
+    support.interpreterExecString("runner = Runner.getRunner(\"" + NAME + "\")\n"
                                       + "def trace_calls_for_abort(frame, evt, arg):\n"
                                       + "  if runner.isAborted():\n"
                                       + "    raise RuntimeError(\"Aborted\")\n"
@@ -121,6 +136,81 @@ public class JythonRunner extends AbstractLocalFileScriptRunner {
   public void doClose() {
     jythonSupport.interpreterClose();
     redirected = false;
+    synchronized (JythonRunner.class) {
+      if (null != pool) {
+        pool.close();
+      }
+    }
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="05 interpreter pool">
+  private static InterpreterPool<JythonSupport> pool = null;
+
+  /**
+   * {@inheritDoc}
+   * <p>with Settings.ScriptInterpreters &gt; 0 each script gets its own interpreter from a pool</p>
+   */
+  @Override
+  public boolean canRunConcurrently() {
+    return Settings.ScriptInterpreters > 0;
+  }
+
+  private static synchronized InterpreterPool<JythonSupport> getPool() {
+    if (null == pool) {
+      pool = new InterpreterPool<>(NAME, new InterpreterPool.Factory<JythonSupport>() {
+        @Override
+        public JythonSupport create() {
+          JythonSupport support = JythonSupport.createIsolated();
+          if (null == support) {
+            throw new IllegalStateException("Jython not available");
+          }
+          prepareInterpreter(support);
+          // the expensive imports are done now and are kept for the following runs
+          support.executeScriptHeader(null);
+          support.interpreterSaveState();
+          return support;
+        }
+
+        @Override
+        public boolean reset(JythonSupport support) {
+          support.interpreterReset();
+          return true;
+        }
+
+        @Override
+        public void close(JythonSupport support) {
+          support.interpreterClose();
+        }
+      });
+    }
+    return pool;
+  }
+
+  private int runPooled(String scriptFile, String[] argv, IScriptRunner.Options options) {
+    JythonSupport support;
+    try {
+      support = getPool().checkout();
+    } catch (InterruptedException e) {
+      log(-1, "interrupted while waiting for an interpreter: %s", scriptFile);
+      return 1;
+    }
+    // JythonSupport.get() now returns the pooled instance for this script (imports, callbacks)
+    support.bind();
+    try {
+      // a pooled interpreter might have been used with the output of another run
+      if (null != options.getStdout() && null != options.getStderr()) {
+        support.interpreterRedirect(options.getStdout(), options.getStderr());
+      } else if (null != redirectedStdout && null != redirectedStderr) {
+        support.interpreterRedirect(redirectedStdout, redirectedStderr);
+      } else {
+        support.interpreterRedirect(System.out, System.err);
+      }
+      return runScriptWith(support, scriptFile, argv, options);
+    } finally {
+      JythonSupport.unbind();
+      getPool().checkin(support);
+    }
   }
   //</editor-fold>
 
@@ -129,7 +219,7 @@ public class JythonRunner extends AbstractLocalFileScriptRunner {
   protected int doEvalScript(String script, IScriptRunner.Options options) {
     // Since we have a static interpreter, we have to synchronize class wide
     synchronized (JythonRunner.class) {
-      initAbort();
+      initAbort(jythonSupport);
       jythonSupport.interpreterExecString(script);
       return 0;
     }
@@ -145,61 +235,82 @@ public class JythonRunner extends AbstractLocalFileScriptRunner {
    */
   @Override
   protected int doRunScript(String scriptFile, String[] argv, IScriptRunner.Options options) {
+    if (canRunConcurrently()) {
+      return runPooled(scriptFile, argv, options);
+    }
 
     // Since we have a static interpreter, we have to synchronize class wide
     synchronized (JythonRunner.class) {
-      initAbort();
+      if (null == options.getStdout() || null == options.getStderr()) {
+        return runScriptWith(jythonSupport, scriptFile, argv, options);
+      }
+      jythonSupport.interpreterRedirect(options.getStdout(), options.getStderr());
+      try {
+        return runScriptWith(jythonSupport, scriptFile, argv, options);
+      } finally {
+        if (null != redirectedStdout && null != redirectedStderr) {
+          jythonSupport.interpreterRedirect(redirectedStdout, redirectedStderr);
+        } else {
+          jythonSupport.interpreterRedirect(System.out, System.err);
+        }
+      }
+    }
+  }
 
-      File pyFile = new File(scriptFile);
+  private int runScriptWith(JythonSupport support, String scriptFile, String[] argv, IScriptRunner.Options options) {
+    initAbort(support);
 
-      jythonSupport.interpreterFillSysArgv(pyFile, argv);
-      jythonSupport.executeScriptHeader(codeBefore);
+    File pyFile = new File(scriptFile);
 
-      prepareFileLocation(pyFile, options);
+    support.interpreterFillSysArgv(pyFile, argv);
+    support.executeScriptHeader(codeBefore);
 
-      int exitCode = 0;
+    prepareFileLocation(pyFile, options);
 
-      try {
-        if (scriptFile.endsWith("$py.class")) {
-          jythonSupport.interpreterExecCode(new File(scriptFile));
+    int exitCode = 0;
+
+    try {
+      if (scriptFile.endsWith("$py.class")) {
+        support.interpreterExecCode(new File(scriptFile));
+      } else if (Settings.ScriptCodeCache) {
+        support.interpreterExecCached(pyFile.getAbsolutePath());
+      } else {
+        support.interpreterExecFile(pyFile.getAbsolutePath());
+      }
+    } catch (Throwable scriptException) {
+      if(!isAborted()) {
+        exitCode = 1;
+        java.util.regex.Pattern p = java.util.regex.Pattern.compile("SystemExit: (-?[0-9]+)");
+        String exception = scriptException.toString();
+
+        Matcher matcher = p.matcher(exception);
+        if (matcher.find()) {
+          exitCode = Integer.parseInt(matcher.group(1));
+          Debug.info("Exit code: " + exitCode);
         } else {
-          jythonSupport.interpreterExecFile(pyFile.getAbsolutePath());
-        }
-      } catch (Throwable scriptException) {
-        if(!isAborted()) {
-          exitCode = 1;
-          java.util.regex.Pattern p = java.util.regex.Pattern.compile("SystemExit: (-?[0-9]+)");
-          String exception = scriptException.toString();
-
-          Matcher matcher = p.matcher(exception);
-          if (matcher.find()) {
-            exitCode = Integer.parseInt(matcher.group(1));
-            Debug.info("Exit code: " + exitCode);
-          } else {
-            int errorExit = jythonSupport.findErrorSource(scriptException, pyFile.getAbsolutePath());
-            if (null != options) {
-              options.setErrorLine(errorExit);
-            }
+          int errorExit = support.findErrorSource(scriptException, pyFile.getAbsolutePath());
+          if (null != options) {
+            options.setErrorLine(errorExit);
           }
         }
-      } finally {
-        jythonSupport.interpreterCleanup();
-      }
-
-      if (System.out.checkError()) {
-        Sikulix.popError("System.out is broken (console output)!" + "\nYou will not see any messages anymore!"
-                + "\nSave your work and restart the IDE!", "Fatal Error");
       }
+    } finally {
+      support.interpreterCleanup();
+    }
 
-      return exitCode;
+    if (System.out.checkError()) {
+      Sikulix.popError("System.out is broken (console output)!" + "\nYou will not see any messages anymore!"
+              + "\nSave your work and restart the IDE!", "Fatal Error");
     }
+
+    return exitCode;
   }
 
   @Override
   protected void doRunLines(String lines, IScriptRunner.Options options) {
     // Since we have a static interpreter, we have to synchronize class wide
     synchronized (JythonRunner.class) {
-      initAbort();
+      initAbort(jythonSupport);
       jythonSupport.executeScriptHeader(codeBefore);
 
       try {
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script.support;
+
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+import org.sikuli.basics.Debug;
+import org.sikuli.script.Region;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * INTERNAL USE: detects changed areas between consecutive frames (e.g. onChange observers)
+ * <p>the previous frame is kept as gray image together with the pixel sums of its tiles.
+ * Only the tiles, whose sums differ in the next frame, are checked pixel by pixel and
+ * searched for changed areas (contours).</p>
+ */
+public class ChangeDetector {
+
+  private static String me = "ChangeDetector: ";
+  private static int lvl = 4;
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  public static final int TILE_SIZE_DEFAULT = 32;
+
+  // dilate and close need some pixels around the changed tiles
+  private static final int tileMargin = 4;
+
+  private final int tileSize;
+  private int pixelDiff;
+  private int imageDiff;
+
+  private Mat previousGray = null;
+  private double[][] previousTiles = null;
+
+  public ChangeDetector() {
+    this(TILE_SIZE_DEFAULT, 3, 5);
+  }
+
+  /**
+   * @param tileSize  edge length of the tiles compared by their pixel sums
+   * @param pixelDiff min difference of a gray pixel value to be counted as changed
+   * @param imageDiff min number of changed pixels to report changes
+   */
+  public ChangeDetector(int tileSize, int pixelDiff, int imageDiff) {
+    this.tileSize = Math.max(8, tileSize);
+    this.pixelDiff = pixelDiff;
+    this.imageDiff = imageDiff;
+  }
+
+  /**
+   * @param pixelDiff min difference of a gray pixel value to be counted as changed
+   * @param imageDiff min number of changed pixels to report changes
+   */
+  public void setThresholds(int pixelDiff, int imageDiff) {
+    this.pixelDiff = pixelDiff;
+    this.imageDiff = imageDiff;
+  }
+
+  public boolean hasPrevious() {
+    return null != previousGray;
+  }
+
+  public void reset() {
+    previousGray = null;
+    previousTiles = null;
+  }
+
+  /**
+   * @param frame the frame the next frame is compared with
+   */
+  public void setPrevious(Mat frame) {
+    previousGray = toGray(frame);
+    previousTiles = tileSums(previousGray);
+  }
+
+  /**
+   * compares the given frame with the previous one, which is then replaced by the given frame
+   *
+   * @param frame the next frame (BGR, BGRA or gray)
+   * @return the changed areas relative to the frame (empty if no changes or no previous frame)
+   */
+  public List<Region> findChanges(Mat frame) {
+    List<Region> changes = new ArrayList<>();
+    Mat nextGray = toGray(frame);
+    double[][] nextTiles = tileSums(nextGray);
+    if (!hasPrevious() || !previousGray.size().equals(nextGray.size())) {
+      previousGray = nextGray;
+      previousTiles = nextTiles;
+      return changes;
+    }
+    List<Rectangle> dirtyAreas = getDirtyAreas(nextTiles, nextGray.cols(), nextGray.rows());
+    if (dirtyAreas.size() > 0) {
+      List<Mat> diffs = new ArrayList<>();
+      int changedPixels = 0;
+      for (Rectangle area : dirtyAreas) {
+        Rect roi = new Rect(area.x, area.y, area.width, area.height);
+        Mat mDiffAbs = new Mat();
+        Mat mDiffThresh = new Mat();
+        Core.absdiff(previousGray.submat(roi), nextGray.submat(roi), mDiffAbs);
+        Imgproc.threshold(mDiffAbs, mDiffThresh, pixelDiff, 0.0, Imgproc.THRESH_TOZERO);
+        changedPixels += Core.countNonZero(mDiffThresh);
+        diffs.add(mDiffAbs);
+      }
+      log(lvl, "dirty areas: %d changed pixels: %d", dirtyAreas.size(), changedPixels);
+      if (changedPixels > imageDiff) {
+        Mat se = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(5, 5));
+        for (int n = 0; n < dirtyAreas.size(); n++) {
+          Rectangle area = dirtyAreas.get(n);
+          Mat mDiffAbs = diffs.get(n);
+          Imgproc.threshold(mDiffAbs, mDiffAbs, pixelDiff, 255, Imgproc.THRESH_BINARY);
+          Imgproc.dilate(mDiffAbs, mDiffAbs, new Mat());
+          Imgproc.morphologyEx(mDiffAbs, mDiffAbs, Imgproc.MORPH_CLOSE, se);
+          List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
+          Imgproc.findContours(mDiffAbs, contours, new Mat(), Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+          for (MatOfPoint contour : contours) {
+            Rect bounds = Imgproc.boundingRect(contour);
+            changes.add(new Region(bounds.x + area.x, bounds.y + area.y, bounds.width - 1, bounds.height - 1));
+          }
+        }
+      }
+    }
+    previousGray = nextGray;
+    previousTiles = nextTiles;
+    return changes;
+  }
+
+  private Mat toGray(Mat frame) {
+    Mat gray = new Mat();
+    if (frame.channels() == 4) {
+      Imgproc.cvtColor(frame, gray, Imgproc.COLOR_BGRA2GRAY);
+    } else if (frame.channels() == 3) {
+      Imgproc.cvtColor(frame, gray, Imgproc.COLOR_BGR2GRAY);
+    } else {
+      gray = frame.clone();
+    }
+    return gray;
+  }
+
+  // pixel sums of the tiles using the integral image (one pass over the image)
+  private double[][] tileSums(Mat gray) {
+    int cols = gray.cols();
+    int rows = gray.rows();
+    int nX = (cols + tileSize - 1) / tileSize;
+    int nY = (rows + tileSize - 1) / tileSize;
+    double[][] sums = new double[nY][nX];
+    Mat integral = new Mat();
+    Imgproc.integral(gray, integral, CvType.CV_64F);
+    double[] top = new double[cols + 1];
+    double[] bottom = new double[cols + 1];
+    integral.get(0, 0, top);
+    for (int ty = 0; ty < nY; ty++) {
+      integral.get(Math.min(rows, (ty + 1) * tileSize), 0, bottom);
+      for (int tx = 0; tx < nX; tx++) {
+        int x0 = tx * tileSize;
+        int x1 = Math.min(cols, x0 + tileSize);
+        sums[ty][tx] = bottom[x1] - bottom[x0] - top[x1] + top[x0];
+      }
+      double[] swap = top;
+      top = bottom;
+      bottom = swap;
+    }
+    return sums;
+  }
+
+  // bounding rectangles (in pixels, with margin) of the groups of connected changed tiles
+  private List<Rectangle> getDirtyAreas(double[][] nextTiles, int cols, int rows) {
+    int nY = nextTiles.length;
+    int nX = nY > 0 ? nextTiles[0].length : 0;
+    boolean[][] dirty = new boolean[nY][nX];
+    boolean hasDirty = false;
+    for (int ty = 0; ty < nY; ty++) {
+      for (int tx = 0; tx < nX; tx++) {
+        dirty[ty][tx] = nextTiles[ty][tx] != previousTiles[ty][tx];
+        hasDirty |= dirty[ty][tx];
+      }
+    }
+    List<Rectangle> areas = new ArrayList<>();
+    if (!hasDirty) {
+      return areas;
+    }
+    Rectangle frame = new Rectangle(0, 0, cols, rows);
+    for (int ty = 0; ty < nY; ty++) {
+      for (int tx = 0; tx < nX; tx++) {
+        if (!dirty[ty][tx]) {
+          continue;
+        }
+        int minX = tx, maxX = tx, minY = ty, maxY = ty;
+        LinkedList<int[]> todo = new LinkedList<>();
+        todo.add(new int[]{tx, ty});
+        dirty[ty][tx] = false;
+        while (!todo.isEmpty()) {
+          int[] tile = todo.removeFirst();
+          minX = Math.min(minX, tile[0]);
+          maxX = Math.max(maxX, tile[0]);
+          minY = Math.min(minY, tile[1]);
+          maxY = Math.max(maxY, tile[1]);
+          for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+              int x = tile[0] + dx;
+              int y = tile[1] + dy;
+              if (x >= 0 && x < nX && y >= 0 && y < nY && dirty[y][x]) {
+                dirty[y][x] = false;
+                todo.add(new int[]{x, y});
+              }
+            }
+          }
+        }
+        Rectangle area = new Rectangle(minX * tileSize - tileMargin, minY * tileSize - tileMargin,
+            (maxX - minX + 1) * tileSize + 2 * tileMargin, (maxY - minY + 1) * tileSize + 2 * tileMargin);
+        addArea(areas, area.intersection(frame));
+      }
+    }
+    return areas;
+  }
+
+  // overlapping areas are merged, so that no change is reported twice
+  private void addArea(List<Rectangle> areas, Rectangle area) {
+    boolean merged = true;
+    while (merged) {
+      merged = false;
+      for (Rectangle other : areas) {
+        if (other.intersects(area)) {
+          areas.remove(other);
+          area = area.union(other);
+          merged = true;
+          break;
+        }
+      }
+    }
+    areas.add(area);
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script.support;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.sikuli.script.Element;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * INTERNAL USE: an image prepared for matching (target without alpha channel, mask, statistics)
+ * <p>compiled once and cached with the image (see Element.getCompiledTarget()),
+ * so repeated finds of the same target do no preprocessing.
+ * The target is a copy owned by the CompiledTarget (not the image's content, that might be reloaded)
+ * and never changed after compile - it can be used by parallel finds.</p>
+ */
+public class CompiledTarget {
+
+  private static final double minThreshhold = 1.0E-5;
+  private static final int resizeMinDownSample = 12;
+
+  private final Mat maskSource;
+  private final Mat target;
+  private final Mat mask;
+
+  private double stdDev = 0;
+  private double mean = 0;
+  private int[] meanColor = new int[0];
+  private boolean plain = false;
+  private boolean black = false;
+  private boolean white = false;
+  private boolean gray = false;
+  private double resizeFactor = 1;
+
+  private Mat inverted = null;
+  // downsized versions of the target (key: the resize factor)
+  private final Map<Double, Mat> levels = new ConcurrentHashMap<>();
+
+  /**
+   * @param content     the image content (resized if needed), an alpha channel is taken as mask
+   * @param maskSource  the content of a mask image (might be null)
+   * @param mask        the mask made from maskSource (null: none)
+   * @param blackAsMask the black pixels of the content are taken as mask
+   * @return the compiled target
+   */
+  public static CompiledTarget compile(Mat content, Mat maskSource, Mat mask, boolean blackAsMask) {
+    List<Mat> mats = SXOpenCV.extractMask(content, !blackAsMask);
+    Mat target = mats.get(0);
+    if (target == content) {
+      // no alpha channel: the content itself was returned
+      target = content.clone();
+    }
+    Mat targetMask = mats.get(1);
+    if (null != mask && !mask.empty()) {
+      targetMask = mask;
+    }
+    return new CompiledTarget(target, targetMask, maskSource);
+  }
+
+  /**
+   * @param mask the mask image (might be null)
+   * @return identifies the mask in the variant of a compiled target (see Element.getCompiledTarget())
+   */
+  public static String getMaskKey(Element mask) {
+    if (null == mask) {
+      return "-";
+    }
+    if (null != mask.url()) {
+      return mask.url().toString();
+    }
+    return "@" + Integer.toHexString(System.identityHashCode(mask));
+  }
+
+  public CompiledTarget(Mat target, Mat mask, Mat maskSource) {
+    this.target = target;
+    this.mask = mask;
+    this.maskSource = maskSource;
+    setAttributes();
+  }
+
+  /**
+   * @param maskSource the current content of the mask image (might be null)
+   * @return true if this target was compiled with this mask
+   */
+  public boolean isFor(Mat maskSource) {
+    return this.maskSource == maskSource;
+  }
+
+  private void setAttributes() {
+    //TODO plaincolor/black with masking
+    gray = target.channels() == 1;
+    resizeFactor = Math.min(((double) target.width()) / resizeMinDownSample,
+        ((double) target.height()) / resizeMinDownSample);
+    resizeFactor = Math.max(1.0, resizeFactor);
+
+    Mat check = target;
+    if (!mask.empty()) {
+      check = SXOpenCV.newMat();
+      Core.multiply(target, mask, check);
+    }
+    MatOfDouble pMean = new MatOfDouble();
+    MatOfDouble pStdDev = new MatOfDouble();
+    Core.meanStdDev(check, pMean, pStdDev);
+
+    double sum = 0.0;
+    for (double value : pStdDev.toArray()) {
+      sum += value;
+    }
+    stdDev = sum;
+    plain = sum < minThreshhold;
+
+    sum = 0.0;
+    double[] arr = pMean.toArray();
+    meanColor = new int[arr.length];
+    for (int i = 0; i < arr.length; i++) {
+      meanColor[i] = (int) arr[i];
+      sum += arr[i];
+    }
+    mean = sum;
+    black = sum < minThreshhold && plain;
+    if (meanColor.length > 1) {
+      white = isMeanColorEqual(Color.WHITE);
+    }
+  }
+
+  private boolean isMeanColorEqual(Color otherColor) {
+    Color col = getMeanColor();
+    int r = (col.getRed() - otherColor.getRed()) * (col.getRed() - otherColor.getRed());
+    int g = (col.getGreen() - otherColor.getGreen()) * (col.getGreen() - otherColor.getGreen());
+    int b = (col.getBlue() - otherColor.getBlue()) * (col.getBlue() - otherColor.getBlue());
+    return Math.sqrt(r + g + b) < minThreshhold;
+  }
+
+  /**
+   * sets the statistics as attributes of the element
+   *
+   * @param element the Element (usually the Image, that was compiled)
+   */
+  public void applyTo(Element element) {
+    element.gray(gray);
+    element.stdDev(stdDev);
+    element.plain(plain);
+    element.mean(mean);
+    element.black(black);
+    if (meanColor.length > 1) {
+      element.white(white);
+      element.meanColor(getMeanColor());
+    }
+  }
+
+  public Mat getTarget() {
+    return target;
+  }
+
+  public Mat getMask() {
+    return mask;
+  }
+
+  /**
+   * @return the inverted target (matching of black targets)
+   */
+  public synchronized Mat getInverted() {
+    if (null == inverted) {
+      inverted = SXOpenCV.newMat();
+      Core.bitwise_not(target, inverted);
+    }
+    return inverted;
+  }
+
+  /**
+   * @param factor the target is downsized by (size / factor)
+   * @return the downsized target
+   */
+  public Mat getLevel(double factor) {
+    return levels.computeIfAbsent(factor, f -> {
+      Mat level = SXOpenCV.newMat();
+      Imgproc.resize(target, level, new Size(target.cols() / f, target.rows() / f), 0, 0, Imgproc.INTER_AREA);
+      return level;
+    });
+  }
+
+  public double getStdDev() {
+    return stdDev;
+  }
+
+  public double getMean() {
+    return mean;
+  }
+
+  public Color getMeanColor() {
+    return new Color(meanColor[2], meanColor[1], meanColor[0]);
+  }
+
+  public boolean isPlain() {
+    return plain;
+  }
+
+  public boolean isBlack() {
+    return black;
+  }
+
+  public boolean isWhite() {
+    return white;
+  }
+
+  public boolean isGray() {
+    return gray;
+  }
+
+  public double getResizeFactor() {
+    return resizeFactor;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("CompiledTarget: (%dx%d) mask: %s (stdDev: %.4f mean: %.4f)",
+        target.cols(), target.rows(), !mask.empty(), stdDev, mean);
+  }
+}
@@ -157,6 +157,7 @@ public class Device {
 		} else if (isNotLocal(owner)) {
 			return false;
 		}
+    ScriptAbort.check();
     if ((blocked || inUse) && this.owner == owner) {
       return true;
     }
@@ -164,6 +165,7 @@ public class Device {
       try {
         wait();
       } catch (InterruptedException e) {
+        ScriptAbort.check();
       }
     }
     if (!inUse) {
@@ -320,6 +322,7 @@ public class Device {
     try {
       Thread.sleep(time);
     } catch (InterruptedException e) {
+      ScriptAbort.check();
     }
   }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script.support;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+import org.sikuli.script.ImagePath;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * INTERNAL USE: the shared pool of threads for parallel find operations (findAny, findBest, ...)
+ * <p>size: Settings.FindThreads (0 or less: number of available cores)</p>
+ */
+public class FindPool {
+
+  private static String me = "FindPool: ";
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  private static final String threadPrefix = "FindPool-";
+
+  private static ExecutorService pool = null;
+  private static int poolSize = 0;
+  private static AtomicInteger threadCount = new AtomicInteger(0);
+
+  /**
+   * the executor to be used for sub-finds<br>
+   * when already running in a pool thread, the sub-finds are run in the calling thread,
+   * to avoid that nested parallel finds wait for each other.<br>
+   * The sub-finds use the bundle path of the calling thread (scripts running at the same time)
+   *
+   * @return the shared pool or a direct executor
+   */
+  public static Executor get() {
+    if (isPoolThread()) {
+      return Runnable::run;
+    }
+    Executor pool = getPool();
+    return task -> pool.execute(ImagePath.withThreadBundle(task));
+  }
+
+  private static synchronized ExecutorService getPool() {
+    int wanted = Settings.FindThreads > 0 ? Settings.FindThreads : Runtime.getRuntime().availableProcessors();
+    if (null == pool || wanted != poolSize) {
+      if (null != pool) {
+        pool.shutdown();
+      }
+      poolSize = wanted;
+      pool = Executors.newFixedThreadPool(poolSize, runnable -> {
+        Thread thread = new Thread(runnable, threadPrefix + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+      log(3, "started with %d threads", poolSize);
+    }
+    return pool;
+  }
+
+  public static boolean isPoolThread() {
+    return Thread.currentThread().getName().startsWith(threadPrefix);
+  }
+
+  public static synchronized void stop() {
+    if (null != pool) {
+      pool.shutdownNow();
+      pool = null;
+    }
+  }
+}
@@ -26,6 +26,15 @@ public interface IRobot {
    void releaseModifiers(int modifiers);
    void typeChar(char character, KeyMode mode);
    void typeKey(int key);
+   /**
+    * types the characters with the given modifiers held for each character,
+    * synchronizing with the event queue only every Settings.TypeBatchSize characters
+    *
+    * @param text      the characters to type
+    * @param modifiers KeyModifier mask (0 for none)
+    * @param pause     milliseconds to wait after each character (0 for none)
+    */
+   void typeText(String text, int modifiers, int pause);
    void typeStarts();
    void typeEnds();
    void mouseMove(int x, int y);
@@ -9,6 +9,7 @@ import org.sikuli.script.ScreenImage;
 
 import java.awt.Rectangle;
 import java.io.IOException;
+import java.util.function.Supplier;
 
 /**
  * INTERNAL USE
@@ -65,4 +66,36 @@ public interface IScreen {
   boolean isValid();
 	String isValidWithMessage();
 	String getDeviceDescription();
+
+	/**
+	 * for screens, that know about updates of their content (e.g. VNC framebuffer updates)
+	 *
+	 * @return the count of updates so far or -1 if not supported
+	 */
+	default long getUpdateCount() {
+		return -1;
+	}
+
+	/**
+	 * waits until the given area was updated after the given update count
+	 *
+	 * @param area    the area of interest
+	 * @param since   an update count got before with getUpdateCount()
+	 * @param timeout max milliseconds to wait
+	 * @return true if the area was updated, false after timeout (or not supported)
+	 */
+	default boolean waitForUpdate(Rectangle area, long since, long timeout) {
+		return false;
+	}
+
+	/**
+	 * runs a find operation on this screen - screens might limit the finds running at the same time
+	 *
+	 * @param find the find operation
+	 * @param <T>  the result type
+	 * @return the result of the find operation
+	 */
+	default <T> T runFind(Supplier<T> find) {
+		return find.get();
+	}
 }
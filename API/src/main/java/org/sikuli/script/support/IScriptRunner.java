@@ -112,6 +112,31 @@ public interface IScriptRunner {
     }
 
     private File baseFolder = null;
+
+    public PrintStream getStdout() {
+      return stdout;
+    }
+
+    public PrintStream getStderr() {
+      return stderr;
+    }
+
+    /**
+     * the script output of this run only (e.g. a server task), other runs are not affected
+     * (supported by the Jython runner, others write to System.out/err)
+     *
+     * @param stdout the script's standard output
+     * @param stderr the script's error output
+     * @return this to allow chaining
+     */
+    public Options setOutput(PrintStream stdout, PrintStream stderr) {
+      this.stdout = stdout;
+      this.stderr = stderr;
+      return this;
+    }
+
+    private PrintStream stdout = null;
+    private PrintStream stderr = null;
   }
 
   class EffectiveRunner {
@@ -3,13 +3,27 @@
  */
 package org.sikuli.script.support;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
 import org.sikuli.script.Image;
 
 import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * EXPERIMENTAL --- INTERNAL USE ONLY<br>
@@ -17,6 +31,12 @@ import java.util.Map;
  */
 public class ImageGroup {
 
+  private static String me = "ImageGroup: ";
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
   private static Map<String, ImageGroup> imageGroups =
           Collections.synchronizedMap(new HashMap<String, ImageGroup>());
 
@@ -95,23 +115,233 @@ public class ImageGroup {
     return true;
   }
 
+  //<editor-fold desc="image facts (persistent lastSeen)">
+  /*
+   * the lastSeen of the images in a folder (bundle) is kept in a sidecar file in this folder:
+   * JSON {"image.png": [x, y, w, h, score%, misses], ...}
+   * - loaded with the bundle setup or when an image of the folder is used first
+   * - saved in background shortly after a change and at JVM exit
+   * - an entry ages out after Settings.LastSeenMaxMisses checks of the lastSeen area in a row failed
+   */
+  public static final String FACTS_FILE = ".sikulix-lastseen.json";
+
+  private static final int FACT_SCORE = 4;
+  private static final int FACT_MISSES = 5;
+
+  private static final Map<File, ImageGroup> factGroups = new HashMap<>();
+  private static ScheduledExecutorService factSaver = null;
+
+  private static final AtomicLong checks = new AtomicLong(0);
+  private static final AtomicLong hits = new AtomicLong(0);
+  private static final AtomicLong agedOut = new AtomicLong(0);
+
+  private File factsFile = null;
+  private boolean factsDirty = false;
+  private boolean factsSaveScheduled = false;
+
+  private ImageGroup(File folder) {
+    name = folder.getName();
+    path = folder.getAbsolutePath();
+    valid = true;
+    factsFile = new File(folder, FACTS_FILE);
+  }
+
+  /**
+   * @param folder an image folder (e.g. the bundle)
+   * @return the group holding the image facts of the folder (loaded if needed),
+   * null if Settings.LastSeenPersist is off
+   */
+  public static ImageGroup forFolder(File folder) {
+    if (!Settings.LastSeenPersist || null == folder) {
+      return null;
+    }
+    ImageGroup group;
+    synchronized (factGroups) {
+      group = factGroups.get(folder);
+      if (null != group) {
+        return group;
+      }
+      group = new ImageGroup(folder);
+      factGroups.put(folder, group);
+      if (null == factSaver) {
+        factSaver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+          Thread thread = new Thread(runnable, "ImageGroup-facts");
+          thread.setDaemon(true);
+          return thread;
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(ImageGroup::saveAllImageFacts));
+      }
+    }
+    group.loadImageFacts();
+    return group;
+  }
+
+  /**
+   * @param img an image loaded from a file
+   * @return the group of the image's folder (null if not a file or Settings.LastSeenPersist is off)
+   */
+  public static ImageGroup forImage(Image img) {
+    if (!Settings.LastSeenPersist) {
+      return null;
+    }
+    URL url = img.url();
+    if (null == url || !"file".equals(url.getProtocol())) {
+      return null;
+    }
+    return forFolder(new File(url.getPath()).getParentFile());
+  }
+
+  private static String getFactsKey(Image img) {
+    URL url = img.url();
+    if (null != url && "file".equals(url.getProtocol())) {
+      return new File(url.getPath()).getName();
+    }
+    return img.getName();
+  }
+
   // triggered when lastSeen is stored
   public int[] addImageFacts(Image img, Rectangle r, double score) {
-    int[] facts = new int[5];
+    int[] facts = new int[6];
     facts[0] = r.x;
     facts[1] = r.y;
     facts[2] = r.width;
     facts[3] = r.height;
-    facts[4] = (int) (score*100);
-    images.put(img.getName(), facts);
+    facts[FACT_SCORE] = (int) (score * 100);
+    int[] oldFacts = images.put(getFactsKey(img), facts);
+    if (null == oldFacts || !Arrays.equals(oldFacts, facts)) {
+      factsChanged();
+    }
     return facts;
   }
 
+  /**
+   * @param img the image
+   * @return x, y, w, h, score (percent) of the last seen area (null if not known)
+   */
+  public int[] getImageFacts(Image img) {
+    return images.get(getFactsKey(img));
+  }
+
+  /**
+   * @param img   the image, whose last seen area was searched first
+   * @param found true if it was still there
+   * @return false if the entry has aged out (removed)
+   */
+  public boolean checkedImageFacts(Image img, boolean found) {
+    checks.incrementAndGet();
+    String key = getFactsKey(img);
+    synchronized (images) {
+      int[] facts = images.get(key);
+      if (found) {
+        hits.incrementAndGet();
+        if (null != facts && facts[FACT_MISSES] > 0) {
+          facts[FACT_MISSES] = 0;
+          factsChanged();
+        }
+        return true;
+      }
+      if (null == facts) {
+        return false;
+      }
+      facts[FACT_MISSES]++;
+      if (facts[FACT_MISSES] >= Math.max(1, Settings.LastSeenMaxMisses)) {
+        images.remove(key);
+        agedOut.incrementAndGet();
+        log(3, "aged out: %s (%s)", key, name);
+        factsChanged();
+        return false;
+      }
+      factsChanged();
+      return true;
+    }
+  }
+
+  private void factsChanged() {
+    synchronized (this) {
+      factsDirty = true;
+      if (factsSaveScheduled || null == factsFile) {
+        return;
+      }
+      factsSaveScheduled = true;
+    }
+    factSaver.schedule(() -> {
+      synchronized (this) {
+        factsSaveScheduled = false;
+      }
+      saveImageFacts();
+    }, 2, TimeUnit.SECONDS);
+  }
+
   public boolean loadImageFacts() {
-    return true;
+    if (null == factsFile || !factsFile.exists()) {
+      return true;
+    }
+    try {
+      Map<String, int[]> loaded = new ObjectMapper().readValue(factsFile, new TypeReference<Map<String, int[]>>() {
+      });
+      int count = 0;
+      for (Map.Entry<String, int[]> entry : loaded.entrySet()) {
+        int[] facts = entry.getValue();
+        if (null == facts || facts.length < 5) {
+          continue;
+        }
+        images.put(entry.getKey(), facts.length == 6 ? facts : Arrays.copyOf(facts, 6));
+        count++;
+      }
+      log(3, "loaded %d image facts: %s", count, factsFile);
+      return true;
+    } catch (IOException e) {
+      log(-1, "not loaded: %s (%s)", factsFile, e.getMessage());
+      return false;
+    }
   }
 
   public boolean saveImageFacts() {
-    return true;
+    Map<String, int[]> facts;
+    synchronized (this) {
+      if (!factsDirty || null == factsFile) {
+        return true;
+      }
+      factsDirty = false;
+    }
+    synchronized (images) {
+      facts = new HashMap<>();
+      for (Map.Entry<String, int[]> entry : images.entrySet()) {
+        facts.put(entry.getKey(), entry.getValue().clone());
+      }
+    }
+    try {
+      File fTemp = File.createTempFile("lastseen", ".tmp", factsFile.getParentFile());
+      new ObjectMapper().writeValue(fTemp, facts);
+      Files.move(fTemp.toPath(), factsFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      log(3, "saved %d image facts: %s (%s)", facts.size(), factsFile, getStats());
+      return true;
+    } catch (IOException e) {
+      // e.g. a read only bundle: kept in memory only
+      log(-1, "not saved: %s (%s)", factsFile, e.getMessage());
+      factsFile = null;
+      return false;
+    }
+  }
+
+  private static void saveAllImageFacts() {
+    ArrayList<ImageGroup> groups;
+    synchronized (factGroups) {
+      groups = new ArrayList<>(factGroups.values());
+    }
+    for (ImageGroup group : groups) {
+      group.saveImageFacts();
+    }
+  }
+
+  /**
+   * @return how often the lastSeen area was checked first and the image was still there
+   */
+  public static String getStats() {
+    long checked = checks.get();
+    long found = hits.get();
+    return String.format("lastSeen: checks: %d hits: %d (%.0f%%) aged out: %d",
+        checked, found, checked == 0 ? 0.0 : 100.0 * found / checked, agedOut.get());
   }
+  //</editor-fold>
 }
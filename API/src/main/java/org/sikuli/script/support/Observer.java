@@ -7,7 +7,9 @@ import org.sikuli.basics.Debug;
 import org.sikuli.basics.Settings;
 import org.sikuli.script.*;
 
+import java.awt.Rectangle;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * INTERNAL USE implements the observe action for a region and calls the ObserverCallBacks
@@ -48,6 +50,7 @@ public class Observer {
 
   public void initialize() {
     log(3, "resetting observe states for " + observedRegion.toStringShort());
+    changeDetector.reset();
     synchronized (eventNames) {
       for (String name : eventNames.keySet()) {
         if (eventStates.get(name) != State.INACTIVE) {
@@ -154,16 +157,36 @@ public class Observer {
     }
   }
 
+  private static class PatternResult {
+    Match match = null;
+    boolean hasMatch = false;
+    long now = 0;
+  }
+
+  private long lastScanTime = 0;
+
+  /**
+   * @return the time in msec the last check of the APPEAR/VANISH patterns took
+   */
+  public long getLastScanTime() {
+    return lastScanTime;
+  }
+
   private boolean checkPatterns(ScreenImage simg) {
     log(lvl + 1, "update: checking patterns");
     if (!observedRegion.isObserving()) {
       return false;
     }
-    Finder finder = null;
+    long scanStart = (new Date()).getTime();
+    List<String> names = new ArrayList<>();
+    Map<String, Image> images = new HashMap<>();
     for (String name : eventStates.keySet()) {
       if (!patternsToCheck()) {
         continue;
       }
+      if (eventTypes.get(name) == ObserveEvent.Type.CHANGE) {
+        continue;
+      }
       if (eventStates.get(name) == State.REPEAT) {
         if ((new Date()).getTime() < eventRepeatWaitTimes.get(name)) {
           continue;
@@ -181,49 +204,35 @@ public class Observer {
         eventStates.put(name, State.MISSING);
         continue;
       }
-      Match match = null;
-      boolean hasMatch = false;
-      long lastSearchTime;
-      long now = 0;
-//      if (!Settings.UseImageFinder && Settings.CheckLastSeen && null != img.getLastSeen()) {
-      if (Settings.CheckLastSeen && null != img.getLastSeen()) {
-        Region r = Region.create(img.getLastSeen());
-        if (observedRegion.contains(r)) {
-          lastSearchTime = (new Date()).getTime();
-          Finder f = new Finder(new Screen().capture(r), r);
-          f.find(new Pattern(img).similar(Settings.CheckLastSeenSimilar));
-          if (f.hasNext()) {
-            log(lvl + 1, "checkLastSeen: still there");
-            match = new Match(new Region(img.getLastSeen()), img.getLastSeenScore());
-            match.setTimes(0, (new Date()).getTime() - lastSearchTime);
-            hasMatch = true;
-          } else {
-            log(lvl + 1, "checkLastSeen: not there");
-          }
-        }
+      names.add(name);
+      images.put(name, img);
+    }
+    Map<String, PatternResult> results = new HashMap<>();
+    if (Settings.ObserveBatched && names.size() > 0) {
+      // one capture for all patterns, searched in parallel
+      simg.getContent();
+      Map<String, CompletableFuture<PatternResult>> subs = new HashMap<>();
+      for (String name : names) {
+        subs.put(name, CompletableFuture.supplyAsync(
+                () -> findPattern(eventNames.get(name), images.get(name), simg), FindPool.get()));
       }
-      if (match == null) {
-        if (finder == null) {
-//          if (Settings.UseImageFinder) {
-//            finder = new ImageFinder(observedRegion);
-//            ((ImageFinder) finder).setIsMultiFinder();
-//          } else {
-//            finder = new Finder(simg, observedRegion);
-//          }
-          finder = new Finder(simg, observedRegion);
-        }
-        lastSearchTime = (new Date()).getTime();
-        now = (new Date()).getTime();
-        finder.find(img);
-        if (finder.hasNext()) {
-          match = finder.next();
-          match.setTimes(0, now - lastSearchTime);
-          if (match.score() >= getSimiliarity(ptn)) {
-            hasMatch = true;
-            img.setLastSeen(match.getRect(), match.score());
-          }
-        }
+      CompletableFuture.allOf(subs.values().toArray(new CompletableFuture[0])).join();
+      for (String name : names) {
+        results.put(name, subs.get(name).join());
       }
+    }
+    for (String name : names) {
+      if (!patternsToCheck()) {
+        continue;
+      }
+      Object ptn = eventNames.get(name);
+      PatternResult result = results.get(name);
+      if (null == result) {
+        result = findPattern(ptn, images.get(name), simg);
+      }
+      Match match = result.match;
+      boolean hasMatch = result.hasMatch;
+      long now = result.now;
       if (hasMatch) {
         eventMatches.put(name, match);
         log(lvl + 1, "(%s): %s match: %s in:%s", eventTypes.get(name), ptn.toString(),
@@ -248,12 +257,61 @@ public class Observer {
         }
       }
       if (!observedRegion.isObserving()) {
+        lastScanTime = (new Date()).getTime() - scanStart;
         return false;
       }
     }
+    lastScanTime = (new Date()).getTime() - scanStart;
+    log(lvl + 1, "update: %d patterns checked in %d msec", names.size(), lastScanTime);
     return patternsToCheck();
   }
 
+  private PatternResult findPattern(Object ptn, Image img, ScreenImage simg) {
+    PatternResult result = new PatternResult();
+    long lastSearchTime;
+//      if (!Settings.UseImageFinder && Settings.CheckLastSeen && null != img.getLastSeen()) {
+    if (Settings.CheckLastSeen && null != img.getLastSeen()) {
+      Region r = Region.create(img.getLastSeen());
+      if (observedRegion.contains(r)) {
+        lastSearchTime = (new Date()).getTime();
+        Finder f;
+        if (Settings.ObserveBatched) {
+          Rectangle inCapture = new Rectangle(r.x - observedRegion.x, r.y - observedRegion.y, r.w, r.h);
+          f = new Finder(simg.getContent().submat(inCapture.y, inCapture.y + inCapture.height,
+                  inCapture.x, inCapture.x + inCapture.width));
+        } else {
+          f = new Finder(new Screen().capture(r), r);
+        }
+        f.find(new Pattern(img).similar(Settings.CheckLastSeenSimilar));
+        if (f.hasNext()) {
+          log(lvl + 1, "checkLastSeen: still there");
+          img.lastSeenChecked(true);
+          result.match = new Match(new Region(img.getLastSeen()), img.getLastSeenScore());
+          result.match.setTimes(0, (new Date()).getTime() - lastSearchTime);
+          result.hasMatch = true;
+        } else {
+          log(lvl + 1, "checkLastSeen: not there");
+          img.lastSeenChecked(false);
+        }
+      }
+    }
+    if (result.match == null) {
+      Finder finder = new Finder(simg, observedRegion);
+      lastSearchTime = (new Date()).getTime();
+      result.now = (new Date()).getTime();
+      finder.find(img);
+      if (finder.hasNext()) {
+        result.match = finder.next();
+        result.match.setTimes(0, result.now - lastSearchTime);
+        if (result.match.score() >= getSimiliarity(ptn)) {
+          result.hasMatch = true;
+          img.setLastSeen(result.match.getRect(), result.match.score());
+        }
+      }
+    }
+    return result;
+  }
+
   private boolean patternsToCheck() {
     for (String name : eventNames.keySet()) {
       if (eventTypes.get(name) == ObserveEvent.Type.CHANGE) {
@@ -289,15 +347,16 @@ public class Observer {
     return min;
   }
 
-  private ScreenImage lastImage = null;
+  // keeps the previous frame (gray) for the next scan
+  private ChangeDetector changeDetector = new ChangeDetector();
 
   private boolean checkChanges(ScreenImage img) {
     if (numChangeObservers == 0) {
       return false;
     }
     boolean leftToDo = false;
-    if (lastImage == null) {
-      lastImage = img;
+    if (!changeDetector.hasPrevious()) {
+      changeDetector.setPrevious(img.getContent());
       return true;
     }
     for (String name : eventNames.keySet()) {
@@ -314,8 +373,9 @@ public class Observer {
     if (leftToDo) {
       leftToDo = false;
       log(lvl + 1, "update: checking changes");
-      Finder finder = new Finder(lastImage);
-      List<Region> result = finder.findChanges(img);
+      // as with findChanges: the thresholds set with Finder.setFindChanges...()
+      changeDetector.setThresholds(Finder.getFindChangesPixelDiff(), Finder.getFindChangesImageDiff());
+      List<Region> result = changeDetector.findChanges(img.getContent());
       if (result.size() > 0) {
         callChangeObserver(result);
         if (shouldStopOnFirstEvent) {
@@ -324,7 +384,6 @@ public class Observer {
       } else {
         leftToDo = true;
       }
-      lastImage = img;
     }
     return leftToDo |= numChangeCallBacks > 0;
   }
@@ -3,9 +3,8 @@
  */
 package org.sikuli.script.support;
 
-import org.sikuli.basics.Animator;
 import org.sikuli.basics.AnimatorOutQuarticEase;
-import org.sikuli.basics.AnimatorTimeBased;
+import org.sikuli.basics.AnimatorTimeValueFunction;
 import org.sikuli.basics.Settings;
 import org.sikuli.basics.Debug;
 
@@ -21,6 +20,10 @@ import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * INTERNAL USE Implementation of IRobot making a DesktopRobot using java.awt.Robot
@@ -121,17 +124,45 @@ public class RobotDesktop extends Robot implements IRobot {
       checkMousePosition(dest);
       return;
     }
-    Animator aniX = new AnimatorTimeBased(
-            new AnimatorOutQuarticEase(src.x, dest.x, ms));
-    Animator aniY = new AnimatorTimeBased(
-            new AnimatorOutQuarticEase(src.y, dest.y, ms));
-    float x = 0, y = 0;
-    while (aniX.running()) {
-      x = aniX.step();
-      y = aniY.step();
-      doMouseMove((int) x, (int) y);
+    AnimatorTimeValueFunction curveX = new AnimatorOutQuarticEase(src.x, dest.x, ms);
+    AnimatorTimeValueFunction curveY = new AnimatorOutQuarticEase(src.y, dest.y, ms);
+    // one step per frame at Settings.MoveMouseRate, sleeping in between
+    long frameNanos = 1000000000L / Math.max(10, Math.min(1000, Settings.MoveMouseRate));
+    long begin = System.nanoTime();
+    int lastX = src.x, lastY = src.y;
+    int events = 0;
+    for (long frame = 1; ; frame++) {
+      long due = begin + frame * frameNanos;
+      long wait;
+      while ((wait = due - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+        LockSupport.parkNanos(wait);
+      }
+      long elapsed = (System.nanoTime() - begin) / 1000000;
+      boolean isEnd = curveX.isEnd(elapsed) || Thread.currentThread().isInterrupted();
+      int x = isEnd ? dest.x : (int) curveX.getValue(elapsed);
+      int y = isEnd ? dest.y : (int) curveY.getValue(elapsed);
+      if (x != lastX || y != lastY) {
+        doMouseMove(x, y);
+        lastX = x;
+        lastY = y;
+        events++;
+      }
+      if (isEnd) {
+        break;
+      }
     }
-    checkMousePosition(new Location((int) x, (int) y));
+    lastMoveEvents = events;
+    Debug.log(4, "RobotDesktop: smoothMove: %d moves in %d msec", events, (System.nanoTime() - begin) / 1000000);
+    checkMousePosition(new Location(lastX, lastY));
+  }
+
+  private int lastMoveEvents = 0;
+
+  /**
+   * @return number of mouse move events emitted by the last smoothMove
+   */
+  public int getLastMoveEvents() {
+    return lastMoveEvents;
   }
 
   private void doMouseMove(int x, int y) {
@@ -311,25 +342,7 @@ public class RobotDesktop extends Robot implements IRobot {
       delay(20);
     }
 
-    // on Windows we detect the current layout in KeyboardLayout.
-    // Since this layout is not compatible to AWT Robot, we have to use
-    // the User32 API to simulate the key press
-    if (Settings.AutoDetectKeyboardLayout && Settings.isWindows()) {
-      WinUser.INPUT input = new WinUser.INPUT();
-      input.type = new WinDef.DWORD(WinUser.INPUT.INPUT_KEYBOARD);
-      input.input.setType("ki");
-      input.input.ki.wScan = new WinDef.WORD(0);
-      input.input.ki.time = new WinDef.DWORD(0);
-      input.input.ki.dwExtraInfo = new BaseTSD.ULONG_PTR(0);
-      input.input.ki.wVk = new WinDef.WORD(keyCode);
-      input.input.ki.dwFlags = new WinDef.DWORD(0);
-
-      User32.INSTANCE.SendInput(new WinDef.DWORD(1),
-          (WinUser.INPUT[]) input.toArray(1), input.size());
-    }else{
-      keyPress(keyCode);
-    }
-
+    sendKeyEvent(keyCode, true);
 
     if (stdAutoDelay == 0) {
       delay(stdDelay);
@@ -371,9 +384,18 @@ public class RobotDesktop extends Robot implements IRobot {
   private void doKeyRelease(int keyCode) {
     logRobot(stdAutoDelay, "KeyRelease: WaitForIdle: %s - Delay: %d");
     setAutoDelay(stdAutoDelay);
+    sendKeyEvent(keyCode, false);
+
+    if (stdAutoDelay == 0) {
+      delay(stdDelay);
+    }
+    logRobot("KeyRelease: extended delay: %d", stdMaxElapsed);
+  }
+
+  private void sendKeyEvent(int keyCode, boolean press) {
     // on Windows we detect the current layout in KeyboardLayout.
     // Since this layout is not compatible to AWT Robot, we have to use
-    // the User32 API to simulate the key release
+    // the User32 API to simulate the key press/release
     if (Settings.AutoDetectKeyboardLayout && Settings.isWindows()) {
       WinUser.INPUT input = new WinUser.INPUT();
       input.type = new WinDef.DWORD(WinUser.INPUT.INPUT_KEYBOARD);
@@ -382,19 +404,87 @@ public class RobotDesktop extends Robot implements IRobot {
       input.input.ki.time = new WinDef.DWORD(0);
       input.input.ki.dwExtraInfo = new BaseTSD.ULONG_PTR(0);
       input.input.ki.wVk = new WinDef.WORD(keyCode);
-      input.input.ki.dwFlags = new WinDef.DWORD(
-          WinUser.KEYBDINPUT.KEYEVENTF_KEYUP);
+      input.input.ki.dwFlags = new WinDef.DWORD(press ? 0 : WinUser.KEYBDINPUT.KEYEVENTF_KEYUP);
 
       User32.INSTANCE.SendInput(new WinDef.DWORD(1),
           (WinUser.INPUT[]) input.toArray(1), input.size());
-    }else{
+    } else if (press) {
+      keyPress(keyCode);
+    } else {
       keyRelease(keyCode);
     }
+  }
 
-    if (stdAutoDelay == 0) {
-      delay(stdDelay);
+  @Override
+  public void typeText(String text, int modifiers, int pause) {
+    if (text == null || text.isEmpty()) {
+      return;
     }
-    logRobot("KeyRelease: extended delay: %d", stdMaxElapsed);
+    int batchSize = Math.max(1, Settings.TypeBatchSize);
+    // the keycode sequences (KeyboardLayout) are evaluated once per character
+    Map<Character, int[]> keyCodes = new HashMap<>();
+    int[][] sequence = new int[text.length()][];
+    for (int i = 0; i < text.length(); i++) {
+      sequence[i] = keyCodes.computeIfAbsent(text.charAt(i), Key::toJavaKeyCode);
+    }
+    int[] modifierCodes = getModifierKeyCodes(modifiers);
+    Highlight fakeHighlight = null;
+    if (RunTime.get().needsRobotFake()) {
+      fakeHighlight = Highlight.fakeHighlight();
+    }
+    setAutoDelay(0);
+    if (null != fakeHighlight) {
+      delay(20);
+      fakeHighlight.close();
+      delay(20);
+    }
+    long typeStart = new Date().getTime();
+    waitForIdle();
+    for (int i = 0; i < sequence.length; i++) {
+      for (int code : modifierCodes) {
+        sendKeyEvent(code, true);
+      }
+      for (int code : sequence[i]) {
+        sendKeyEvent(code, true);
+      }
+      for (int code : sequence[i]) {
+        sendKeyEvent(code, false);
+      }
+      for (int code : modifierCodes) {
+        sendKeyEvent(code, false);
+      }
+      if (pause > 0) {
+        delay(pause);
+      }
+      if ((i + 1) % batchSize == 0) {
+        waitForIdle();
+      }
+    }
+    waitForIdle();
+    setAutoDelay(stdAutoDelay);
+    long elapsed = Math.max(1, new Date().getTime() - typeStart);
+    Debug.log(3, "RobotDesktop: typeText: %d characters in %d msec (%.1f per second, batch size %d)",
+        sequence.length, elapsed, sequence.length * 1000.0 / elapsed, batchSize);
+  }
+
+  private int[] getModifierKeyCodes(int modifiers) {
+    List<Integer> codes = new ArrayList<>();
+    if (modifiers > 0 && modifiers <= ALL_MODIFIERS) {
+      char[] keys = new char[]{Key.C_SHIFT, Key.C_CTRL, Key.C_ALT, Key.C_META, Key.C_ALTGR};
+      int[] masks = new int[]{KeyModifier.SHIFT, KeyModifier.CTRL, KeyModifier.ALT, KeyModifier.META, KeyModifier.ALTGR};
+      for (int n = 0; n < keys.length; n++) {
+        if ((modifiers & masks[n]) != 0) {
+          for (int code : Key.toJavaKeyCode(keys[n])) {
+            codes.add(code);
+          }
+        }
+      }
+    }
+    int[] result = new int[codes.size()];
+    for (int n = 0; n < result.length; n++) {
+      result[n] = codes.get(n);
+    }
+    return result;
   }
 
   @Override
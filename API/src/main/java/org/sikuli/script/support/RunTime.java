@@ -728,13 +728,25 @@ java.desktop/sun.awt=ALL-UNNAMED
   }
 
   public static String[] resolveRelativeFiles(String[] givenScripts) {
+    return resolveRelativeFiles(givenScripts, get().fWorkDir);
+  }
+
+  /**
+   * like resolveRelativeFiles(givenScripts), but relative to the given work folder
+   * (the global work folder is neither used nor changed)
+   *
+   * @param givenScripts the scripts
+   * @param workDir      the work folder
+   * @return the absolute scripts (? prefix: not found)
+   */
+  public static String[] resolveRelativeFiles(String[] givenScripts, File workDir) {
     String[] runScripts = new String[givenScripts.length];
-    String baseDir = get().fWorkDir.getPath();
+    String baseDir = workDir.getPath();
     for (int i = 0; i < runScripts.length; i++) {
       String givenScript = givenScripts[i];
-      String file = resolveRelativeFile(givenScript, baseDir);
+      String file = resolveRelativeFile(givenScript, baseDir, workDir);
       if (file == null) {
-        file = resolveRelativeFile(givenScript + ".sikuli", baseDir);
+        file = resolveRelativeFile(givenScript + ".sikuli", baseDir, workDir);
         if (file == null) {
           runScripts[i] = "?" + givenScript;
           continue;
@@ -783,6 +795,10 @@ java.desktop/sun.awt=ALL-UNNAMED
    * @return absolute file or null if not found
    */
   public static String resolveRelativeFile(String scriptName, String baseDir) {
+    return resolveRelativeFile(scriptName, baseDir, get().fWorkDir);
+  }
+
+  private static String resolveRelativeFile(String scriptName, String baseDir, File workDir) {
     if (get().runningWindows && (scriptName.startsWith("\\") || scriptName.startsWith("/"))) {
       scriptName = new File(scriptName).getAbsolutePath();
       return scriptName;
@@ -793,7 +809,7 @@ java.desktop/sun.awt=ALL-UNNAMED
       if (inBaseDir.exists()) {
         file = inBaseDir;
       } else {
-        File inWorkDir = new File(get().fWorkDir, scriptName);
+        File inWorkDir = new File(workDir, scriptName);
         if (inWorkDir.exists()) {
           file = inWorkDir;
         } else {
@@ -247,11 +247,15 @@ public class Runner {
     return exitCode;
   }
 
-  public static synchronized int run(String script, String[] args, IScriptRunner.Options options) {
+  public static int run(String script, String[] args, IScriptRunner.Options options) {
     IScriptRunner runner = getRunner(script, options);
-    int retVal;
-    retVal = runner.runScript(script, args, options);
-    return retVal;
+    if (runner instanceof AbstractScriptRunner && ((AbstractScriptRunner) runner).canRunConcurrently()) {
+      // e.g. Jython with interpreter pool
+      return runner.runScript(script, args, options);
+    }
+    synchronized (Runner.class) {
+      return runner.runScript(script, args, options);
+    }
   }
 
   /**
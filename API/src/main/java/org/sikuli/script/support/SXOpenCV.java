@@ -21,10 +21,13 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * INTERNAL: OpenCV related support for other features
@@ -56,8 +59,92 @@ public class SXOpenCV {
     return bImg;
   }
 
+  /**
+   * Mat to BufferedImage: 8-bit gray, BGR and BGRA are copied directly into the image raster
+   * (TYPE_BYTE_GRAY, TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR), other Mat types via PNG encoding
+   *
+   * @param content the Mat
+   * @return the image or null if the Mat is empty
+   */
   public static BufferedImage makeBufferedImage(Mat content) {
-    return makeBufferedImage(content, ".png");
+    if (content.empty()) {
+      return null;
+    }
+    int bType;
+    Mat mat = content;
+    if (content.type() == CvType.CV_8UC1) {
+      bType = BufferedImage.TYPE_BYTE_GRAY;
+    } else if (content.type() == CvType.CV_8UC3) {
+      bType = BufferedImage.TYPE_3BYTE_BGR;
+    } else if (content.type() == CvType.CV_8UC4) {
+      bType = BufferedImage.TYPE_4BYTE_ABGR;
+      mat = new Mat(content.size(), CvType.CV_8UC4);
+      //B 0 - G 1 - R 2 - A 3 -> A 0 - B 1 - G 2 - R 3
+      Core.mixChannels(Arrays.asList(content), Arrays.asList(mat), new MatOfInt(0, 1, 1, 2, 2, 3, 3, 0));
+    } else {
+      return makeBufferedImage(content, ".png");
+    }
+    if (!mat.isContinuous()) {
+      mat = mat.clone();
+    }
+    BufferedImage bImg = new BufferedImage(mat.cols(), mat.rows(), bType);
+    mat.get(0, 0, ((DataBufferByte) bImg.getRaster().getDataBuffer()).getData());
+    return bImg;
+  }
+
+  // the direct buffer for the pixels of TYPE_INT_(A)RGB images - one for all threads:
+  // taken while converting (a concurrent conversion uses a temporary one) and given back afterwards
+  private static final AtomicReference<ByteBuffer> intPixels = new AtomicReference<>();
+
+  // larger buffers are not kept (4K screen: 3840 x 2160 x 4 = 33 MB)
+  private static final int intPixelsMaxKept = 3840 * 2160 * 4;
+
+  private static ByteBuffer takeIntPixels(int size) {
+    ByteBuffer buffer = intPixels.getAndSet(null);
+    if (null == buffer || buffer.capacity() != size) {
+      // the pixel ints 0xAARRGGBB are stored as bytes B G R A
+      buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    buffer.clear();
+    return buffer;
+  }
+
+  private static void giveBackIntPixels(ByteBuffer buffer) {
+    if (buffer.capacity() <= intPixelsMaxKept) {
+      intPixels.set(buffer);
+    }
+  }
+
+  /**
+   * drops the kept pixel buffer (freed by the next garbage collection)
+   */
+  public static void releaseIntPixels() {
+    intPixels.set(null);
+  }
+
+  // the int pixels are bulk copied into the direct buffer,
+  // the conversion (BGRA to BGR or clone) is the only copy into the resulting Mat
+  private static Mat convertIntPixels(BufferedImage bImg, boolean asBGR) {
+    int width = bImg.getWidth();
+    int height = bImg.getHeight();
+    int[] data = ((DataBufferInt) bImg.getRaster().getDataBuffer()).getData();
+    if (data.length != width * height) {
+      // sub image sharing the raster of its parent
+      data = bImg.getRGB(0, 0, width, height, null, 0, width);
+    }
+    ByteBuffer pixels = takeIntPixels(data.length * 4);
+    try {
+      pixels.asIntBuffer().put(data);
+      Mat mBGRA = new Mat(height, width, CvType.CV_8UC4, pixels);
+      if (!asBGR) {
+        return mBGRA.clone();
+      }
+      Mat mBGR = new Mat(height, width, CvType.CV_8UC3);
+      Imgproc.cvtColor(mBGRA, mBGR, Imgproc.COLOR_BGRA2BGR);
+      return mBGR;
+    } finally {
+      giveBackIntPixels(pixels);
+    }
   }
 
   public static Mat makeMat(BufferedImage bImg) {
@@ -69,21 +156,10 @@ public class SXOpenCV {
     if (null == bImg) {
       return new Mat();
     }
-    if (bImg.getType() == BufferedImage.TYPE_INT_RGB) {
-      Debug.trace("makeMat: INT_RGB (%dx%d)", bImg.getWidth(), bImg.getHeight());
-      int[] data = ((DataBufferInt) bImg.getRaster().getDataBuffer()).getData();
-      ByteBuffer byteBuffer = ByteBuffer.allocate(data.length * 4);
-      IntBuffer intBuffer = byteBuffer.asIntBuffer();
-      intBuffer.put(data);
-      Mat aMat = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC4);
-      aMat.put(0, 0, byteBuffer.array());
-      Mat oMatBGR = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC3);
-      Mat oMatA = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC1);
-      List<Mat> mixIn = new ArrayList<Mat>(Arrays.asList(new Mat[]{aMat}));
-      List<Mat> mixOut = new ArrayList<Mat>(Arrays.asList(new Mat[]{oMatA, oMatBGR}));
-      //A 0 - R 1 - G 2 - B 3 -> A 0 - B 1 - G 2 - R 3
-      Core.mixChannels(mixIn, mixOut, new MatOfInt(0, 0, 1, 3, 2, 2, 3, 1));
-      return oMatBGR;
+    if (bImg.getType() == BufferedImage.TYPE_INT_RGB || bImg.getType() == BufferedImage.TYPE_INT_ARGB) {
+      boolean hasAlpha = bImg.getType() == BufferedImage.TYPE_INT_ARGB;
+      Debug.trace("makeMat: %s (%dx%d)", hasAlpha ? "INT_ARGB" : "INT_RGB", bImg.getWidth(), bImg.getHeight());
+      return convertIntPixels(bImg, !hasAlpha || asBGR);
     } else if (bImg.getType() == BufferedImage.TYPE_3BYTE_BGR) {
       Debug.trace("makeMat: 3BYTE_BGR (%dx%d)", bImg.getWidth(), bImg.getHeight());
       byte[] data = ((DataBufferByte) bImg.getRaster().getDataBuffer()).getData();
@@ -137,7 +213,7 @@ public class SXOpenCV {
     } else {
       //TYPE_CUSTOM 0
       //*OK* TYPE_INT_RGB 1
-      //TYPE_INT_ARGB 2
+      //*OK* TYPE_INT_ARGB 2
       //TYPE_INT_ARGB_PRE 3
       //TYPE_INT_BGR 4
       //*OK* TYPE_3BYTE_BGR 5
@@ -310,7 +386,6 @@ public class SXOpenCV {
   }
 
   private static boolean downSize = false;
-  private static final double minThreshhold = 1.0E-5;
 
   public static Match doFindMatch(Mat where, Mat what, Mat mask, Image image, boolean findAll) {
     if (downSize) {
@@ -322,14 +397,18 @@ public class SXOpenCV {
       downSizeFactor = Math.max(1.0, Math.min(downW, downH));
     }
     Mat result = new Mat();
+    // where and what might be shared (cache, parallel finds): never convert in place
     Mat finalWhere = where;
-    if (image.gray()) {
+    if (image.gray() && where.channels() > 1) {
+      finalWhere = new Mat();
       Imgproc.cvtColor(where, finalWhere, Imgproc.COLOR_BGR2GRAY);
     }
     if (image.plain()) {
       Mat finalWherePlain = finalWhere;
       Mat finalWhatPlain = what;
       if (image.black()) {
+        finalWherePlain = new Mat();
+        finalWhatPlain = new Mat();
         Core.bitwise_not(finalWhere, finalWherePlain);
         Core.bitwise_not(what, finalWhatPlain);
       }
@@ -340,9 +419,9 @@ public class SXOpenCV {
       }
       Core.subtract(Mat.ones(result.size(), CvType.CV_32F), result, result);
     } else if (mask.empty()) {
-      Imgproc.matchTemplate(where, what, result, Imgproc.TM_CCOEFF_NORMED);
+      Imgproc.matchTemplate(finalWhere, what, result, Imgproc.TM_CCOEFF_NORMED);
     } else {
-      Imgproc.matchTemplate(where, what, result, Imgproc.TM_CCORR_NORMED, mask);
+      Imgproc.matchTemplate(finalWhere, what, result, Imgproc.TM_CCORR_NORMED, mask);
     }
     Core.MinMaxLocResult minMax = Core.minMaxLoc(result);
     double maxVal = minMax.maxVal;
@@ -356,59 +435,119 @@ public class SXOpenCV {
     return null;
   }
 
-  public static void setAttributes(Element element, Mat content, Mat mask) {
-    if (content.channels() == 1) {
-      element.gray(true);
+  /**
+   * INTERNAL: collect all matches of a findAll in one pass over the matchTemplate result.
+   * <p>gives the same matches in the same order as taking the maximum again and again
+   * and zeroing its surroundings (0.8 of the target size) after each match:
+   * the values above minScore are sorted (score descending, then row by row),
+   * then every value in the surroundings of an already accepted one is dropped.
+   * Only the accepted ones are made into Matches.</p>
+   *
+   * @param result  the matchTemplate result (CV_32F)
+   * @param minScore the score a match must exceed
+   * @param targetW width of the searched image
+   * @param targetH height of the searched image
+   * @return the matches (relative to the result) sorted by score descending
+   */
+  public static List<Match> doFindAllPeaks(Mat result, double minScore, int targetW, int targetH) {
+    List<Match> peaks = new ArrayList<>();
+    if (null == result || result.empty()) {
+      return peaks;
     }
-
-    Mat finalContent = newMat();
-    if (mask.empty()) {
-      finalContent = content;
-    } else {
-      Core.multiply(content, mask, finalContent);
+    int width = result.cols();
+    int marginX = Math.max(1, (int) (targetW * 0.8));
+    int marginY = Math.max(1, (int) (targetH * 0.8));
+    // the candidates are selected in OpenCV: only their scores are read
+    // the largest float not above minScore: a float compare gives the same values as with the double
+    float threshold = (float) minScore;
+    if (threshold > minScore) {
+      threshold = Math.nextDown(threshold);
     }
-
-    MatOfDouble pMean = new MatOfDouble();
-    MatOfDouble pStdDev = new MatOfDouble();
-    Core.meanStdDev(finalContent, pMean, pStdDev);
-
-    double sum = 0.0;
-    double[] arr = pStdDev.toArray();
-    for (
-        int i = 0;
-        i < arr.length; i++) {
-      sum += arr[i];
+    Mat above = new Mat();
+    Core.compare(result, new Scalar(threshold), above, Core.CMP_GT);
+    Mat locations = new Mat();
+    Core.findNonZero(above, locations);
+    above.release();
+    int count = (int) locations.total();
+    if (count == 0) {
+      locations.release();
+      return peaks;
     }
-
-    element.stdDev(sum);
-    element.plain(sum < minThreshhold);
-
-    sum = 0.0;
-    arr = pMean.toArray();
-    int[] cvMeanColor = new int[arr.length];
-    for (
-        int i = 0;
-        i < arr.length; i++) {
-      cvMeanColor[i] = (int) arr[i];
-      sum += arr[i];
+    int[] points = new int[2 * count];
+    locations.get(0, 0, points);
+    locations.release();
+    // key: score (sortable int) in the upper half, inverted position in the lower half
+    // ascending keys read backwards: best score first, equal scores row by row (as minMaxLoc)
+    long[] keys = new long[count];
+    float[] scores = new float[0];
+    int next = 0;
+    while (next < count) {
+      // the candidates come row by row: the scores of a row's candidates are read in one go
+      int y = points[2 * next + 1];
+      int first = next;
+      while (next + 1 < count && points[2 * (next + 1) + 1] == y) {
+        next++;
+      }
+      int xStart = points[2 * first];
+      int span = points[2 * next] - xStart + 1;
+      if (scores.length != span) {
+        scores = new float[span];
+      }
+      result.get(y, xStart, scores);
+      for (int c = first; c <= next; c++) {
+        int x = points[2 * c];
+        keys[c] = ((long) sortableScore(scores[x - xStart]) << 32) | (~(y * width + x) & 0xffffffffL);
+      }
+      next++;
     }
+    Arrays.sort(keys);
+    // accepted peaks are at least the margin apart: a cell of margin size holds only a few of them
+    Map<Long, List<int[]>> cells = new HashMap<>();
+    for (int n = keys.length - 1; n >= 0; n--) {
+      int pos = ~(int) keys[n];
+      int x = pos % width;
+      int y = pos / width;
+      long cellX = x / marginX;
+      long cellY = y / marginY;
+      boolean suppressed = false;
+      for (long cx = cellX - 1; cx <= cellX + 1 && !suppressed; cx++) {
+        for (long cy = cellY - 1; cy <= cellY + 1 && !suppressed; cy++) {
+          List<int[]> cell = cells.get((cx << 32) + cy);
+          if (null == cell) {
+            continue;
+          }
+          for (int[] peak : cell) {
+            // the zeroed range was [peak - margin, peak + margin)
+            int dx = x - peak[0];
+            int dy = y - peak[1];
+            if (dx >= -marginX && dx < marginX && dy >= -marginY && dy < marginY) {
+              suppressed = true;
+              break;
+            }
+          }
+        }
+      }
+      if (!suppressed) {
+        float score = scoreFromSortable((int) (keys[n] >> 32));
+        peaks.add(new Match(x, y, targetW, targetH, score, null));
+        cells.computeIfAbsent((cellX << 32) + cellY, k -> new ArrayList<>()).add(new int[]{x, y});
+      }
+    }
+    return peaks;
+  }
 
-    element.mean(sum);
-
-    element.black(sum < minThreshhold && element.plain());
+  // an int with the same order as the float
+  private static int sortableScore(float score) {
+    int bits = Float.floatToIntBits(score);
+    return bits < 0 ? bits ^ 0x7fffffff : bits;
+  }
 
-    if (cvMeanColor.length > 1) {
-      element.white(isColorEqual(cvMeanColor, Color.WHITE));
-      element.meanColor(new Color(cvMeanColor[2], cvMeanColor[1], cvMeanColor[0]));
-    }
+  private static float scoreFromSortable(int sortable) {
+    return Float.intBitsToFloat(sortable < 0 ? sortable ^ 0x7fffffff : sortable);
   }
 
-  private static boolean isColorEqual(int[] cvColor, Color otherColor) {
-    Color col = new Color(cvColor[2], cvColor[1], cvColor[0]);
-    int r = (col.getRed() - otherColor.getRed()) * (col.getRed() - otherColor.getRed());
-    int g = (col.getGreen() - otherColor.getGreen()) * (col.getGreen() - otherColor.getGreen());
-    int b = (col.getBlue() - otherColor.getBlue()) * (col.getBlue() - otherColor.getBlue());
-    return Math.sqrt(r + g + b) < minThreshhold;
+  public static void setAttributes(Element element, Mat content, Mat mask) {
+    new CompiledTarget(content, mask, null).applyTo(element);
   }
 
   private static int toGray = Imgproc.COLOR_BGR2GRAY;
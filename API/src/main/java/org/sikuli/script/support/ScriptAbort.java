@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script.support;
+
+import org.sikuli.script.SikuliXception;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * INTERNAL USE: abort of running scripts at the SikuliX API boundaries
+ * <p>a script run is started in its thread (start()) and aborted as a whole (abort(run)):
+ * its thread is interrupted (ends sleeping and waiting) and
+ * the next find, wait, mouse or keyboard action in this thread throws ScriptAbort.Aborted.
+ * An abort ends with the run - later runs in the same thread are not affected.
+ * The script code between API calls runs without any check.</p>
+ */
+public class ScriptAbort {
+
+  /**
+   * thrown by API calls in the thread of an aborted script
+   */
+  public static class Aborted extends SikuliXception {
+    public Aborted() {
+      super("script aborted");
+    }
+  }
+
+  /**
+   * a script run in a thread (nested runs in the same thread belong to the outer run)
+   */
+  public static final class Run {
+    private final Thread thread;
+    private volatile boolean aborted = false;
+    // guarded by this
+    private int depth = 1;
+    private boolean ended = false;
+
+    private Run(Thread thread) {
+      this.thread = thread;
+    }
+
+    public Thread getThread() {
+      return thread;
+    }
+
+    public boolean isAborted() {
+      return aborted;
+    }
+  }
+
+  private static final ThreadLocal<Run> currentRun = new ThreadLocal<>();
+  // runs aborted but not yet ended: nothing to look up as long as there are none
+  private static final AtomicInteger abortedRuns = new AtomicInteger(0);
+
+  /**
+   * the current thread starts running a script
+   *
+   * @return the run to be given to end() (the outer run, if the thread already runs a script)
+   */
+  public static Run start() {
+    Run run = currentRun.get();
+    if (null != run) {
+      synchronized (run) {
+        if (!run.ended) {
+          run.depth++;
+          return run;
+        }
+      }
+    }
+    run = new Run(Thread.currentThread());
+    currentRun.set(run);
+    return run;
+  }
+
+  /**
+   * the current thread has ended running the script (to be called in the run's thread)
+   *
+   * @param run as returned by start()
+   */
+  public static void end(Run run) {
+    synchronized (run) {
+      if (run.ended || --run.depth > 0) {
+        return;
+      }
+      run.ended = true;
+      if (run.aborted) {
+        abortedRuns.decrementAndGet();
+      }
+    }
+    if (currentRun.get() == run) {
+      currentRun.remove();
+    }
+    if (run.aborted && Thread.currentThread() == run.thread) {
+      // the interrupt is not meant for the caller
+      Thread.interrupted();
+    }
+  }
+
+  /**
+   * @param run a script run, that should be aborted (no effect, if it has ended)
+   */
+  public static void abort(Run run) {
+    synchronized (run) {
+      if (run.ended || run.aborted) {
+        return;
+      }
+      run.aborted = true;
+      abortedRuns.incrementAndGet();
+      run.thread.interrupt();
+    }
+  }
+
+  /**
+   * @return true if the current thread runs a script
+   */
+  public static boolean isRunning() {
+    return null != currentRun.get();
+  }
+
+  /**
+   * @return true if the current thread runs an aborted script
+   */
+  public static boolean isAborted() {
+    if (abortedRuns.get() == 0) {
+      return false;
+    }
+    Run run = currentRun.get();
+    return null != run && run.aborted;
+  }
+
+  /**
+   * to be called at the start of API actions and after an InterruptedException
+   *
+   * @throws Aborted if the current thread runs an aborted script
+   */
+  public static void check() {
+    if (isAborted()) {
+      throw new Aborted();
+    }
+  }
+}
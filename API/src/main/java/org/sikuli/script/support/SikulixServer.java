@@ -3,17 +3,25 @@
  */
 package org.sikuli.script.support;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -27,6 +35,7 @@ import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.FileManager;
+import org.sikuli.basics.Settings;
 
 import io.undertow.Handlers;
 import io.undertow.Undertow;
@@ -45,6 +54,7 @@ import io.undertow.server.handlers.resource.ResourceHandler;
 import io.undertow.server.handlers.resource.ResourceManager;
 import io.undertow.util.AttachmentKey;
 import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
 import io.undertow.util.Methods;
 import io.undertow.util.StatusCodes;
 import io.undertow.util.URLUtils;
@@ -134,6 +144,39 @@ public class SikulixServer {
   private static Map<String, File> groups = new HashMap<>();
   private static final String DEFAULT_GROUP = "DEFAULT_GROUP";
 
+  // per group: max running tasks, max waiting tasks (default: Settings.ServerGroupTasks/ServerGroupQueue)
+  private static Map<String, Integer> groupTasks = new HashMap<>();
+  private static Map<String, Integer> groupQueue = new HashMap<>();
+  private static final Pattern PATTERN_GROUP_OPTION = Pattern.compile("(tasks|queue)\\s*=\\s*(\\d+)");
+
+  private static int getGroupTasks(String groupName) {
+    return Math.max(1, groupTasks.getOrDefault(groupName, Settings.ServerGroupTasks));
+  }
+
+  private static int getGroupQueue(String groupName) {
+    return groupQueue.getOrDefault(groupName, Settings.ServerGroupQueue);
+  }
+
+  // name folder;tasks=n;queue=n
+  private static String makeGroupOptions(String grp, String item) {
+    String[] parts = item.split(";");
+    for (int n = 1; n < parts.length; n++) {
+      Matcher matcher = PATTERN_GROUP_OPTION.matcher(parts[n].trim());
+      if (matcher.matches()) {
+        int value = Integer.parseInt(matcher.group(2));
+        if ("tasks".equals(matcher.group(1))) {
+          groupTasks.put(grp, value);
+        } else {
+          groupQueue.put(grp, value);
+        }
+        dolog(3, "group: %s %s: %d", grp, matcher.group(1), value);
+      } else {
+        dolog(-1, "group: %s invalid option: %s", grp, parts[n]);
+      }
+    }
+    return parts[0].trim();
+  }
+
   private static void makeGroups(String option) {
     File folder;
     groups.put(DEFAULT_GROUP, RunTime.get().fWorkDir);
@@ -163,6 +206,7 @@ public class SikulixServer {
             if (fldr.startsWith(":") | fldr.startsWith("=")) {
               fldr = fldr.substring(1).trim();
             }
+            fldr = makeGroupOptions(grp, fldr);
           } else if (isFirst) {
             fldr = item;
             grp = DEFAULT_GROUP;
@@ -359,7 +403,7 @@ public class SikulixServer {
 
     private HttpHandler pause = exchange -> {
       if (getTaskManager().pause()) {
-        sendResponse(exchange, StatusCodes.OK, new SimpleResponse("pause the script execution after the currently running script ends"));
+        sendResponse(exchange, StatusCodes.OK, new SimpleResponse("pause the script execution after the currently running scripts end"));
       } else {
         sendResponse(exchange, StatusCodes.ACCEPTED, new SimpleResponse("the script execution is already paused"));
       }
@@ -378,17 +422,26 @@ public class SikulixServer {
     public TasksCommand() {
       getRouting()
           .add(Methods.GET, "/tasks", getTasks)
+          .add(Methods.GET, "/tasks/events", getEvents)
           .add(Methods.GET, "/tasks/{id}", getTask)
           .add(Methods.PUT, "/tasks/{id}/cancel", cancelTask);
     }
 
+    // optional: offset=n limit=n - the total count is returned in header X-Total-Count
     private HttpHandler getTasks = exchange -> {
-      sendResponse(exchange, StatusCodes.OK, getFilteredTasks(exchange).values());
+      Optional<String> groupName = getGroupName(exchange);
+      Optional<String> scriptName = getScriptName(exchange);
+      int offset = getIntParameter(exchange, "offset", 0);
+      int limit = getIntParameter(exchange, "limit", Integer.MAX_VALUE);
+      List<Task> tasks = new ArrayList<>();
+      int total = getTaskManager().getTasks(groupName, scriptName, offset, limit, tasks);
+      exchange.getResponseHeaders().put(HEADER_TOTAL_COUNT, total);
+      sendResponse(exchange, StatusCodes.OK, tasks);
     };
 
     private HttpHandler getTask = exchange -> {
       String id = exchange.getQueryParameters().get("id").getLast();
-      Task task = getFilteredTasks(exchange).get(id);
+      Task task = getFilteredTask(exchange, id);
       if (task != null) {
         sendResponse(exchange, StatusCodes.OK, task);
       } else {
@@ -403,7 +456,7 @@ public class SikulixServer {
 
       boolean success = false;
       String id = exchange.getQueryParameters().get("id").getLast();
-      Task task = getFilteredTasks(exchange).get(id);
+      Task task = getFilteredTask(exchange, id);
       if (task != null) {
         success = getTaskManager().cancel(id);
       }
@@ -414,10 +467,67 @@ public class SikulixServer {
       sendResponse(exchange, statusCode, responseObject);
     };
 
-    private Map<String, Task> getFilteredTasks(final HttpServerExchange exchange) {
+    // server-sent events: each status change of the (filtered) tasks as event "task",
+    // the lines a running task's script prints (Jython) as event "output"
+    private HttpHandler getEvents = exchange -> {
+      if (exchange.isInIoThread()) {
+        // switching to a worker thread, that is blocked while streaming
+        exchange.dispatch(this.getEvents);
+        return;
+      }
+      TaskEvents events = getTaskManager().subscribe(getGroupName(exchange), getScriptName(exchange));
+      try {
+        exchange.setStatusCode(StatusCodes.OK);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/event-stream");
+        exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "no-cache");
+        exchange.startBlocking();
+        OutputStream out = exchange.getOutputStream();
+        dolog("streaming task events to %s", exchange.getSourceAddress());
+        while (true) {
+          TaskEvent next = events.next(EVENTS_KEEPALIVE);
+          String event;
+          if (next == null) {
+            event = ": keepalive\n\n";
+          } else if (next == TaskEvents.END) {
+            break;
+          } else {
+            event = String.format("event: %s\ndata: %s\n\n", next.name, getObjectMapper().writeValueAsString(next.data));
+          }
+          out.write(event.getBytes(StandardCharsets.UTF_8));
+          out.flush();
+        }
+      } catch (IOException ex) {
+        dolog(3, "task events: client gone: %s", exchange.getSourceAddress());
+      } finally {
+        getTaskManager().unsubscribe(events);
+        exchange.endExchange();
+      }
+    };
+
+    private static final HttpString HEADER_TOTAL_COUNT = new HttpString("X-Total-Count");
+    private static final long EVENTS_KEEPALIVE = 15000;
+
+    private Task getFilteredTask(final HttpServerExchange exchange, String id) {
+      return getTaskManager().getTask(id, getGroupName(exchange), getScriptName(exchange));
+    }
+
+    private Optional<String> getGroupName(final HttpServerExchange exchange) {
+      CommandsAttachment attachment = Optional.ofNullable(exchange.getAttachment(KEY)).orElse(new CommandsAttachment());
+      return Optional.ofNullable(attachment.get(GroupsCommand.ATTACHMENTKEY_GROUPNAME));
+    }
+
+    private Optional<String> getScriptName(final HttpServerExchange exchange) {
       CommandsAttachment attachment = Optional.ofNullable(exchange.getAttachment(KEY)).orElse(new CommandsAttachment());
-      return getTaskManager().getTasks(Optional.ofNullable(attachment.get(GroupsCommand.ATTACHMENTKEY_GROUPNAME)), 
-                                       Optional.ofNullable(attachment.get(ScriptsCommand.ATTACHMENTKEY_SCRIPTNAME)));
+      return Optional.ofNullable(attachment.get(ScriptsCommand.ATTACHMENTKEY_SCRIPTNAME));
+    }
+
+    private int getIntParameter(final HttpServerExchange exchange, String name, int defaultValue) {
+      try {
+        return Optional.ofNullable(exchange.getQueryParameters().get(name))
+            .map(values -> Math.max(0, Integer.parseInt(values.getLast().trim()))).orElse(defaultValue);
+      } catch (NumberFormatException ex) {
+        return defaultValue;
+      }
     }
   }
 
@@ -489,26 +599,31 @@ public class SikulixServer {
         String scriptName = exchange.getQueryParameters().get("*").getLast().replaceFirst("/run$", "");
         String[] scriptArgs = getScriptArgs(exchange);
   
-        Task task = getTaskManager().requestSync(id, groupName, scriptName, scriptArgs);
-        int retval = task.exitCode;
-        switch(retval) {
-          case Runner.FILE_NOT_FOUND:
-            responseObject = new ErrorResponse(String.format("script not found '%s'", scriptName));
-            statusCode = StatusCodes.NOT_FOUND;
-            break;
-          case Runner.NOT_SUPPORTED:
-            responseObject = new ErrorResponse(String.format("script not supported '%s'", scriptName));
-            statusCode = StatusCodes.NOT_FOUND;
-            break;
-          default:
-            if (retval < 0 || 255 < retval) {
-              responseObject = new ErrorResponse(String.format("script failed exitCode='%d'", retval));
-              statusCode = StatusCodes.SERVICE_UNAVAILABLE;
-            } else {
-              responseObject = task;
-            }
-            break;
-        }  
+        Task task = getTaskManager().requestSync(id, groupName, scriptName, scriptArgs, getPriority(exchange));
+        if (task == null) {
+          responseObject = new ErrorResponse(String.format("too many waiting tasks in group '%s'", groupName));
+          statusCode = StatusCodes.SERVICE_UNAVAILABLE;
+        } else {
+          int retval = task.exitCode;
+          switch(retval) {
+            case Runner.FILE_NOT_FOUND:
+              responseObject = new ErrorResponse(String.format("script not found '%s'", scriptName));
+              statusCode = StatusCodes.NOT_FOUND;
+              break;
+            case Runner.NOT_SUPPORTED:
+              responseObject = new ErrorResponse(String.format("script not supported '%s'", scriptName));
+              statusCode = StatusCodes.NOT_FOUND;
+              break;
+            default:
+              if (retval < 0 || 255 < retval) {
+                responseObject = new ErrorResponse(String.format("script failed exitCode='%d'", retval));
+                statusCode = StatusCodes.SERVICE_UNAVAILABLE;
+              } else {
+                responseObject = task;
+              }
+              break;
+          }
+        }
       }
       sendResponse(exchange, statusCode, responseObject);
     });
@@ -519,8 +634,13 @@ public class SikulixServer {
       String scriptName = exchange.getQueryParameters().get("*").getLast().replaceFirst("/task$", "");
       String[] scriptArgs = getScriptArgs(exchange);
 
-      Task task = getTaskManager().requestAsync(id, groupName, scriptName, scriptArgs);
-      sendResponse(exchange, StatusCodes.OK, task);
+      Task task = getTaskManager().requestAsync(id, groupName, scriptName, scriptArgs, getPriority(exchange));
+      if (task != null) {
+        sendResponse(exchange, StatusCodes.OK, task);
+      } else {
+        sendResponse(exchange, StatusCodes.SERVICE_UNAVAILABLE,
+            new ErrorResponse(String.format("too many waiting tasks in group '%s'", groupName)));
+      }
     };
 
     private HttpHandler delegate = exchange -> {
@@ -556,8 +676,7 @@ public class SikulixServer {
     }
 
     private Optional<ObjectNode> getScriptInfo(String groupName, String scriptName) {
-      RunTime.get().fWorkDir = groups.get(groupName);
-      String[] scripts = RunTime.resolveRelativeFiles(new String[]{scriptName});
+      String[] scripts = RunTime.resolveRelativeFiles(new String[]{scriptName}, groups.get(groupName));
       if (!scripts[0].startsWith("?")) {
         ObjectNode result = getObjectMapper().createObjectNode();
         result.put("name", scriptName)
@@ -579,6 +698,23 @@ public class SikulixServer {
       return Optional.ofNullable(attachment.get(GroupsCommand.ATTACHMENTKEY_GROUPNAME)).orElse(DEFAULT_GROUP);
     }
 
+    // priority=n: higher first (default: 0)
+    private int getPriority(final HttpServerExchange exchange) {
+      String priority = Optional.ofNullable(exchange.getQueryParameters().get("priority"))
+          .map(Deque::getLast).orElse(null);
+      if (exchange.getRequestMethod().equals(Methods.POST)) {
+        FormData form = exchange.getAttachment(FormDataParser.FORM_DATA);
+        if (form != null && form.contains("priority")) {
+          priority = form.getLast("priority").getValue();
+        }
+      }
+      try {
+        return null == priority ? 0 : Integer.parseInt(priority.trim());
+      } catch (NumberFormatException ex) {
+        return 0;
+      }
+    }
+
     private String[] getScriptArgs(final HttpServerExchange exchange) {
       String[] args = {};
       Optional<String> argsString = Optional.empty();
@@ -743,96 +879,185 @@ public class SikulixServer {
   }
 
   private static class TaskManager {
-    private LinkedHashMap<String, Task> allTasks;
-    private LinkedBlockingDeque<Task> queue;
+    private TaskStore allTasks;
+    private List<TaskEvents> subscribers;
+    // waiting tasks: higher priority first, same priority in order of request
+    private TreeSet<Task> queue;
+    private Map<String, Integer> runningPerGroup;
+    private int running;
+    private long sequence;
     private boolean shouldStop;
     private boolean shouldPause;
     private Object lock;
     private ExecutorService executor;
+    private AtomicInteger threadCount;
 
     public TaskManager() {
-      allTasks = new LinkedHashMap<>();
-      queue = new LinkedBlockingDeque<>();
+      allTasks = new TaskStore();
+      subscribers = new CopyOnWriteArrayList<>();
+      queue = new TreeSet<>(Comparator.comparingInt((Task task) -> -task.priority)
+          .thenComparingLong(task -> task.sequence));
+      runningPerGroup = new HashMap<>();
+      running = 0;
+      sequence = 0;
       shouldStop = false;
       shouldPause = false;
-      executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Task Executor"));
+      threadCount = new AtomicInteger();
+      executor = Executors.newCachedThreadPool(r -> new Thread(r, "Task Executor-" + threadCount.incrementAndGet()));
       lock = new Object();
-      executor.execute(() -> {
-        while (!shouldStop) {
-          Task task = null;
-          try {
-            synchronized(lock) {
-              while (shouldPause) {
-                lock.wait();
-              }
-            }
-            task = queue.take();
-            if ("shouldStop".equals(task.id) || "shouldPause".equals(task.id)) {
-              // NOOP
-            } else {
-              synchronized(task) {
-                if (task.isWaiting()) {
-                  task.updateStatus(Task.Status.RUNNING);
-                }
-              }
-              if (task.isRunning()) {
-                  task.runScript();
-              }
-            }
-          } catch (InterruptedException ex) {
-            // NOOP
-          } catch (Exception ex) {
-            SikulixServer.dolog(-1, "ScriptExecutor: Exception: %s", ex);
-            ex.printStackTrace();
-            if (task != null) {
-              task.updateStatus(Task.Status.FAILED);
-            }
-          } finally {
-            if (task != null) {
-              synchronized(task) {
-                task.notify();
-              }
-            }
+    }
+
+    // starts waiting tasks as long as the limits (all, per group) allow - caller holds lock
+    private void dispatch() {
+      if (shouldStop || shouldPause) {
+        return;
+      }
+      Iterator<Task> waiting = queue.iterator();
+      while (waiting.hasNext() && running < Math.max(1, Settings.ServerTasks)) {
+        Task task = waiting.next();
+        if (runningPerGroup.getOrDefault(task.groupName, 0) >= getGroupTasks(task.groupName)) {
+          continue;
+        }
+        waiting.remove();
+        synchronized (task) {
+          if (!task.isWaiting()) {
+            continue;
           }
+          task.updateStatus(Task.Status.RUNNING);
         }
-      });
+        publish(task);
+        running++;
+        runningPerGroup.merge(task.groupName, 1, Integer::sum);
+        executor.execute(() -> execute(task));
+      }
     }
 
-    public Map<String, Task> getTasks(Optional<String> groupName, Optional<String> scriptName) {
-      LinkedHashMap<String, Task> result = allTasks.entrySet().stream()
-          .filter(e -> {
-            if (groupName.isPresent()) {
-              if (scriptName.isPresent()) {
-                return groupName.get().equals(e.getValue().groupName) && scriptName.get().equals(e.getValue().scriptName);
-              } else {
-                return groupName.get().equals(e.getValue().groupName);
-              }
-            } else {
-              if (scriptName.isPresent()) {
-                return DEFAULT_GROUP.equals(e.getValue().groupName) && scriptName.get().equals(e.getValue().scriptName);
-              } else {
-                return true;
-              }
-            }
-          })
-          .collect(Collectors.toMap(Entry::getKey, Entry::getValue, (oldValue, newValue) -> newValue, LinkedHashMap::new));
-      return Collections.unmodifiableMap(result);
+    private void execute(Task task) {
+      try {
+        task.runScript(getOutput(task, "stdout", System.out), getOutput(task, "stderr", System.err));
+      } catch (Exception ex) {
+        SikulixServer.dolog(-1, "ScriptExecutor: Exception: %s", ex);
+        ex.printStackTrace();
+        task.updateStatus(Task.Status.FAILED);
+      } finally {
+        publish(task);
+        synchronized (lock) {
+          running--;
+          runningPerGroup.merge(task.groupName, -1, Integer::sum);
+          dispatch();
+          lock.notifyAll();
+        }
+        synchronized (task) {
+          task.notifyAll();
+        }
+      }
+    }
+
+    /**
+     * @param groupName  only tasks of this group (no group: all or if script given: DEFAULT_GROUP)
+     * @param scriptName only tasks of this script
+     * @param offset     number of tasks to skip
+     * @param limit      max number of tasks to return
+     * @param tasks      receives the tasks in order of request
+     * @return the total number of tasks matching group and script
+     */
+    public int getTasks(Optional<String> groupName, Optional<String> scriptName, int offset, int limit, List<Task> tasks) {
+      synchronized (lock) {
+        allTasks.evict();
+        return allTasks.query(getStoreGroup(groupName, scriptName), scriptName, offset, limit, tasks);
+      }
+    }
+
+    public Task getTask(String id, Optional<String> groupName, Optional<String> scriptName) {
+      Optional<String> group = getStoreGroup(groupName, scriptName);
+      synchronized (lock) {
+        Task task = allTasks.get(id);
+        if (task == null || (group.isPresent() && !group.get().equals(task.groupName))
+            || (scriptName.isPresent() && !scriptName.get().equals(task.scriptName))) {
+          return null;
+        }
+        return task;
+      }
+    }
+
+    private Optional<String> getStoreGroup(Optional<String> groupName, Optional<String> scriptName) {
+      if (!groupName.isPresent() && scriptName.isPresent()) {
+        return Optional.of(DEFAULT_GROUP);
+      }
+      return groupName;
+    }
+
+    public TaskEvents subscribe(Optional<String> groupName, Optional<String> scriptName) {
+      TaskEvents events = new TaskEvents(getStoreGroup(groupName, scriptName), scriptName);
+      subscribers.add(events);
+      return events;
     }
 
-    public Task requestSync(final String id, final String groupName, final String scriptName, final String[] scriptArgs) throws Exception {
-      return request(id, groupName, scriptName, scriptArgs, false);
+    public void unsubscribe(TaskEvents events) {
+      events.close();
+      subscribers.remove(events);
     }
 
-    public Task requestAsync(final String id, final String groupName, final String scriptName, final String[] scriptArgs) throws Exception {
-      return request(id, groupName, scriptName, scriptArgs, true);
+    // a snapshot of the task for the subscribers, that are interested in its group/script
+    private void publish(Task task) {
+      if (subscribers.isEmpty()) {
+        return;
+      }
+      Task snapshot;
+      synchronized (task) {
+        snapshot = task.clone();
+      }
+      TaskEvent event = new TaskEvent("task", snapshot, task);
+      for (TaskEvents events : subscribers) {
+        events.offer(event);
+      }
     }
 
-    private Task request(final String id, final String groupName, final String scriptName, 
-        final String[] scriptArgs, boolean isAsync) throws Exception {
+    // the script output of the task: line by line to the subscribers and as before to the console
+    private PrintStream getOutput(Task task, String stream, PrintStream console) {
+      OutputStream lines = new TaskOutputStream(console, line -> {
+        if (subscribers.isEmpty()) {
+          return;
+        }
+        TaskEvent event = new TaskEvent("output", new TaskOutput(task, stream, line), task);
+        for (TaskEvents events : subscribers) {
+          events.offer(event);
+        }
+      });
+      try {
+        return new PrintStream(lines, true, StandardCharsets.UTF_8.name());
+      } catch (UnsupportedEncodingException e) {
+        return new PrintStream(lines, true);
+      }
+    }
+
+    public Task requestSync(final String id, final String groupName, final String scriptName, final String[] scriptArgs,
+                            final int priority) throws Exception {
+      return request(id, groupName, scriptName, scriptArgs, priority, false);
+    }
+
+    public Task requestAsync(final String id, final String groupName, final String scriptName, final String[] scriptArgs,
+                             final int priority) throws Exception {
+      return request(id, groupName, scriptName, scriptArgs, priority, true);
+    }
+
+    // null: rejected - the group's queue is full
+    private Task request(final String id, final String groupName, final String scriptName,
+        final String[] scriptArgs, final int priority, boolean isAsync) throws Exception {
       Task request = new Task(id, groupName, scriptName, scriptArgs, isAsync);
-      synchronized(allTasks) {
-        allTasks.put(request.id, request);
-        queue.put(request);
+      request.priority = priority;
+      synchronized(lock) {
+        int queueLimit = getGroupQueue(groupName);
+        if (queueLimit > 0 && queue.stream().filter(task -> groupName.equals(task.groupName)).count() >= queueLimit) {
+          SikulixServer.dolog(-1, "task rejected: group %s has %d waiting tasks", groupName, queueLimit);
+          return null;
+        }
+        request.sequence = sequence++;
+        allTasks.evict();
+        allTasks.add(request);
+        queue.add(request);
+        publish(request);
+        dispatch();
       }
       if (!isAsync) {
         synchronized(request) {
@@ -845,27 +1070,45 @@ public class SikulixServer {
     }
 
     public boolean cancel(final String id) {
-      Task task = allTasks.get(id);
-      if (task != null) {
-        synchronized (task) {
-          if (task.isWaiting()) {
-            task.updateStatus(Task.Status.CANCELED);
-            task.notify();
-            return true;
-          } else {
-            SikulixServer.dolog(-1, "could not cancel the task: %s", id);
-            return false;
+      synchronized (lock) {
+        Task task = allTasks.get(id);
+        if (task != null) {
+          synchronized (task) {
+            if (task.isWaiting()) {
+              queue.remove(task);
+              task.updateStatus(Task.Status.CANCELED);
+              task.endDate = new Date();
+              task.notifyAll();
+              publish(task);
+              return true;
+            } else {
+              SikulixServer.dolog(-1, "could not cancel the task: %s", id);
+              return false;
+            }
           }
+        } else {
+          SikulixServer.dolog(-1, "the task is not found: %s", id);
+          return false;
         }
-      } else {
-        SikulixServer.dolog(-1, "the task is not found: %s", id);
-        return false;
       }
     }
 
     public void stop() {
-      shouldStop = true;
-      queue.addFirst(new Task("shouldStop", null, null, null, true));
+      synchronized (lock) {
+        shouldStop = true;
+        for (Task task : queue) {
+          synchronized (task) {
+            task.updateStatus(Task.Status.CANCELED);
+            task.endDate = new Date();
+            task.notifyAll();
+          }
+          publish(task);
+        }
+        queue.clear();
+        for (TaskEvents events : subscribers) {
+          events.close();
+        }
+      }
       executor.shutdown();
       while(!executor.isTerminated()) {
         try {
@@ -882,7 +1125,6 @@ public class SikulixServer {
           return false;
         } else {
           shouldPause = true;
-          queue.addFirst(new Task("shouldPause", null, null, null, true));
           return true;
         }
       }
@@ -892,7 +1134,7 @@ public class SikulixServer {
       synchronized(lock) {
         if (shouldPause) {
           shouldPause = false;
-          lock.notify();
+          dispatch();
           return true;
         } else {
           return false;
@@ -905,6 +1147,220 @@ public class SikulixServer {
     }
   }
 
+  // the requested tasks in order of request with indexes by group and by group/script
+  // ended tasks are evicted by count (Settings.ServerTaskHistory) and age (Settings.ServerTaskHistoryTime)
+  private static class TaskStore {
+    private LinkedHashMap<String, Task> tasks = new LinkedHashMap<>();
+    private Map<String, LinkedHashSet<String>> byGroup = new HashMap<>();
+    private Map<String, LinkedHashSet<String>> byScript = new HashMap<>();
+
+    private static String scriptKey(String groupName, String scriptName) {
+      return groupName + "|" + scriptName;
+    }
+
+    public void add(Task task) {
+      tasks.put(task.id, task);
+      byGroup.computeIfAbsent(task.groupName, k -> new LinkedHashSet<>()).add(task.id);
+      byScript.computeIfAbsent(scriptKey(task.groupName, task.scriptName), k -> new LinkedHashSet<>()).add(task.id);
+    }
+
+    public Task get(String id) {
+      return tasks.get(id);
+    }
+
+    private void remove(Task task) {
+      tasks.remove(task.id);
+      removeIndex(byGroup, task.groupName, task.id);
+      removeIndex(byScript, scriptKey(task.groupName, task.scriptName), task.id);
+    }
+
+    private void removeIndex(Map<String, LinkedHashSet<String>> index, String key, String id) {
+      LinkedHashSet<String> ids = index.get(key);
+      if (ids != null) {
+        ids.remove(id);
+        if (ids.isEmpty()) {
+          index.remove(key);
+        }
+      }
+    }
+
+    public int query(Optional<String> groupName, Optional<String> scriptName, int offset, int limit, List<Task> result) {
+      Collection<String> ids;
+      if (groupName.isPresent()) {
+        if (scriptName.isPresent()) {
+          ids = byScript.getOrDefault(scriptKey(groupName.get(), scriptName.get()), new LinkedHashSet<>());
+        } else {
+          ids = byGroup.getOrDefault(groupName.get(), new LinkedHashSet<>());
+        }
+      } else {
+        ids = tasks.keySet();
+      }
+      ids.stream().skip(offset).limit(limit).forEach(id -> result.add(tasks.get(id)));
+      return ids.size();
+    }
+
+    // waiting and running tasks are kept
+    public void evict() {
+      int maxTasks = Math.max(0, Settings.ServerTaskHistory);
+      long oldest = System.currentTimeMillis() - Settings.ServerTaskHistoryTime * 1000L;
+      List<Task> evicted = new ArrayList<>();
+      int kept = tasks.size();
+      for (Task task : tasks.values()) {
+        if (task.isWaiting() || task.isRunning()) {
+          continue;
+        }
+        Date ended = task.endDate != null ? task.endDate : task.requestDate;
+        if (kept > maxTasks || ended.getTime() < oldest) {
+          evicted.add(task);
+          kept--;
+        } else {
+          break;
+        }
+      }
+      evicted.forEach(this::remove);
+    }
+  }
+
+  // an event for the subscribers: the task it belongs to is used for filtering
+  private static class TaskEvent {
+    private final String name;
+    private final Object data;
+    private final Task task;
+
+    private TaskEvent(String name, Object data, Task task) {
+      this.name = name;
+      this.data = data;
+      this.task = task;
+    }
+  }
+
+  // a line of script output (event "output")
+  private static class TaskOutput {
+    @SuppressWarnings("unused")
+    public final String id;
+    @SuppressWarnings("unused")
+    public final String groupName;
+    @SuppressWarnings("unused")
+    public final String scriptName;
+    @SuppressWarnings("unused")
+    public final String stream;
+    @SuppressWarnings("unused")
+    public final String text;
+
+    private TaskOutput(Task task, String stream, String text) {
+      this.id = task.id;
+      this.groupName = task.groupName;
+      this.scriptName = task.scriptName;
+      this.stream = stream;
+      this.text = text;
+    }
+  }
+
+  // passes the written bytes to the console and each complete line to the consumer
+  private static class TaskOutputStream extends OutputStream {
+    private static final int MAX_LINE = 8192;
+    private final PrintStream console;
+    private final Consumer<String> lines;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+    private TaskOutputStream(PrintStream console, Consumer<String> lines) {
+      this.console = console;
+      this.lines = lines;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+      console.write(b);
+      if (b == '\n') {
+        emit();
+      } else if (b != '\r') {
+        line.write(b);
+        if (line.size() >= MAX_LINE) {
+          emit();
+        }
+      }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+      console.write(b, off, len);
+      for (int n = off; n < off + len; n++) {
+        if (b[n] == '\n') {
+          emit();
+        } else if (b[n] != '\r') {
+          line.write(b[n]);
+          if (line.size() >= MAX_LINE) {
+            emit();
+          }
+        }
+      }
+    }
+
+    @Override
+    public void flush() {
+      console.flush();
+    }
+
+    @Override
+    public synchronized void close() {
+      if (line.size() > 0) {
+        emit();
+      }
+      console.flush();
+    }
+
+    private void emit() {
+      lines.accept(new String(line.toByteArray(), StandardCharsets.UTF_8));
+      line.reset();
+    }
+  }
+
+  // the task status changes (and script output) for one subscriber (GET /tasks/events)
+  private static class TaskEvents {
+    private static final int MAX_EVENTS = 1000;
+    // the last event after close: wakes up the streaming worker
+    private static final TaskEvent END = new TaskEvent(null, null, null);
+    private final Optional<String> groupName;
+    private final Optional<String> scriptName;
+    private final LinkedBlockingQueue<TaskEvent> events = new LinkedBlockingQueue<>(MAX_EVENTS + 1);
+    private volatile boolean closed = false;
+
+    private TaskEvents(Optional<String> groupName, Optional<String> scriptName) {
+      this.groupName = groupName;
+      this.scriptName = scriptName;
+    }
+
+    // a subscriber not reading fast enough is dropped
+    public void offer(TaskEvent event) {
+      Task task = event.task;
+      if (closed || (groupName.isPresent() && !groupName.get().equals(task.groupName))
+          || (scriptName.isPresent() && !scriptName.get().equals(task.scriptName))) {
+        return;
+      }
+      if (events.size() >= MAX_EVENTS || !events.offer(event)) {
+        dolog(-1, "task events: subscriber too slow - closed");
+        close();
+      }
+    }
+
+    // null if nothing happened within the given time, END after close (the events before are delivered)
+    public TaskEvent next(long timeout) throws InterruptedIOException {
+      try {
+        return events.poll(timeout, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException ex) {
+        throw new InterruptedIOException("task events: interrupted");
+      }
+    }
+
+    public synchronized void close() {
+      if (!closed) {
+        closed = true;
+        // one place is kept free for END
+        events.offer(END);
+      }
+    }
+  }
+
   private static class Task implements Cloneable {
     public final String id;
     public final String groupName;
@@ -913,9 +1369,16 @@ public class SikulixServer {
     @SuppressWarnings("unused")
     public final boolean isAsync;
     public Status status;
+    public int priority;
+    public Date requestDate;
     public Date startDate;
     public Date endDate;
     public int exitCode;
+    // milliseconds waited in the queue and running
+    public long queueTime;
+    public long runTime;
+    @JsonIgnore
+    private long sequence;
 
     private Task(final String id, final String groupName, 
                  final String scriptName, final String[] scriptArgs, final boolean isAsync) {
@@ -925,6 +1388,7 @@ public class SikulixServer {
       this.scriptArgs = scriptArgs;
       this.isAsync = isAsync;
       this.status = Status.WAITING;
+      this.requestDate = new Date();
     }
 
     @JsonIgnore
@@ -941,13 +1405,19 @@ public class SikulixServer {
       this.status = status;
     }
 
-    public void runScript() {
-      RunTime.get().fWorkDir = groups.get(groupName);
-      String[] scripts = RunTime.resolveRelativeFiles(new String[]{scriptName});
-      RunTime.setUserArgs(scriptArgs);
+    public void runScript(PrintStream stdout, PrintStream stderr) {
       startDate = new Date();
-      exitCode = Runner.runScripts(scripts, scriptArgs, new IScriptRunner.Options());
+      queueTime = startDate.getTime() - requestDate.getTime();
+      // tasks run in parallel: the group's folder and the args are given per run (no globals)
+      String[] scripts = RunTime.resolveRelativeFiles(new String[]{scriptName}, groups.get(groupName));
+      try {
+        exitCode = Runner.runScripts(scripts, scriptArgs, new IScriptRunner.Options().setOutput(stdout, stderr));
+      } finally {
+        stdout.close();
+        stderr.close();
+      }
       endDate = new Date();
+      runTime = endDate.getTime() - startDate.getTime();
       if (exitCode < 0 || 255 < exitCode) {
         status = Status.FAILED;
       } else {
@@ -960,6 +1430,9 @@ public class SikulixServer {
       Task clone = null;
       try {
         clone = (Task) super.clone();
+        if (requestDate != null) {
+          clone.requestDate = (Date) requestDate.clone();
+        }
         if (startDate != null) {
           clone.startDate = (Date) startDate.clone();
         }
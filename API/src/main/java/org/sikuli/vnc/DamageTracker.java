@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.vnc;
+
+import java.awt.Rectangle;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * INTERNAL USE: remembers the recently damaged (updated) rectangles of a framebuffer
+ * <p>each update increases the update count. Waiting threads (repeated finds, observe)
+ * ask, whether their area was touched by an update after a given count.
+ * The framebuffer watcher only needs to look for updates, while someone is waiting (awaitWaiters).
+ * The baseline of a wait is taken, when its update count is read (see VNCScreen.getUpdateCount()).</p>
+ */
+class DamageTracker {
+
+  private static class Damage {
+    final long count;
+    final Rectangle rect;
+
+    Damage(long count, Rectangle rect) {
+      this.count = count;
+      this.rect = rect;
+    }
+  }
+
+  private static final int maxDamages = 512;
+
+  private final Deque<Damage> damages = new ArrayDeque<>();
+  private long updateCount = 0;
+  // older updates are forgotten - everything counts as dirty since then
+  private long forgotten = 0;
+  private int waiters = 0;
+
+  synchronized long getUpdateCount() {
+    return updateCount;
+  }
+
+  synchronized void markDamaged(List<Rectangle> rects) {
+    if (rects.isEmpty()) {
+      return;
+    }
+    updateCount++;
+    for (Rectangle rect : rects) {
+      damages.addLast(new Damage(updateCount, new Rectangle(rect)));
+    }
+    while (damages.size() > maxDamages) {
+      forgotten = damages.removeFirst().count;
+    }
+    notifyAll();
+  }
+
+  /**
+   * @param area  the area to check
+   * @param since an update count got before
+   * @return true if an update after the given count touched the area
+   */
+  synchronized boolean isDirtySince(Rectangle area, long since) {
+    if (since < forgotten) {
+      return true;
+    }
+    for (Damage damage : damages) {
+      if (damage.count > since && damage.rect.intersects(area)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * waits until an update after the given count touched the area
+   *
+   * @param area    the area to check
+   * @param since   an update count got before
+   * @param timeout max milliseconds to wait
+   * @return true if the area is dirty, false after timeout
+   */
+  synchronized boolean waitForUpdate(Rectangle area, long since, long timeout) {
+    long until = System.currentTimeMillis() + timeout;
+    waiters++;
+    notifyAll();
+    try {
+      while (!isDirtySince(area, since)) {
+        long remaining = until - System.currentTimeMillis();
+        if (remaining <= 0) {
+          return false;
+        }
+        try {
+          wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      waiters--;
+    }
+  }
+
+  /**
+   * used by the framebuffer watcher: waits until someone waits for an update
+   *
+   * @param timeout max milliseconds to wait
+   * @return true if there are waiters, false after timeout
+   * @throws InterruptedException if interrupted
+   */
+  synchronized boolean awaitWaiters(long timeout) throws InterruptedException {
+    long until = System.currentTimeMillis() + timeout;
+    while (waiters == 0) {
+      long remaining = until - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return false;
+      }
+      wait(remaining);
+    }
+    return true;
+  }
+
+  synchronized void reset() {
+    damages.clear();
+    forgotten = updateCount;
+    notifyAll();
+  }
+}
@@ -105,6 +105,19 @@ class VNCRobot implements IRobot {
     if ((modifiers & KeyModifier.META) != 0) typeKey(KeyEvent.VK_META, keyMode);
   }
 
+  @Override
+  public void typeText(String text, int modifiers, int pause) {
+    // the events are sent to the VNC server without waiting anyway
+    for (int i = 0; i < text.length(); i++) {
+      pressModifiers(modifiers);
+      typeChar(text.charAt(i), KeyMode.PRESS_RELEASE);
+      releaseModifiers(modifiers);
+      if (pause > 0) {
+        delay(pause);
+      }
+    }
+  }
+
   @Override
   public void typeStarts() {
     // Nothing to do
@@ -15,10 +15,17 @@ import org.sikuli.util.OverlayCapturePrompt;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class VNCScreen extends Region implements IScreen {
   private VNCClient client;
@@ -30,9 +37,10 @@ public class VNCScreen extends Region implements IScreen {
 
   private String ip = "";
   private int port = -1;
+  private String password = null;
   private String id = "";
 
-  private static Map<String, VNCScreen> screens = new HashMap<>();
+  private static Map<String, VNCScreen> screens = new ConcurrentHashMap<>();
 
   private static int startUpWait = 3;
 
@@ -93,6 +101,7 @@ public class VNCScreen extends Region implements IScreen {
   private void init(String theIP, int thePort, String password) {
     ip = theIP;
     port = thePort;
+    this.password = password;
     id = String.format("%s:%d", ip, port);
     client = VNCClient.connect(ip, port, password, true);
     robot = new VNCRobot(this);
@@ -100,24 +109,57 @@ public class VNCScreen extends Region implements IScreen {
     setRect(getBounds());
     initScreen(this);
 
-    new Thread(new Runnable() {
-      @Override
-      public void run() {
-        try {
-          client.processMessages();
-        } catch (RuntimeException e) {
-          if (isRunning()) {
-            throw e;
-          }
-        }
-      }
-    }).start();
+    startMessageThread(client);
     client.refreshFramebuffer();
+    startDamageWatcher();
 
     screens.put(id, this);
+    VNCSessions.register(this);
     this.wait((double) startUpWait);
   }
 
+  private void startMessageThread(VNCClient theClient) {
+    new Thread(() -> {
+      RuntimeException reason = null;
+      try {
+        theClient.processMessages();
+      } catch (RuntimeException e) {
+        reason = e;
+      }
+      if (client == theClient) {
+        // neither stopped nor replaced by a reconnect
+        VNCSessions.connectionLost(this, null == reason ? new IllegalStateException("closed by server") : reason);
+      }
+    }, "VNCScreen-messages-" + id).start();
+  }
+
+  /**
+   * INTERNAL USE: replaces the lost connection by a new one (see VNCSessions)
+   *
+   * @return success
+   */
+  synchronized boolean reconnect() {
+    VNCClient lostClient = client;
+    if (null == lostClient) {
+      return false;
+    }
+    try {
+      VNCClient newClient = VNCClient.connect(ip, port, password, true);
+      client = newClient;
+      try {
+        lostClient.close();
+      } catch (Exception e) {
+      }
+      startMessageThread(newClient);
+      newClient.refreshFramebuffer();
+      damage.markDamaged(Collections.singletonList(getBounds()));
+      return true;
+    } catch (Exception e) {
+      Debug.log(3, "VNCScreen: reconnect: %s: %s", id, e.getMessage());
+      return false;
+    }
+  }
+
   private static VNCScreen canConnect(String theIP, int thePort, int timeout) {
     String address = theIP + ":" + thePort;
     boolean validIP;
@@ -166,6 +208,7 @@ public class VNCScreen extends Region implements IScreen {
   public void stop() {
     close();
     screens.remove(this.id);
+    VNCSessions.unregister(this);
   }
 
   public static void stopAll() {
@@ -173,19 +216,205 @@ public class VNCScreen extends Region implements IScreen {
       Debug.log(3, "VNCScreen: stopping all");
       for (VNCScreen scr : screens.values()) {
         scr.close();
+        VNCSessions.unregister(scr);
       }
       screens.clear();
     }
   }
 
-  private void close() {
+  private synchronized void close() {
     if (isRunning()) {
       Debug.log(3, "VNCScreen: stopping: %s", this);
       client.close();
       client = null;
       robot = null;
+      damage.reset();
+    }
+  }
+
+  //<editor-fold desc="framebuffer updates">
+  private final DamageTracker damage = new DamageTracker();
+
+  private static int damageCheckInterval = 20;
+  private static final int damageTileSize = 32;
+  // without waiters the watcher only looks, whether the screen was stopped
+  private static final int idleCheckInterval = 1000;
+
+  /**
+   * how often the framebuffer is checked for updates by the VNCScreen's watcher thread
+   * (only while a find or observe is waiting for an update)
+   *
+   * @param millis interval in milliseconds (default 20)
+   */
+  public static void damageCheck(int millis) {
+    damageCheckInterval = Math.max(5, millis);
+  }
+
+  /**
+   * the framebuffer is checked here too: the content captured after this call
+   * is the baseline for the next waitForUpdate (changes away and back before waiting are not missed)
+   *
+   * @return the count of updates so far or -1 if not running
+   */
+  @Override
+  public long getUpdateCount() {
+    VNCClient theClient = client;
+    if (null == theClient) {
+      return -1;
+    }
+    try {
+      checkFramebuffer(theClient);
+    } catch (Exception e) {
+      Debug.log(3, "VNCScreen: damage check: %s", e.getMessage());
+    }
+    return damage.getUpdateCount();
+  }
+
+  @Override
+  public <T> T runFind(Supplier<T> find) {
+    return VNCSessions.runFind(this, find);
+  }
+
+  @Override
+  public boolean waitForUpdate(Rectangle area, long since, long timeout) {
+    return damage.waitForUpdate(area, since, timeout);
+  }
+
+  /**
+   * the framebuffer is checked for updates only while someone waits (waitForUpdate)
+   * and when the update count is read, otherwise only updates told with markDamaged are known
+   *
+   * @param area  the area to check
+   * @param since an update count got before with getUpdateCount()
+   * @return true if an update after the given count touched the area
+   */
+  public boolean isDirtySince(Rectangle area, long since) {
+    return damage.isDirtySince(area, since);
+  }
+
+  /**
+   * tell waiting finds and observers, that the given rectangles of the framebuffer were updated
+   * (normally detected by the watcher thread)
+   *
+   * @param rects the updated rectangles
+   */
+  public void markDamaged(Rectangle... rects) {
+    damage.markDamaged(Arrays.asList(rects));
+  }
+
+  // the updates are detected by comparing checksums of the framebuffer tiles.
+  // The framebuffer is checked, when the update count is read (before the capture of a find or observe)
+  // and by the watcher while a find or observe waits for an update:
+  // each check compares with the tiles of the check before, so nothing after the capture is missed
+  private void startDamageWatcher() {
+    Thread watcher = new Thread(() -> {
+      boolean baseline = false;
+      while (true) {
+        VNCClient theClient = client;
+        if (null == theClient) {
+          break;
+        }
+        try {
+          if (baseline && !damage.awaitWaiters(idleCheckInterval)) {
+            continue;
+          }
+        } catch (InterruptedException e) {
+          break;
+        }
+        try {
+          checkFramebuffer(theClient);
+          baseline = true;
+        } catch (Exception e) {
+          if (!isRunning()) {
+            break;
+          }
+          Debug.log(3, "VNCScreen: damage check: %s", e.getMessage());
+        }
+        try {
+          Thread.sleep(damageCheckInterval);
+        } catch (InterruptedException e) {
+          break;
+        }
+      }
+    }, "VNCScreen-updates-" + id);
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  // the tile checksums of the last check
+  private final Object tilesLock = new Object();
+  private long[] tiles = null;
+  private Dimension tilesSize = null;
+
+  // compares the framebuffer with the last check: the changed tiles are marked damaged
+  private void checkFramebuffer(VNCClient theClient) {
+    synchronized (tilesLock) {
+      Rectangle bounds = theClient.getBounds();
+      BufferedImage frame = theClient.getFrameBuffer(0, 0, bounds.width, bounds.height);
+      int nX = (frame.getWidth() + damageTileSize - 1) / damageTileSize;
+      int nY = (frame.getHeight() + damageTileSize - 1) / damageTileSize;
+      long[] nextTiles = tileChecksums(frame, nX, nY);
+      if (null != tiles) {
+        if (tilesSize.width == nX && tilesSize.height == nY) {
+          List<Rectangle> damaged = getDamaged(tiles, nextTiles, nX, nY, frame.getWidth(), frame.getHeight());
+          if (!damaged.isEmpty()) {
+            damage.markDamaged(damaged);
+          }
+        } else {
+          damage.markDamaged(Collections.singletonList(new Rectangle(0, 0, frame.getWidth(), frame.getHeight())));
+        }
+      }
+      tiles = nextTiles;
+      tilesSize = new Dimension(nX, nY);
+    }
+  }
+
+  private static long[] tileChecksums(BufferedImage frame, int nX, int nY) {
+    int width = frame.getWidth();
+    int height = frame.getHeight();
+    long[] tiles = new long[nX * nY];
+    int[] row = new int[width];
+    WritableRaster raster = frame.getRaster();
+    int[] data = null;
+    if (raster.getDataBuffer() instanceof DataBufferInt && raster.getParent() == null
+        && ((DataBufferInt) raster.getDataBuffer()).getData().length == width * height) {
+      data = ((DataBufferInt) raster.getDataBuffer()).getData();
+    }
+    for (int y = 0; y < height; y++) {
+      if (null != data) {
+        System.arraycopy(data, y * width, row, 0, width);
+      } else {
+        frame.getRGB(0, y, width, 1, row, 0, width);
+      }
+      int tileRow = (y / damageTileSize) * nX;
+      for (int x = 0; x < width; x++) {
+        int n = tileRow + x / damageTileSize;
+        tiles[n] = tiles[n] * 31 + row[x];
+      }
+    }
+    return tiles;
+  }
+
+  // the runs of changed tiles per tile row
+  private static List<Rectangle> getDamaged(long[] tiles, long[] nextTiles, int nX, int nY, int width, int height) {
+    List<Rectangle> damaged = new ArrayList<>();
+    Rectangle frame = new Rectangle(0, 0, width, height);
+    for (int ty = 0; ty < nY; ty++) {
+      int start = -1;
+      for (int tx = 0; tx <= nX; tx++) {
+        boolean changed = tx < nX && tiles[ty * nX + tx] != nextTiles[ty * nX + tx];
+        if (changed && start < 0) {
+          start = tx;
+        } else if (!changed && start > -1) {
+          damaged.add(new Rectangle(start * damageTileSize, ty * damageTileSize,
+              (tx - start) * damageTileSize, damageTileSize).intersection(frame));
+          start = -1;
+        }
+      }
     }
+    return damaged;
   }
+  //</editor-fold>
 
   public boolean isRunning() {
     return null != client;
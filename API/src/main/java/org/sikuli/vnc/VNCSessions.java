@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.vnc;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+import org.sikuli.script.support.ScriptAbort;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * manages the running VNCScreens (sessions)
+ * <ul>
+ * <li>lost connections are reconnected with increasing delay
+ * (Settings.VNCReconnectTries, Settings.VNCReconnectMaxDelay)</li>
+ * <li>the find operations over all sessions are limited (Settings.VNCMatchThreads),
+ * each session waiting for a find gets a fair share</li>
+ * <li>scripts can be run against many sessions at the same time (Settings.VNCSessionThreads)</li>
+ * <li>per session find throughput and latency are counted (getStats())</li>
+ * </ul>
+ */
+public class VNCSessions {
+
+  private static String me = "VNCSessions: ";
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  //<editor-fold desc="01 sessions">
+  public enum State {CONNECTED, RECONNECTING, LOST, STOPPED}
+
+  /**
+   * the state and the find metrics of a VNCScreen
+   */
+  public static class Session {
+    private final VNCScreen screen;
+    private final long started = System.currentTimeMillis();
+    private volatile State state = State.CONNECTED;
+    private volatile int reconnects = 0;
+    private int reconnectTries = 0;
+
+    private final AtomicLong finds = new AtomicLong(0);
+    private final AtomicLong findTime = new AtomicLong(0);
+    private final AtomicLong maxFindTime = new AtomicLong(0);
+    private final AtomicLong slotWaitTime = new AtomicLong(0);
+
+    // guarded by slotLock
+    private int finding = 0;
+    private int waiting = 0;
+
+    Session(VNCScreen screen) {
+      this.screen = screen;
+    }
+
+    public VNCScreen getScreen() {
+      return screen;
+    }
+
+    public State getState() {
+      return state;
+    }
+
+    public int getReconnects() {
+      return reconnects;
+    }
+
+    public long getFinds() {
+      return finds.get();
+    }
+
+    /**
+     * @return finds per second since the session was started
+     */
+    public double getFindRate() {
+      long running = Math.max(1, System.currentTimeMillis() - started);
+      return finds.get() * 1000.0 / running;
+    }
+
+    /**
+     * @return average milliseconds of a find (including the wait for a slot)
+     */
+    public double getFindLatency() {
+      long count = finds.get();
+      return count == 0 ? 0 : (double) (findTime.get() + slotWaitTime.get()) / count;
+    }
+
+    public long getMaxFindTime() {
+      return maxFindTime.get();
+    }
+
+    /**
+     * @return average milliseconds a find had to wait for a slot
+     */
+    public double getSlotWait() {
+      long count = finds.get();
+      return count == 0 ? 0 : (double) slotWaitTime.get() / count;
+    }
+
+    // finds of this session waiting for a slot
+    int getWaitingForSlot() {
+      synchronized (slotLock) {
+        return waiting;
+      }
+    }
+
+    private void countFind(long waited, long took) {
+      finds.incrementAndGet();
+      slotWaitTime.addAndGet(waited);
+      findTime.addAndGet(took);
+      maxFindTime.accumulateAndGet(took, Math::max);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %s reconnects: %d finds: %d (%.1f/sec) latency: %.1f (max %d, slot wait %.1f) msec",
+          screen.getIDString(), state, reconnects, getFinds(), getFindRate(), getFindLatency(),
+          getMaxFindTime(), getSlotWait());
+    }
+  }
+
+  private static final Map<VNCScreen, Session> sessions = new ConcurrentHashMap<>();
+
+  static Session register(VNCScreen screen) {
+    Session session = new Session(screen);
+    sessions.put(screen, session);
+    return session;
+  }
+
+  static void unregister(VNCScreen screen) {
+    Session session = sessions.remove(screen);
+    if (null != session) {
+      session.state = State.STOPPED;
+      log(3, "stopped: %s", session);
+    }
+  }
+
+  /**
+   * @param screen a VNCScreen
+   * @return its session (null if not running)
+   */
+  public static Session getSession(VNCScreen screen) {
+    return sessions.get(screen);
+  }
+
+  /**
+   * @return the sessions currently known
+   */
+  public static List<Session> getSessions() {
+    return new ArrayList<>(sessions.values());
+  }
+
+  /**
+   * @return one line per session with state and find metrics
+   */
+  public static String getStats() {
+    StringBuilder stats = new StringBuilder();
+    for (Session session : sessions.values()) {
+      stats.append(session).append("\n");
+    }
+    return stats.toString();
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="02 reconnect">
+  private static ScheduledExecutorService reconnector = null;
+
+  private static synchronized ScheduledExecutorService getReconnector() {
+    if (null == reconnector) {
+      reconnector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "VNCSessions-reconnect");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return reconnector;
+  }
+
+  /**
+   * called by the message thread of a VNCScreen, when the connection is lost
+   *
+   * @param screen the VNCScreen
+   * @param e      the reason
+   */
+  static void connectionLost(VNCScreen screen, Exception e) {
+    Session session = sessions.get(screen);
+    if (null == session || session.state != State.CONNECTED) {
+      return;
+    }
+    log(-1, "connection lost: %s (%s)", screen.getIDString(), e.getMessage());
+    session.state = State.RECONNECTING;
+    session.reconnectTries = 0;
+    scheduleReconnect(session);
+  }
+
+  private static void scheduleReconnect(Session session) {
+    if (session.reconnectTries >= Settings.VNCReconnectTries) {
+      session.state = State.LOST;
+      log(-1, "giving up after %d reconnect tries: %s", session.reconnectTries, session.screen.getIDString());
+      return;
+    }
+    long delay = Math.min(Math.max(1, Settings.VNCReconnectMaxDelay), 1L << Math.min(session.reconnectTries, 16));
+    session.reconnectTries++;
+    log(3, "reconnect try %d in %d secs: %s", session.reconnectTries, delay, session.screen.getIDString());
+    getReconnector().schedule(() -> {
+      if (session.state != State.RECONNECTING) {
+        return;
+      }
+      if (session.screen.reconnect()) {
+        session.state = State.CONNECTED;
+        session.reconnects++;
+        log(3, "reconnected: %s", session.screen.getIDString());
+      } else {
+        scheduleReconnect(session);
+      }
+    }, delay, TimeUnit.SECONDS);
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="03 find slots">
+  private static final Object slotLock = new Object();
+  private static int slotsInUse = 0;
+  private static final ThreadLocal<Boolean> hasSlot = ThreadLocal.withInitial(() -> false);
+
+  private static int getSlots() {
+    return Settings.VNCMatchThreads > 0 ? Settings.VNCMatchThreads : Runtime.getRuntime().availableProcessors();
+  }
+
+  // the slots are shared equally by the sessions currently finding or waiting
+  private static int getShare() {
+    int competing = 0;
+    for (Session session : sessions.values()) {
+      if (session.finding > 0 || session.waiting > 0) {
+        competing++;
+      }
+    }
+    return Math.max(1, getSlots() / Math.max(1, competing));
+  }
+
+  /**
+   * runs the find operation of the given screen, as soon as a slot is available
+   * and the screen's session has not used up its share
+   *
+   * @param screen the VNCScreen
+   * @param find   the find operation
+   * @param <T>    the result type
+   * @return the result of the find operation
+   * @throws ScriptAbort.Aborted if the waiting thread runs an aborted script
+   */
+  static <T> T runFind(VNCScreen screen, Supplier<T> find) {
+    Session session = sessions.get(screen);
+    if (null == session || hasSlot.get()) {
+      return find.get();
+    }
+    long before = System.currentTimeMillis();
+    synchronized (slotLock) {
+      session.waiting++;
+      try {
+        while (slotsInUse >= getSlots() || session.finding >= getShare()) {
+          slotLock.wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        ScriptAbort.check();
+        throw new IllegalStateException("VNCSessions: interrupted while waiting for a find slot", e);
+      } finally {
+        session.waiting--;
+      }
+      slotsInUse++;
+      session.finding++;
+    }
+    long start = System.currentTimeMillis();
+    hasSlot.set(true);
+    try {
+      return find.get();
+    } finally {
+      hasSlot.set(false);
+      session.countFind(start - before, System.currentTimeMillis() - start);
+      synchronized (slotLock) {
+        slotsInUse--;
+        session.finding--;
+        slotLock.notifyAll();
+      }
+    }
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="04 run scripts">
+  private static ThreadPoolExecutor scriptPool = null;
+  private static int scriptPoolSize = 0;
+  private static AtomicInteger scriptThreadCount = new AtomicInteger(0);
+
+  private static synchronized ThreadPoolExecutor getScriptPool() {
+    int wanted = Math.max(1, Settings.VNCSessionThreads);
+    if (null == scriptPool || wanted != scriptPoolSize) {
+      if (null != scriptPool) {
+        scriptPool.shutdown();
+      }
+      scriptPoolSize = wanted;
+      scriptPool = new ThreadPoolExecutor(wanted, wanted, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+          runnable -> {
+            Thread thread = new Thread(runnable, "VNCSessions-script-" + scriptThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+      scriptPool.allowCoreThreadTimeOut(true);
+    }
+    return scriptPool;
+  }
+
+  /**
+   * runs the script against each of the given screens at the same time
+   * (at most Settings.VNCSessionThreads, the others are queued)
+   *
+   * @param script  the script (gets the VNCScreen to work with)
+   * @param screens the VNCScreens
+   * @return one future per screen (same order), completed exceptionally if the script failed
+   */
+  public static List<CompletableFuture<Void>> run(Consumer<VNCScreen> script, Collection<VNCScreen> screens) {
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    ThreadPoolExecutor pool = getScriptPool();
+    for (VNCScreen screen : screens) {
+      futures.add(CompletableFuture.runAsync(() -> script.accept(screen), pool));
+    }
+    return futures;
+  }
+
+  /**
+   * runs the script against each of the given screens at the same time and waits for all to end
+   *
+   * @param script  the script (gets the VNCScreen to work with)
+   * @param screens the VNCScreens
+   * @return the errors per screen (empty if all scripts ended normally)
+   */
+  public static Map<VNCScreen, Throwable> runAndWait(Consumer<VNCScreen> script, Collection<VNCScreen> screens) {
+    Map<VNCScreen, Throwable> errors = new ConcurrentHashMap<>();
+    List<VNCScreen> screenList = new ArrayList<>(screens);
+    List<CompletableFuture<Void>> futures = run(script, screenList);
+    for (int n = 0; n < futures.size(); n++) {
+      try {
+        futures.get(n).join();
+      } catch (Exception e) {
+        errors.put(screenList.get(n), null == e.getCause() ? e : e.getCause());
+      }
+    }
+    return errors;
+  }
+
+  /**
+   * runs the script against all running VNCScreens at the same time and waits for all to end
+   *
+   * @param script the script (gets the VNCScreen to work with)
+   * @return the errors per screen (empty if all scripts ended normally)
+   */
+  public static Map<VNCScreen, Throwable> runAll(Consumer<VNCScreen> script) {
+    List<VNCScreen> screens = new ArrayList<>();
+    for (Session session : sessions.values()) {
+      if (session.state == State.CONNECTED) {
+        screens.add(session.screen);
+      }
+    }
+    return runAndWait(script, screens);
+  }
+  //</editor-fold>
+}
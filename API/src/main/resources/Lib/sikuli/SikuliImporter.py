@@ -18,6 +18,14 @@ class SikuliImporter:
             self.path = path
         
         def _load_module(self, fullname):
+            pyfile = JH.get().getModuleCodeFile(fullname, self.path)
+            if pyfile:
+                try:
+                    return JH.get().loadModule(fullname, pyfile)
+                except:
+                    etype, evalue, etb = sys.exc_info()
+                    evalue = etype("!!WHILE IMPORTING!! %s" % evalue)
+                    raise etype, evalue, etb
             try:
                 (file, pathname, desc) =  imp.find_module(fullname)
             except:
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.test;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Range;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.sikuli.script.Match;
+import org.sikuli.script.support.SXOpenCV;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SXOpenCV.doFindAllPeaks must give the same list as the former findAll loop
+ * (maximum, then zeroing its surroundings, until the maximum is not above the score)
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class FindAllPeaksTest {
+
+  static {
+    SXOpenCV.newMat(); // loads the OpenCV library
+  }
+
+  // the findAll loop as it was before doFindAllPeaks
+  private static List<Match> findAllByZeroing(Mat result, double minScore, int targetW, int targetH) {
+    Mat work = result.clone();
+    int marginX = Math.max(1, (int) (targetW * 0.8));
+    int marginY = Math.max(1, (int) (targetH * 0.8));
+    List<Match> matches = new ArrayList<>();
+    while (true) {
+      Core.MinMaxLocResult minMax = Core.minMaxLoc(work);
+      if (minMax.maxVal <= minScore) {
+        break;
+      }
+      int x = (int) minMax.maxLoc.x;
+      int y = (int) minMax.maxLoc.y;
+      matches.add(new Match(x, y, targetW, targetH, minMax.maxVal, null));
+      Range rangeX = new Range(Math.max(x - marginX, 0), Math.min(x + marginX, work.width()));
+      Range rangeY = new Range(Math.max(y - marginY, 0), Math.min(y + marginY, work.height()));
+      work.colRange(rangeX).rowRange(rangeY).setTo(new Scalar(0f));
+    }
+    return matches;
+  }
+
+  private static void assertSameMatches(Mat result, double minScore, int targetW, int targetH) {
+    List<Match> expected = findAllByZeroing(result, minScore, targetW, targetH);
+    List<Match> peaks = SXOpenCV.doFindAllPeaks(result, minScore, targetW, targetH);
+    Assert.assertEquals("number of matches", expected.size(), peaks.size());
+    for (int n = 0; n < expected.size(); n++) {
+      Match exp = expected.get(n);
+      Match peak = peaks.get(n);
+      String msg = String.format("match %d: expected %s got %s", n, exp, peak);
+      Assert.assertEquals(msg, exp.x, peak.x);
+      Assert.assertEquals(msg, exp.y, peak.y);
+      Assert.assertEquals(msg, exp.w, peak.w);
+      Assert.assertEquals(msg, exp.h, peak.h);
+      Assert.assertEquals(msg, exp.score(), peak.score(), 0);
+    }
+  }
+
+  private static Mat makeResult(int w, int h, long seed) {
+    Mat result = new Mat(h, w, CvType.CV_32F);
+    Core.setRNGSeed((int) seed);
+    Core.randu(result, 0, 1);
+    return result;
+  }
+
+  @Test
+  public void test010_RandomScores() {
+    Mat result = makeResult(300, 200, 4711);
+    assertSameMatches(result, 0.7, 20, 15);
+    assertSameMatches(result, 0.95, 7, 33);
+  }
+
+  @Test
+  public void test020_SmallTarget() {
+    Mat result = makeResult(120, 80, 42);
+    assertSameMatches(result, 0.9, 1, 1);
+    assertSameMatches(result, 0.9, 3, 2);
+  }
+
+  @Test
+  public void test030_LargeTarget() {
+    // several high values inside one target area: only the best is reported
+    Mat result = makeResult(400, 300, 7);
+    Core.multiply(result, new Scalar(0.5), result);
+    result.put(100, 100, 0.99f);
+    result.put(110, 130, 0.98f);
+    result.put(140, 160, 0.97f);
+    result.put(250, 350, 0.96f);
+    assertSameMatches(result, 0.7, 100, 80);
+  }
+
+  @Test
+  public void test040_Plateaus() {
+    // plain color targets: large areas with the same score (ties row by row as minMaxLoc)
+    Mat result = new Mat(200, 300, CvType.CV_32F, new Scalar(0.5));
+    result.submat(new Rect(10, 20, 120, 40)).setTo(new Scalar(0.9));
+    result.submat(new Rect(200, 100, 60, 60)).setTo(new Scalar(0.9));
+    result.submat(new Rect(50, 150, 200, 30)).setTo(new Scalar(0.8));
+    assertSameMatches(result, 0.7, 12, 9);
+    assertSameMatches(result, 0.85, 30, 30);
+  }
+
+  @Test
+  public void test050_NothingAbove() {
+    Mat result = new Mat(50, 50, CvType.CV_32F, new Scalar(0.3));
+    Assert.assertEquals(0, SXOpenCV.doFindAllPeaks(result, 0.7, 10, 10).size());
+    assertSameMatches(result, 0.7, 10, 10);
+  }
+
+  @Test
+  public void test060_PartOfResult() {
+    // not continuous: the scores are read row by row
+    Mat result = makeResult(300, 200, 815);
+    Mat part = result.submat(new Rect(17, 23, 200, 150));
+    Assert.assertFalse(part.isContinuous());
+    assertSameMatches(part, 0.8, 11, 13);
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.test;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.sikuli.basics.Settings;
+import org.sikuli.script.Finder;
+import org.sikuli.script.Image;
+import org.sikuli.script.Match;
+import org.sikuli.script.support.SXOpenCV;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finder: the matches of a find in an image (synthetic images, no screen needed)
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class FinderTest {
+
+  static {
+    SXOpenCV.newMat(); // loads the OpenCV library
+  }
+
+  private boolean savedSearchDownsized;
+
+  @Before
+  public void setUp() {
+    savedSearchDownsized = Settings.SearchDownsized;
+  }
+
+  @After
+  public void tearDown() {
+    Settings.SearchDownsized = savedSearchDownsized;
+  }
+
+  // noise: nothing but the placed targets matches
+  private static Mat makeBase(int w, int h) {
+    Mat base = new Mat(h, w, CvType.CV_8UC3);
+    Core.setRNGSeed(4711);
+    Core.randu(base, 0, 256);
+    return base;
+  }
+
+  // coarse structure: still the same when downsized
+  private static Mat makeTarget() {
+    Mat target = new Mat(96, 96, CvType.CV_8UC3, new Scalar(0, 0, 0));
+    target.submat(new Rect(48, 0, 48, 48)).setTo(new Scalar(255, 255, 255));
+    target.submat(new Rect(0, 48, 48, 48)).setTo(new Scalar(100, 150, 200));
+    target.submat(new Rect(48, 48, 48, 48)).setTo(new Scalar(200, 50, 120));
+    return target;
+  }
+
+  private static void place(Mat base, Mat target, int x, int y) {
+    target.copyTo(base.submat(new Rect(x, y, target.cols(), target.rows())));
+  }
+
+  private static List<Match> findAndIterate(Mat base, Mat target) {
+    Finder finder = new Finder(base);
+    finder.find(new Image(target));
+    List<Match> matches = new ArrayList<>();
+    while (finder.hasNext()) {
+      matches.add(finder.next());
+    }
+    return matches;
+  }
+
+  private static void assertMatchesAt(List<Match> matches, int[][] positions) {
+    Assert.assertEquals("matches: " + matches, positions.length, matches.size());
+    for (int[] pos : positions) {
+      boolean found = false;
+      for (Match match : matches) {
+        if (match.x == pos[0] && match.y == pos[1]) {
+          Assert.assertFalse("given twice: " + match, found);
+          found = true;
+        }
+      }
+      Assert.assertTrue(String.format("no match at %d,%d: %s", pos[0], pos[1], matches), found);
+    }
+  }
+
+  @Test
+  public void test010_FindIterate() {
+    Settings.SearchDownsized = false;
+    Mat base = makeBase(640, 480);
+    Mat target = makeTarget();
+    int[][] positions = {{400, 16}, {40, 200}, {272, 360}};
+    for (int[] pos : positions) {
+      place(base, target, pos[0], pos[1]);
+    }
+    List<Match> matches = findAndIterate(base, target);
+    // the best match first (equal scores: the first in row order)
+    Assert.assertEquals(400, matches.get(0).x);
+    Assert.assertEquals(16, matches.get(0).y);
+    assertMatchesAt(matches, positions);
+  }
+
+  @Test
+  public void test011_FindIterateDownsized() {
+    // the first match is verified in a part of the image: the others are found in the whole image
+    Settings.SearchDownsized = true;
+    Mat base = makeBase(640, 480);
+    Mat target = makeTarget();
+    int[][] positions = {{400, 16}, {40, 200}, {272, 360}};
+    for (int[] pos : positions) {
+      place(base, target, pos[0], pos[1]);
+    }
+    assertMatchesAt(findAndIterate(base, target), positions);
+  }
+
+  // fine detail (1 pixel checkerboard) inside a frame: gray inside, when downsized
+  private static Mat makeDetailedTarget(double frame) {
+    Mat target = new Mat(96, 96, CvType.CV_8UC3, new Scalar(frame, frame, frame));
+    Mat inside = target.submat(new Rect(8, 8, 80, 80));
+    byte[] pixel = new byte[3];
+    for (int y = 0; y < 80; y++) {
+      for (int x = 0; x < 80; x++) {
+        byte value = (byte) ((x + y) % 2 == 0 ? 0 : 255);
+        pixel[0] = pixel[1] = pixel[2] = value;
+        inside.put(y, x, pixel);
+      }
+    }
+    return target;
+  }
+
+  @Test
+  public void test020_DownsizedFound() {
+    Settings.SearchDownsized = true;
+    Mat base = makeBase(640, 480);
+    Mat target = makeTarget();
+    place(base, target, 304, 208);
+    Finder finder = new Finder(base);
+    finder.find(new Image(target));
+    Assert.assertTrue("not found", finder.hasNext());
+    Assert.assertTrue("not found downsized", finder.isFoundDownsized());
+    Match match = finder.next();
+    Assert.assertEquals(304, match.x);
+    Assert.assertEquals(208, match.y);
+    Assert.assertTrue("score " + match.score(), match.score() > 0.99);
+  }
+
+  @Test
+  public void test030_DownsizedMissedFallback() {
+    // the decoy looks like the target when downsized (better than the real one with its darker frame)
+    // but not in the original: the candidate is not verified, the full search finds the real one
+    Settings.SearchDownsized = true;
+    Mat base = makeBase(640, 480);
+    Mat target = makeDetailedTarget(255);
+    Mat decoy = new Mat(96, 96, CvType.CV_8UC3, new Scalar(255, 255, 255));
+    decoy.submat(new Rect(8, 8, 80, 80)).setTo(new Scalar(128, 128, 128));
+    place(base, decoy, 64, 32);
+    place(base, makeDetailedTarget(240), 400, 320);
+    Finder finder = new Finder(base);
+    finder.find(new Image(target));
+    Assert.assertTrue("not found", finder.hasNext());
+    Assert.assertFalse("found downsized", finder.isFoundDownsized());
+    Match match = finder.next();
+    Assert.assertEquals(400, match.x);
+    Assert.assertEquals(320, match.y);
+  }
+}
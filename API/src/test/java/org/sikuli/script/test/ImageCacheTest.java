@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.test;
+
+import org.junit.*;
+import org.junit.runners.MethodSorters;
+import org.opencv.core.Mat;
+import org.sikuli.basics.Settings;
+import org.sikuli.script.Image;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Image.ImageCache: byte accounting and LRU eviction with Settings.ImageCache
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ImageCacheTest {
+
+  // 640 x 546 x 3 bytes: a bit more than 1 MB
+  private static final int imageW = 640;
+  private static final int imageH = 546;
+  private static final long imageBytes = imageW * imageH * 3L;
+
+  private static File folder = null;
+  private int savedImageCache;
+
+  @BeforeClass
+  public static void setUpClass() throws IOException {
+    folder = Files.createTempDirectory("ImageCacheTest").toFile();
+    for (int n = 0; n < 4; n++) {
+      BufferedImage img = new BufferedImage(imageW, imageH, BufferedImage.TYPE_3BYTE_BGR);
+      Graphics2D g = img.createGraphics();
+      g.setColor(new Color(50 * n, 100, 200 - 40 * n));
+      g.fillRect(0, 0, imageW, imageH);
+      g.setColor(Color.WHITE);
+      g.fillRect(10 * n, 10 * n, 50, 50);
+      g.dispose();
+      ImageIO.write(img, "png", new File(folder, "image" + n + ".png"));
+    }
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    File[] files = folder.listFiles();
+    if (null != files) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    folder.delete();
+  }
+
+  @Before
+  public void setUp() {
+    savedImageCache = Settings.ImageCache;
+    Image.resetCache();
+  }
+
+  @After
+  public void tearDown() {
+    Settings.ImageCache = savedImageCache;
+    Image.resetCache();
+  }
+
+  private static Image load(int n) {
+    Image image = new Image(new File(folder, "image" + n + ".png"));
+    Assert.assertTrue("not valid: image" + n, image.isValid());
+    return image;
+  }
+
+  private static List<String> cachedNames() {
+    List<String> names = new ArrayList<>();
+    for (URL url : Image.getCache().keySet()) {
+      names.add(new File(url.getPath()).getName());
+    }
+    return names;
+  }
+
+  private static long cachedBytes() {
+    long bytes = 0;
+    for (List<Object> items : Image.getCache().values()) {
+      bytes += (Long) items.get(3);
+    }
+    return bytes;
+  }
+
+  @Test
+  public void test010_ByteAccounting() {
+    Settings.ImageCache = 0;
+    for (int n = 0; n < 4; n++) {
+      load(n);
+    }
+    Assert.assertEquals(4, Image.getCache().size());
+    for (Map.Entry<URL, List<Object>> entry : Image.getCache().entrySet()) {
+      Assert.assertEquals("bytes of " + entry.getKey(), imageBytes, (long) (Long) entry.getValue().get(3));
+    }
+    Assert.assertEquals(4 * imageBytes, cachedBytes());
+    Assert.assertTrue(Image.cacheStats(), Image.cacheStats().contains("evictions(0)"));
+  }
+
+  @Test
+  public void test020_EvictLeastRecentlyUsed() {
+    Settings.ImageCache = 2; // room for 2 images
+    Image image0 = load(0);
+    load(1);
+    image0.getContent(); // image1 is now the least recently used
+    load(2);
+    Assert.assertEquals("[image0.png, image2.png]", cachedNames().toString());
+    Assert.assertEquals(2 * imageBytes, cachedBytes());
+    Assert.assertTrue(Image.cacheStats(), Image.cacheStats().contains("evictions(1)"));
+  }
+
+  @Test
+  public void test030_EvictedIsReloaded() {
+    Settings.ImageCache = 2;
+    Image image0 = load(0);
+    load(1);
+    load(2);
+    Assert.assertFalse(cachedNames().contains("image0.png"));
+    Assert.assertTrue("evicted image not reloaded", image0.isValid());
+    Assert.assertEquals(imageW, image0.getContent().cols());
+    Assert.assertTrue(cachedNames().contains("image0.png"));
+    Assert.assertTrue("over budget: " + cachedBytes(), cachedBytes() <= 2 * 1024 * 1024);
+  }
+
+  @Test
+  public void test040_EvictedContentStaysUsable() {
+    // a find in another thread might still use the content of an evicted image
+    Settings.ImageCache = 2;
+    Mat content = load(0).getContent();
+    load(1);
+    load(2);
+    Assert.assertFalse(cachedNames().contains("image0.png"));
+    Assert.assertFalse("content released", content.empty());
+    Assert.assertEquals(imageW, content.cols());
+    Assert.assertEquals(3, content.get(imageH - 1, imageW - 1).length);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.test;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.sikuli.script.support.ScriptAbort;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ScriptAbort: an abort belongs to one script run
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ScriptAbortTest {
+
+  @Test
+  public void test010_AbortedRun() {
+    ScriptAbort.Run run = ScriptAbort.start();
+    try {
+      Assert.assertFalse(ScriptAbort.isAborted());
+      ScriptAbort.abort(run);
+      Assert.assertTrue(ScriptAbort.isAborted());
+      Assert.assertTrue("not interrupted", Thread.currentThread().isInterrupted());
+      try {
+        ScriptAbort.check();
+        Assert.fail("no ScriptAbort.Aborted");
+      } catch (ScriptAbort.Aborted e) {
+      }
+    } finally {
+      ScriptAbort.end(run);
+    }
+    Assert.assertFalse("interrupt left for the caller", Thread.currentThread().isInterrupted());
+    Assert.assertFalse(ScriptAbort.isRunning());
+    Assert.assertFalse(ScriptAbort.isAborted());
+  }
+
+  @Test
+  public void test020_NextRunNotAborted() {
+    ScriptAbort.Run first = ScriptAbort.start();
+    ScriptAbort.abort(first);
+    ScriptAbort.end(first);
+    ScriptAbort.Run second = ScriptAbort.start();
+    try {
+      Assert.assertNotSame(first, second);
+      Assert.assertFalse("abort of the former run", ScriptAbort.isAborted());
+      // a late abort of the ended run
+      ScriptAbort.abort(first);
+      Assert.assertFalse(ScriptAbort.isAborted());
+      Assert.assertFalse(Thread.currentThread().isInterrupted());
+    } finally {
+      ScriptAbort.end(second);
+    }
+  }
+
+  @Test
+  public void test030_NestedRun() {
+    ScriptAbort.Run outer = ScriptAbort.start();
+    try {
+      ScriptAbort.Run inner = ScriptAbort.start();
+      Assert.assertSame(outer, inner);
+      ScriptAbort.end(inner);
+      Assert.assertTrue("outer run ended", ScriptAbort.isRunning());
+      ScriptAbort.abort(outer);
+      Assert.assertTrue(ScriptAbort.isAborted());
+    } finally {
+      ScriptAbort.end(outer);
+    }
+    Assert.assertFalse(ScriptAbort.isRunning());
+  }
+
+  @Test
+  public void test040_OtherThreadsNotAborted() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch aborted = new CountDownLatch(1);
+    AtomicReference<ScriptAbort.Run> abortedRun = new AtomicReference<>();
+    AtomicBoolean abortedSeen = new AtomicBoolean(false);
+    AtomicBoolean otherSeen = new AtomicBoolean(true);
+    Thread one = new Thread(() -> {
+      ScriptAbort.Run run = ScriptAbort.start();
+      abortedRun.set(run);
+      started.countDown();
+      try {
+        aborted.await();
+      } catch (InterruptedException e) {
+      }
+      abortedSeen.set(ScriptAbort.isAborted());
+      ScriptAbort.end(run);
+    });
+    Thread other = new Thread(() -> {
+      ScriptAbort.Run run = ScriptAbort.start();
+      started.countDown();
+      try {
+        aborted.await();
+      } catch (InterruptedException e) {
+      }
+      otherSeen.set(ScriptAbort.isAborted());
+      ScriptAbort.end(run);
+    });
+    one.start();
+    other.start();
+    started.await();
+    ScriptAbort.abort(abortedRun.get());
+    aborted.countDown();
+    one.join(3000);
+    other.join(3000);
+    Assert.assertTrue("abort not seen", abortedSeen.get());
+    Assert.assertFalse("abort seen by another run", otherSeen.get());
+  }
+}
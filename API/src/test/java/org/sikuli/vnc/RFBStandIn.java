@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.vnc;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * a minimal RFB (VNC) server for the tests: protocol 3.8, no authentication, raw encoding
+ * <p>the framebuffer is a plain pixel array changed with fill().
+ * Connections can be dropped and refused to simulate a lost server.</p>
+ */
+class RFBStandIn implements AutoCloseable {
+
+  private final ServerSocket server;
+  private final int width;
+  private final int height;
+  private final int[] pixels;
+  private final List<Connection> connections = new CopyOnWriteArrayList<>();
+  private final List<Long> connectTimes = new CopyOnWriteArrayList<>();
+  private volatile boolean refusing = false;
+  private volatile boolean closed = false;
+
+  RFBStandIn(int width, int height) throws IOException {
+    this.width = width;
+    this.height = height;
+    pixels = new int[width * height];
+    server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    Thread acceptor = new Thread(this::accept, "RFBStandIn-" + getPort());
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  int getPort() {
+    return server.getLocalPort();
+  }
+
+  /**
+   * @return the times (millis) of the connections, that reached the protocol handshake (also refused ones)
+   */
+  List<Long> getConnectTimes() {
+    return new ArrayList<>(connectTimes);
+  }
+
+  /**
+   * @return the number of connections, that completed the handshake and are still open
+   */
+  int getClients() {
+    return connections.size();
+  }
+
+  /**
+   * @param refusing true: new connections are closed after the protocol version (client connect fails)
+   */
+  void setRefusing(boolean refusing) {
+    this.refusing = refusing;
+  }
+
+  /**
+   * closes all connections (the clients lose their connection)
+   */
+  void dropConnections() {
+    for (Connection connection : connections) {
+      connection.close();
+    }
+  }
+
+  /**
+   * fills the rectangle with the color and sends the update to the clients waiting for one
+   */
+  void fill(Rectangle rect, Color color) {
+    Rectangle area = rect.intersection(new Rectangle(0, 0, width, height));
+    synchronized (pixels) {
+      for (int y = area.y; y < area.y + area.height; y++) {
+        Arrays.fill(pixels, y * width + area.x, y * width + area.x + area.width, color.getRGB() & 0xffffff);
+      }
+    }
+    for (Connection connection : connections) {
+      connection.damaged(area);
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      server.close();
+    } catch (IOException e) {
+    }
+    dropConnections();
+  }
+
+  private void accept() {
+    while (!closed) {
+      try {
+        Socket socket = server.accept();
+        Thread handler = new Thread(() -> new Connection(socket).run(), "RFBStandIn-connection");
+        handler.setDaemon(true);
+        handler.start();
+      } catch (IOException e) {
+        if (closed) {
+          return;
+        }
+      }
+    }
+  }
+
+  private class Connection {
+    private final Socket socket;
+    private DataOutputStream out;
+    // the client's pixel format
+    private int bytesPerPixel = 4;
+    private boolean bigEndian = false;
+    private int redMax = 255, greenMax = 255, blueMax = 255;
+    private int redShift = 16, greenShift = 8, blueShift = 0;
+    // guarded by this
+    private Rectangle requested = null;
+    private Rectangle dirty = null;
+
+    Connection(Socket socket) {
+      this.socket = socket;
+    }
+
+    void run() {
+      try {
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        out = new DataOutputStream(socket.getOutputStream());
+        out.write("RFB 003.008\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        in.readFully(new byte[12]);
+        connectTimes.add(System.currentTimeMillis());
+        if (refusing) {
+          socket.close();
+          return;
+        }
+        out.writeByte(1);
+        out.writeByte(1); // security: none
+        out.flush();
+        in.readUnsignedByte();
+        out.writeInt(0); // security result: ok
+        in.readUnsignedByte(); // client init: shared
+        out.writeShort(width);
+        out.writeShort(height);
+        out.write(new byte[]{32, 24, 0, 1, 0, (byte) 255, 0, (byte) 255, 0, (byte) 255, 16, 8, 0, 0, 0, 0});
+        byte[] name = "RFBStandIn".getBytes(StandardCharsets.US_ASCII);
+        out.writeInt(name.length);
+        out.write(name);
+        out.flush();
+        connections.add(this);
+        while (true) {
+          int type = in.readUnsignedByte();
+          switch (type) {
+            case 0: // SetPixelFormat
+              in.readFully(new byte[3]);
+              setPixelFormat(in);
+              break;
+            case 2: // SetEncodings
+              in.readUnsignedByte();
+              in.readFully(new byte[4 * in.readUnsignedShort()]);
+              break;
+            case 3: // FramebufferUpdateRequest
+              boolean incremental = in.readUnsignedByte() != 0;
+              Rectangle rect = new Rectangle(in.readUnsignedShort(), in.readUnsignedShort(),
+                  in.readUnsignedShort(), in.readUnsignedShort());
+              requested(rect, incremental);
+              break;
+            case 4: // KeyEvent
+              in.readFully(new byte[7]);
+              break;
+            case 5: // PointerEvent
+              in.readFully(new byte[5]);
+              break;
+            case 6: // ClientCutText
+              in.readFully(new byte[3]);
+              in.readFully(new byte[in.readInt()]);
+              break;
+            default:
+              throw new IOException("RFBStandIn: unknown client message: " + type);
+          }
+        }
+      } catch (IOException e) {
+        // connection closed
+      } finally {
+        close();
+      }
+    }
+
+    private void setPixelFormat(DataInputStream in) throws IOException {
+      int bitsPerPixel = in.readUnsignedByte();
+      in.readUnsignedByte(); // depth
+      boolean big = in.readUnsignedByte() != 0;
+      in.readUnsignedByte(); // true color (a color map is not supported)
+      int rMax = in.readUnsignedShort(), gMax = in.readUnsignedShort(), bMax = in.readUnsignedShort();
+      int rShift = in.readUnsignedByte(), gShift = in.readUnsignedByte(), bShift = in.readUnsignedByte();
+      in.readFully(new byte[3]);
+      synchronized (this) {
+        bytesPerPixel = bitsPerPixel / 8;
+        bigEndian = big;
+        redMax = rMax;
+        greenMax = gMax;
+        blueMax = bMax;
+        redShift = rShift;
+        greenShift = gShift;
+        blueShift = bShift;
+      }
+    }
+
+    synchronized void requested(Rectangle rect, boolean incremental) throws IOException {
+      requested = rect;
+      if (!incremental) {
+        dirty = null == dirty ? new Rectangle(rect) : dirty.union(rect);
+      }
+      send();
+    }
+
+    synchronized void damaged(Rectangle area) {
+      dirty = null == dirty ? new Rectangle(area) : dirty.union(area);
+      try {
+        send();
+      } catch (IOException e) {
+        close();
+      }
+    }
+
+    // an update only if the client asked for one (incremental requests wait for a change)
+    private void send() throws IOException {
+      if (null == requested || null == dirty) {
+        return;
+      }
+      Rectangle rect = dirty.intersection(requested);
+      requested = null;
+      dirty = null;
+      if (rect.isEmpty()) {
+        return;
+      }
+      byte[] data = new byte[rect.width * rect.height * bytesPerPixel];
+      int n = 0;
+      synchronized (pixels) {
+        for (int y = rect.y; y < rect.y + rect.height; y++) {
+          for (int x = rect.x; x < rect.x + rect.width; x++) {
+            n = putPixel(data, n, pixels[y * width + x]);
+          }
+        }
+      }
+      out.writeByte(0); // FramebufferUpdate
+      out.writeByte(0);
+      out.writeShort(1);
+      out.writeShort(rect.x);
+      out.writeShort(rect.y);
+      out.writeShort(rect.width);
+      out.writeShort(rect.height);
+      out.writeInt(0); // raw
+      out.write(data);
+      out.flush();
+    }
+
+    private int putPixel(byte[] data, int n, int rgb) {
+      int red = ((rgb >> 16) & 0xff) * redMax / 255;
+      int green = ((rgb >> 8) & 0xff) * greenMax / 255;
+      int blue = (rgb & 0xff) * blueMax / 255;
+      int value = (red << redShift) | (green << greenShift) | (blue << blueShift);
+      for (int b = 0; b < bytesPerPixel; b++) {
+        int shift = bigEndian ? 8 * (bytesPerPixel - 1 - b) : 8 * b;
+        data[n++] = (byte) (value >> shift);
+      }
+      return n;
+    }
+
+    void close() {
+      connections.remove(this);
+      try {
+        socket.close();
+      } catch (IOException e) {
+      }
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.vnc;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.io.IOException;
+
+/**
+ * VNCScreen: framebuffer updates as seen by waiting finds and observers (against RFBStandIn)
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class VNCScreenUpdatesTest {
+
+  private static RFBStandIn server = null;
+  private static VNCScreen screen = null;
+
+  @BeforeClass
+  public static void setUpClass() throws IOException {
+    server = new RFBStandIn(320, 240);
+    VNCScreen.startUp(0);
+    screen = VNCScreen.start("127.0.0.1", server.getPort(), 3, 0);
+    Assert.assertTrue("not connected", screen.isRunning());
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    if (null != screen) {
+      screen.stop();
+    }
+    server.close();
+  }
+
+  private static void fillLater(Rectangle rect, Color color, long millis) {
+    Thread filler = new Thread(() -> {
+      try {
+        Thread.sleep(millis);
+      } catch (InterruptedException e) {
+        return;
+      }
+      server.fill(rect, color);
+    });
+    filler.setDaemon(true);
+    filler.start();
+  }
+
+  @Test
+  public void test010_NoCheckWithoutWaiters() throws InterruptedException {
+    Rectangle area = new Rectangle(0, 0, 64, 64);
+    long since = screen.getUpdateCount();
+    server.fill(area, Color.RED);
+    Thread.sleep(500);
+    Assert.assertFalse("framebuffer checked without waiters", screen.isDirtySince(area, since));
+    // the first check, when someone waits, reports what changed in the meantime
+    Assert.assertTrue("update while not checking was lost", screen.waitForUpdate(area, since, 2000));
+  }
+
+  @Test
+  public void test020_WaitEndsWithUpdate() {
+    Rectangle area = new Rectangle(90, 90, 50, 50);
+    long since = screen.getUpdateCount();
+    fillLater(new Rectangle(100, 100, 20, 20), Color.GREEN, 200);
+    long start = System.currentTimeMillis();
+    Assert.assertTrue("no update", screen.waitForUpdate(area, since, 5000));
+    long waited = System.currentTimeMillis() - start;
+    Assert.assertTrue("waited " + waited, waited >= 150 && waited < 2000);
+  }
+
+  @Test
+  public void test030_UntouchedAreaStaysClean() {
+    Rectangle area = new Rectangle(0, 0, 64, 64);
+    Rectangle other = new Rectangle(200, 150, 64, 64);
+    long since = screen.getUpdateCount();
+    fillLater(other, Color.BLUE, 100);
+    Assert.assertFalse("update outside the area", screen.waitForUpdate(area, since, 1000));
+    Assert.assertTrue("update not seen", screen.isDirtySince(other, since));
+    Assert.assertFalse(screen.isDirtySince(area, since));
+  }
+
+  @Test
+  public void test040_MarkDamaged() {
+    Rectangle area = new Rectangle(10, 10, 5, 5);
+    long since = screen.getUpdateCount();
+    screen.markDamaged(area);
+    Assert.assertTrue(screen.getUpdateCount() > since);
+    Assert.assertTrue(screen.isDirtySince(area, since));
+    Assert.assertTrue(screen.waitForUpdate(area, since, 0));
+  }
+
+  @Test
+  public void test050_ChangedBackBeforeWait() throws InterruptedException {
+    Rectangle area = new Rectangle(160, 0, 64, 64);
+    // the watcher's last check sees A
+    server.fill(area, Color.GREEN);
+    Thread.sleep(300);
+    screen.waitForUpdate(area, screen.getUpdateCount(), 300);
+    // B is captured (the find fails), then the screen goes back to A before the wait
+    server.fill(area, Color.RED);
+    Thread.sleep(300);
+    long since = screen.getUpdateCount();
+    server.fill(area, Color.GREEN);
+    Thread.sleep(300);
+    Assert.assertTrue("change since the capture not seen", screen.waitForUpdate(area, since, 1000));
+  }
+
+  @Test
+  public void test090_WatcherEndsWithScreen() throws InterruptedException {
+    String watcherName = "VNCScreen-updates-127.0.0.1:" + server.getPort();
+    screen.stop();
+    screen = null;
+    long until = System.currentTimeMillis() + 3000;
+    while (hasThread(watcherName) && System.currentTimeMillis() < until) {
+      Thread.sleep(50);
+    }
+    Assert.assertFalse("watcher still running", hasThread(watcherName));
+  }
+
+  private static boolean hasThread(String name) {
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals(name) && thread.isAlive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
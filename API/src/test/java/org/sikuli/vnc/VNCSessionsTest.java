@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.vnc;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.sikuli.basics.Settings;
+import org.sikuli.script.support.ScriptAbort;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * VNCSessions: fair share of the find slots and reconnect of lost sessions (against RFBStandIn)
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class VNCSessionsTest {
+
+  private static RFBStandIn serverA = null;
+  private static RFBStandIn serverB = null;
+  private static VNCScreen screenA = null;
+  private static VNCScreen screenB = null;
+
+  private int savedMatchThreads;
+  private int savedReconnectTries;
+  private int savedReconnectMaxDelay;
+
+  @BeforeClass
+  public static void setUpClass() throws IOException {
+    serverA = new RFBStandIn(200, 100);
+    serverB = new RFBStandIn(200, 100);
+    VNCScreen.startUp(0);
+    screenA = VNCScreen.start("127.0.0.1", serverA.getPort(), 3, 0);
+    screenB = VNCScreen.start("127.0.0.1", serverB.getPort(), 3, 0);
+    Assert.assertTrue("A not connected", screenA.isRunning());
+    Assert.assertTrue("B not connected", screenB.isRunning());
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    VNCScreen.stopAll();
+    serverA.close();
+    serverB.close();
+  }
+
+  @Before
+  public void setUp() {
+    savedMatchThreads = Settings.VNCMatchThreads;
+    savedReconnectTries = Settings.VNCReconnectTries;
+    savedReconnectMaxDelay = Settings.VNCReconnectMaxDelay;
+  }
+
+  @After
+  public void tearDown() {
+    Settings.VNCMatchThreads = savedMatchThreads;
+    Settings.VNCReconnectTries = savedReconnectTries;
+    Settings.VNCReconnectMaxDelay = savedReconnectMaxDelay;
+  }
+
+  private static boolean waitFor(BooleanSupplier condition, long timeout) throws InterruptedException {
+    long until = System.currentTimeMillis() + timeout;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > until) {
+        return false;
+      }
+      Thread.sleep(20);
+    }
+    return true;
+  }
+
+  private static Thread startThread(Runnable runnable) {
+    Thread thread = new Thread(runnable);
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  // a find, that counts itself as running, until the latch is released
+  private static Boolean blockingFind(AtomicInteger running, AtomicInteger maxRunning, CountDownLatch release) {
+    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+    try {
+      release.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      running.decrementAndGet();
+    }
+    return true;
+  }
+
+  @Test
+  public void test010_FairShare() throws InterruptedException {
+    Settings.VNCMatchThreads = 4;
+    AtomicInteger runningA = new AtomicInteger(0), maxA = new AtomicInteger(0);
+    AtomicInteger runningB = new AtomicInteger(0), maxB = new AtomicInteger(0);
+    CountDownLatch releaseFirstA = new CountDownLatch(1);
+    CountDownLatch releaseAll = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    // A alone gets all slots
+    for (int n = 0; n < 4; n++) {
+      threads.add(startThread(() -> {
+        VNCSessions.runFind(screenA, () -> blockingFind(runningA, maxA, releaseFirstA));
+        VNCSessions.runFind(screenA, () -> blockingFind(runningA, maxA, releaseAll));
+      }));
+    }
+    Assert.assertTrue("A did not get all slots", waitFor(() -> runningA.get() == 4, 3000));
+    // B waits for a slot: A now only gets its share
+    for (int n = 0; n < 4; n++) {
+      threads.add(startThread(() -> VNCSessions.runFind(screenB, () -> blockingFind(runningB, maxB, releaseAll))));
+    }
+    Assert.assertTrue("B not waiting", waitFor(() -> getWaiting(screenB) == 4, 3000));
+    releaseFirstA.countDown();
+    Assert.assertTrue(String.format("no fair share: A %d B %d", runningA.get(), runningB.get()),
+        waitFor(() -> runningA.get() == 2 && runningB.get() == 2, 3000));
+    Thread.sleep(200);
+    Assert.assertEquals("A above its share", 2, runningA.get());
+    Assert.assertEquals("B above its share", 2, maxB.get());
+    releaseAll.countDown();
+    for (Thread thread : threads) {
+      thread.join(3000);
+      Assert.assertFalse("find not ended", thread.isAlive());
+    }
+    Assert.assertEquals(8, VNCSessions.getSession(screenA).getFinds());
+    Assert.assertEquals(4, VNCSessions.getSession(screenB).getFinds());
+  }
+
+  private static int getWaiting(VNCScreen screen) {
+    VNCSessions.Session session = VNCSessions.getSession(screen);
+    return null == session ? 0 : session.getWaitingForSlot();
+  }
+
+  @Test
+  public void test020_AbortWhileWaitingForSlot() throws InterruptedException {
+    Settings.VNCMatchThreads = 1;
+    AtomicInteger running = new AtomicInteger(0), max = new AtomicInteger(0);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread holder = startThread(() -> VNCSessions.runFind(screenA, () -> blockingFind(running, max, release)));
+    Assert.assertTrue(waitFor(() -> running.get() == 1, 3000));
+
+    AtomicReference<Throwable> aborted = new AtomicReference<>();
+    AtomicReference<ScriptAbort.Run> waiterRun = new AtomicReference<>();
+    Thread waiter = startThread(() -> {
+      ScriptAbort.Run run = ScriptAbort.start();
+      waiterRun.set(run);
+      try {
+        VNCSessions.runFind(screenB, () -> true);
+      } catch (Throwable e) {
+        aborted.set(e);
+      } finally {
+        ScriptAbort.end(run);
+      }
+    });
+    Assert.assertTrue(waitFor(() -> getWaiting(screenB) == 1, 3000));
+    ScriptAbort.abort(waiterRun.get());
+    waiter.join(3000);
+    Assert.assertTrue("not aborted: " + aborted.get(), aborted.get() instanceof ScriptAbort.Aborted);
+
+    AtomicReference<Throwable> interrupted = new AtomicReference<>();
+    Thread other = startThread(() -> {
+      try {
+        VNCSessions.runFind(screenB, () -> true);
+      } catch (Throwable e) {
+        interrupted.set(e);
+      }
+    });
+    Assert.assertTrue(waitFor(() -> getWaiting(screenB) == 1, 3000));
+    other.interrupt();
+    other.join(3000);
+    Assert.assertTrue("plain interrupt: " + interrupted.get(), interrupted.get() instanceof IllegalStateException);
+
+    Assert.assertEquals("waiting not counted down", 0, getWaiting(screenB));
+    release.countDown();
+    holder.join(3000);
+  }
+
+  @Test
+  public void test030_Reconnect() throws InterruptedException {
+    Settings.VNCReconnectTries = 3;
+    Settings.VNCReconnectMaxDelay = 2;
+    VNCSessions.Session session = VNCSessions.getSession(screenA);
+    int connects = serverA.getConnectTimes().size();
+    long dropped = System.currentTimeMillis();
+    serverA.dropConnections();
+    Assert.assertTrue("not reconnected: " + session,
+        waitFor(() -> session.getState() == VNCSessions.State.CONNECTED && session.getReconnects() == 1, 5000));
+    List<Long> times = serverA.getConnectTimes();
+    Assert.assertEquals("connect tries", connects + 1, times.size());
+    long delay = times.get(connects) - dropped;
+    Assert.assertTrue("first try after " + delay, delay >= 900 && delay < 2500);
+    Assert.assertEquals(1, serverA.getClients());
+  }
+
+  @Test
+  public void test040_ReconnectBackoff() throws InterruptedException {
+    Settings.VNCReconnectTries = 3;
+    Settings.VNCReconnectMaxDelay = 2;
+    VNCSessions.Session session = VNCSessions.getSession(screenA);
+    int connects = serverA.getConnectTimes().size();
+    serverA.setRefusing(true);
+    long dropped = System.currentTimeMillis();
+    serverA.dropConnections();
+    Assert.assertTrue("not given up: " + session,
+        waitFor(() -> session.getState() == VNCSessions.State.LOST, 10000));
+    List<Long> times = serverA.getConnectTimes().subList(connects, serverA.getConnectTimes().size());
+    Assert.assertEquals("reconnect tries", 3, times.size());
+    // delays 1, 2 and 2 (max) seconds
+    long[] delays = {times.get(0) - dropped, times.get(1) - times.get(0), times.get(2) - times.get(1)};
+    long[] expected = {1000, 2000, 2000};
+    for (int n = 0; n < delays.length; n++) {
+      Assert.assertTrue(String.format("delay %d: %d msec", n + 1, delays[n]),
+          delays[n] >= expected[n] - 100 && delays[n] < expected[n] + 1000);
+    }
+    Thread.sleep(2500);
+    Assert.assertEquals("tried after giving up", 3,
+        serverA.getConnectTimes().size() - connects);
+  }
+}
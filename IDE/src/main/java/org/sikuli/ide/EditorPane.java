@@ -42,7 +42,10 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.io.*;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.prefs.PreferenceChangeEvent;
 import java.util.prefs.PreferenceChangeListener;
@@ -956,22 +959,76 @@ public class EditorPane extends JTextPane {
   }
 
   public void parseTextAgain() {
+    parseTextAgain(true);
+  }
+
+  private void parseTextAgain(boolean reuse) {
     saveCaretPosition();
-    readContent(getText());
-    updateDocumentListeners("reparse");
-    parseText();
+    reusableComponents = reuse ? collectComponents() : null;
+    try {
+      readContent(getText());
+      updateDocumentListeners("reparse");
+      parseText();
+    } finally {
+      reusableComponents = null;
+    }
     restoreCaretPosition();
   }
 
   public void parseTextAgainOnRenameImage(String oldName, String newName, boolean fileOverWritten) {
-    if (fileOverWritten) {
-      //TODO ImageCache action?
-    }
     String text = getText();
     Pattern oldPattern = Pattern.compile("[\"']" + Pattern.quote(oldName) + "[\"']");
     text = oldPattern.matcher(text).replaceAll(newName);
     setText(text);
-    parseTextAgain();
+    // the image popups of existing labels would show the old content
+    parseTextAgain(!fileOverWritten);
+  }
+
+  // while reparsing: the image components of the previous content by their text
+  private Map<String, Deque<JComponent>> reusableComponents = null;
+
+  private Map<String, Deque<JComponent>> collectComponents() {
+    Map<String, Deque<JComponent>> components = new HashMap<>();
+    if (!showThumbs) {
+      return components;
+    }
+    Document doc = getDocument();
+    if (!(doc instanceof StyledDocument)) {
+      return components;
+    }
+    StyledDocument sdoc = (StyledDocument) doc;
+    int pos = 0;
+    while (pos < doc.getLength()) {
+      Element elm = sdoc.getCharacterElement(pos);
+      if (StyleConstants.ComponentElementName.equals(elm.getName())) {
+        Component comp = StyleConstants.getComponent(elm.getAttributes());
+        if (comp instanceof JComponent) {
+          components.computeIfAbsent(comp.toString(), k -> new ArrayDeque<>()).addLast((JComponent) comp);
+        }
+      }
+      pos = Math.max(pos + 1, elm.getEndOffset());
+    }
+    return components;
+  }
+
+  private JComponent reuseComponent(String imgStr, Class<?> expected) {
+    if (reusableComponents == null) {
+      return null;
+    }
+    Deque<JComponent> components = reusableComponents.get(imgStr);
+    if (components == null || components.isEmpty()) {
+      return null;
+    }
+    JComponent comp = components.peekFirst();
+    if (comp.getClass() != expected) {
+      // thumbnail preference changed meanwhile
+      return null;
+    }
+    components.removeFirst();
+    if (comp instanceof EditorPatternButton) {
+      ((EditorPatternButton) comp).refreshThumbnail();
+    }
+    return comp;
   }
 
   public String parseLine(String line) {
@@ -1071,18 +1128,31 @@ public class EditorPane extends JTextPane {
     Document doc = getDocument();
     String imgStr = doc.getText(startOff, endOff - startOff);
     JComponent comp = null;
+    boolean thumbs = PreferencesUser.get().getPrefMoreImageThumbs();
 
     if (ptn == patPatternStr || ptn == patPngStr) {
-      if (PreferencesUser.get().getPrefMoreImageThumbs()) {
-        comp = EditorPatternButton.createFromString(this, imgStr, null);
+      if (thumbs) {
+        comp = reuseComponent(imgStr, EditorPatternButton.class);
+        if (comp == null) {
+          comp = EditorPatternButton.createFromString(this, imgStr, null);
+        }
       } else {
-        comp = EditorPatternLabel.labelFromString(this, imgStr);
+        comp = reuseComponent(imgStr, EditorPatternLabel.class);
+        if (comp == null) {
+          comp = EditorPatternLabel.labelFromString(this, imgStr);
+        }
       }
     } else if (ptn == patRegionStr) {
-      if (PreferencesUser.get().getPrefMoreImageThumbs()) {
-        comp = EditorRegionButton.createFromString(this, imgStr);
+      if (thumbs) {
+        comp = reuseComponent(imgStr, EditorRegionButton.class);
+        if (comp == null) {
+          comp = EditorRegionButton.createFromString(this, imgStr);
+        }
       } else {
-        comp = EditorRegionLabel.labelFromString(this, imgStr);
+        comp = reuseComponent(imgStr, EditorRegionLabel.class);
+        if (comp == null) {
+          comp = EditorRegionLabel.labelFromString(this, imgStr);
+        }
       }
     } else if (ptn == patCaptureBtn) {
       comp = EditorPatternLabel.labelFromString(this, "");
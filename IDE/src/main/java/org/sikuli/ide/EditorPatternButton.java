@@ -7,6 +7,7 @@ import org.sikuli.basics.Debug;
 import org.sikuli.basics.FileManager;
 import org.sikuli.basics.PreferencesUser;
 import org.sikuli.script.Image;
+import org.sikuli.script.ImagePath;
 import org.sikuli.script.Location;
 
 import javax.swing.*;
@@ -19,13 +20,20 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.Serializable;
+import java.net.URL;
+import java.util.function.Consumer;
 
 class EditorPatternButton extends JButton implements ActionListener, Serializable, MouseListener {
 
   public static final int DEFAULT_NUM_MATCHES = 50;
   static final double DEFAULT_SIMILARITY = 0.7;
   private String _imgFilename, _imgFilenameSaved;
+  // the image file - its content is loaded with the thumbnail in background
+  private URL _imgURL;
+  // null: not yet loaded (see getImage())
   private org.sikuli.script.Image _image;
+  // a thumbnail rendered for an earlier image is not shown
+  private int _thumbnailRequest = 0;
   private EditorPane _pane;
   private double _similarity, _similaritySaved;
   private float _resizeFactor;
@@ -51,8 +59,16 @@ class EditorPatternButton extends JButton implements ActionListener, Serializabl
 
   private EditorPatternButton(EditorPane pane, Image img) {
     this._image = img;
+    this._imgURL = img.url();
     this._imgFilename = img.fileName();
-    setIcon(new ImageIcon(createThumbnailImage(_image, PreferencesUser.get().getDefaultThumbHeight())));
+    setThumbnail();
+    init(pane, null, null);
+  }
+
+  private EditorPatternButton(EditorPane pane, URL imgURL) {
+    this._imgURL = imgURL;
+    this._imgFilename = getFilename(imgURL);
+    setThumbnail();
     init(pane, null, null);
   }
 
@@ -61,7 +77,7 @@ class EditorPatternButton extends JButton implements ActionListener, Serializabl
     super();
     _lbl = lbl;
     _imgFilename = _lbl.getFile();
-    _image = new Image(_imgFilename);
+    _imgURL = findImageFile(_imgFilename);
     _exact = false;
     _similarity = _lbl.getSimilarity();
     _resizeFactor = _lbl.getResizeFactor();
@@ -88,8 +104,61 @@ class EditorPatternButton extends JButton implements ActionListener, Serializabl
     setButtonText();
   }
 
-  public BufferedImage createThumbnailImage(int maxHeight) {
-    return createThumbnailImage(_image, maxHeight);
+  /**
+   * @param maxHeight the thumbnail height (0: image size)
+   * @return an empty icon with the size of the thumbnail to come
+   */
+  Icon getThumbnailPlaceholder(int maxHeight) {
+    return EditorThumbnailCache.getPlaceholder(_imgURL, _image, maxHeight);
+  }
+
+  /**
+   * @param maxHeight    the thumbnail height (0: image size)
+   * @param whenRendered gets the thumbnail on the EDT (at once if cached, otherwise when rendered in background)
+   */
+  void getThumbnailImage(int maxHeight, Consumer<BufferedImage> whenRendered) {
+    EditorThumbnailCache.Thumbnail thumbnail = EditorThumbnailCache.getIfPresent(_imgURL, maxHeight);
+    if (thumbnail != null) {
+      whenRendered.accept(thumbnail.getImage());
+      return;
+    }
+    final URL url = _imgURL;
+    EditorThumbnailCache.get(url, _image, maxHeight).whenComplete((rendered, error) -> {
+      if (error != null) {
+        Debug.log(-1, "EditorPatternButton: thumbnail not rendered: %s (%s)", url, error.getMessage());
+        return;
+      }
+      SwingUtilities.invokeLater(() -> whenRendered.accept(rendered.getImage()));
+    });
+  }
+
+  /**
+   * decides validity by the existence of the file - its content is not loaded here
+   *
+   * @param fileName image file name (relative: searched on the image path)
+   * @return the image file or null if not found
+   */
+  private static URL findImageFile(String fileName) {
+    URL url = ImagePath.find(Image.getValidImageFilename(fileName));
+    if (url != null && "file".equals(url.getProtocol()) && !new File(url.getPath()).exists()) {
+      return null;
+    }
+    return url;
+  }
+
+  private static String getFilename(URL url) {
+    if ("file".equals(url.getProtocol())) {
+      return new File(url.getPath()).getAbsolutePath();
+    }
+    return url.toString();
+  }
+
+  // created when needed (pattern string) - usually loaded by the thumbnail rendering before
+  private Image getImage() {
+    if (_image == null) {
+      _image = _imgURL == null ? new Image(_imgFilename) : new Image(_imgURL);
+    }
+    return _image;
   }
 
   public static EditorPatternButton createFromImage(EditorPane parentPane, Image capturedImage, EditorPatternLabel lbl) {
@@ -99,9 +168,9 @@ class EditorPatternButton extends JButton implements ActionListener, Serializabl
   public static EditorPatternButton createFromString(EditorPane parentPane, String str, EditorPatternLabel lbl) {
     if (!str.startsWith("Pattern")) {
       String possibleFileName = str.substring(1, str.length() - 1);
-      Image img = new Image(possibleFileName);
-      if (img.isValid()) {
-        return new EditorPatternButton(parentPane, img);
+      URL imgURL = findImageFile(possibleFileName);
+      if (imgURL != null) {
+        return new EditorPatternButton(parentPane, imgURL);
       }
       return null;
     }
@@ -114,9 +183,9 @@ class EditorPatternButton extends JButton implements ActionListener, Serializabl
       } else if (tok.startsWith("Pattern")) {
         String filename = FileManager.slashify(tok.substring(
                 tok.indexOf("\"") + 1, tok.lastIndexOf("\"")), false);
-        Image img = new Image(filename);
-        if (img.isValid()) {
-          btn.setImage(img);
+        URL imgURL = findImageFile(filename);
+        if (imgURL != null) {
+          btn.setImage(imgURL);
         } else {
           return null;
         }
@@ -211,21 +280,38 @@ class EditorPatternButton extends JButton implements ActionListener, Serializabl
   }
 
   public void setImage(String fileName) {
-    _image = new Image(fileName);
-    _imgFilename = _image.getFilename();
-    setIcon(new ImageIcon(createThumbnailImage(_image, PreferencesUser.get().getDefaultThumbHeight())));
+    URL imgURL = findImageFile(fileName);
+    if (imgURL == null) {
+      Debug.log(-1, "EditorPatternButton: image file not found: %s", fileName);
+      _imgURL = null;
+      _image = null;
+      _imgFilename = fileName;
+      setButtonText();
+      return;
+    }
+    setImage(imgURL);
+  }
+
+  private void setImage(URL imgURL) {
+    _imgURL = imgURL;
+    _image = null;
+    _imgFilename = getFilename(imgURL);
+    setThumbnail();
     setButtonText();
   }
 
   private void setImage(Image img) {
+    _imgURL = img.url();
     _image = img;
     _imgFilename = _image.getFilename();
-    setIcon(new ImageIcon(createThumbnailImage(_image, PreferencesUser.get().getDefaultThumbHeight())));
+    setThumbnail();
     setButtonText();
   }
 
   public void reloadImage() {
-    _image.reload();
+    if (_image != null) {
+      _image.reload();
+    }
     setImage(_imgFilename);
   }
 
@@ -240,23 +326,54 @@ class EditorPatternButton extends JButton implements ActionListener, Serializabl
 	}
 */
 
-  private BufferedImage createThumbnailImage(Image image, int maxHeight) {
-    BufferedImage img = image.getBufferedImage();
-    int w = img.getWidth(null), h = img.getHeight(null);
-    _imgW = w;
-    _imgH = h;
-    if (maxHeight == 0 || maxHeight >= h) {
-      return img;
+  /**
+   * shows the cached thumbnail or a placeholder of the same size,
+   * that is replaced when the thumbnail is rendered in background
+   */
+  private void setThumbnail() {
+    final int request = ++_thumbnailRequest;
+    final URL url = _imgURL;
+    final Image image = _image;
+    final int maxHeight = PreferencesUser.get().getDefaultThumbHeight();
+    EditorThumbnailCache.Thumbnail thumbnail = EditorThumbnailCache.getIfPresent(url, maxHeight);
+    if (thumbnail != null) {
+      showThumbnail(thumbnail);
+      if (image != null) {
+        return;
+      }
+    } else {
+      setIcon(EditorThumbnailCache.getPlaceholder(url, image, maxHeight));
     }
-    _scale = (float) maxHeight / h;
-    w *= _scale;
-    h *= _scale;
-    h = (int) h;
-    BufferedImage thumb = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
-    Graphics2D g2d = thumb.createGraphics();
-    g2d.drawImage(img, 0, 0, w, h, null);
-    g2d.dispose();
-    return thumb;
+    // async: a cached thumbnail would complete on the EDT
+    EditorThumbnailCache.get(url, image, maxHeight).whenCompleteAsync((rendered, error) -> {
+      if (error != null) {
+        Debug.log(-1, "EditorPatternButton: thumbnail not rendered: %s (%s)", null == url ? image : url, error.getMessage());
+        return;
+      }
+      // in background: the content is in the image cache now
+      final Image loaded = image == null ? new Image(url) : image;
+      SwingUtilities.invokeLater(() -> {
+        if (_thumbnailRequest == request) {
+          _image = loaded;
+          showThumbnail(rendered);
+          setButtonText();
+        }
+      });
+    }, EditorThumbnailCache.getRenderer());
+  }
+
+  private void showThumbnail(EditorThumbnailCache.Thumbnail thumbnail) {
+    _imgW = thumbnail.getImageW();
+    _imgH = thumbnail.getImageH();
+    _scale = thumbnail.getScale();
+    setIcon(new ImageIcon(thumbnail.getImage()));
+  }
+
+  /**
+   * when reused after a reparse: the image file might have changed meanwhile
+   */
+  void refreshThumbnail() {
+    setThumbnail(); // the content of a changed file is reloaded in background
   }
 
   public boolean setParameters(boolean exact, double similarity, int numMatches) {
@@ -420,13 +537,15 @@ class EditorPatternButton extends JButton implements ActionListener, Serializabl
   @Override
   public String toString() {
     if (_imgFilename == null && _image == null) return "";
-    String patternString = _pane.getPatternString(_image, _similarity, _offset, _resizeFactor, _mask);
+    String patternString = _pane.getPatternString(getImage(), _similarity, _offset, _resizeFactor, _mask);
     return patternString;
   }
 
   private void setButtonText() {
     if (_lbl == null) {
-      setToolTipText(toString());
+      if (_image != null) { // otherwise set, when the image is loaded with the thumbnail
+        setToolTipText(toString());
+      }
     } else {
       _lbl.resetLabel(_imgFilename, _similarity, _offset, _resizeFactor);
     }
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.ide;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.script.Image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * INTERNAL USE: the thumbnails of the image buttons in the editor tabs
+ * <p>loaded, converted and scaled on a background pool and cached for all tabs,
+ * keyed by image file, its mtime and the thumbnail height (a changed file gets a new thumbnail).
+ * Nothing is decoded on the caller's thread (usually the EDT).
+ * The cache is limited by the number of pixels (least recently used are dropped first).</p>
+ */
+class EditorThumbnailCache {
+
+  private static final String me = "EditorThumbnailCache: ";
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  // about 64 MB with 4 bytes per pixel
+  private static final long MAX_PIXELS = 16L * 1024 * 1024;
+
+  /**
+   * a rendered thumbnail and the size of the image it was made from
+   */
+  static class Thumbnail {
+    private final BufferedImage image;
+    private final int imageW;
+    private final int imageH;
+
+    Thumbnail(BufferedImage image, int imageW, int imageH) {
+      this.image = image;
+      this.imageW = imageW;
+      this.imageH = imageH;
+    }
+
+    BufferedImage getImage() {
+      return image;
+    }
+
+    int getImageW() {
+      return imageW;
+    }
+
+    int getImageH() {
+      return imageH;
+    }
+
+    float getScale() {
+      return imageH == 0 ? 1f : (float) image.getHeight() / imageH;
+    }
+
+    long getPixels() {
+      return (long) image.getWidth() * image.getHeight();
+    }
+  }
+
+  private static final Map<String, Thumbnail> thumbnails = new LinkedHashMap<>(64, 0.75f, true);
+  // in work: buttons waiting for the same thumbnail share one rendering
+  private static final Map<String, CompletableFuture<Thumbnail>> pending = new HashMap<>();
+  private static long pixels = 0;
+
+  private static ExecutorService renderer = null;
+
+  static synchronized ExecutorService getRenderer() {
+    if (null == renderer) {
+      int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+      renderer = Executors.newFixedThreadPool(threads, runnable -> {
+        Thread thread = new Thread(runnable, "EditorThumbnails");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+      });
+    }
+    return renderer;
+  }
+
+  private static String getKey(URL url, int maxHeight) {
+    if (null == url) {
+      return null;
+    }
+    long mtime = 0;
+    if ("file".equals(url.getProtocol())) {
+      mtime = new File(url.getPath()).lastModified();
+    }
+    return url + "|" + mtime + "|" + maxHeight;
+  }
+
+  /**
+   * @param url       the image file
+   * @param maxHeight the thumbnail height (0: image size)
+   * @return the cached thumbnail or null if not yet rendered
+   */
+  static Thumbnail getIfPresent(URL url, int maxHeight) {
+    String key = getKey(url, maxHeight);
+    if (null == key) {
+      return null;
+    }
+    synchronized (thumbnails) {
+      return thumbnails.get(key);
+    }
+  }
+
+  /**
+   * @param url       the image file (null: in memory image - not cached)
+   * @param image     the image if already there (null: loaded from the file in background)
+   * @param maxHeight the thumbnail height (0: image size)
+   * @return the thumbnail - rendered in background if not cached
+   */
+  static CompletableFuture<Thumbnail> get(URL url, Image image, int maxHeight) {
+    String key = getKey(url, maxHeight);
+    if (null == key) {
+      return CompletableFuture.supplyAsync(() -> render(url, image, maxHeight), getRenderer());
+    }
+    synchronized (thumbnails) {
+      Thumbnail thumbnail = thumbnails.get(key);
+      if (null != thumbnail) {
+        return CompletableFuture.completedFuture(thumbnail);
+      }
+      CompletableFuture<Thumbnail> future = pending.get(key);
+      if (null == future) {
+        future = CompletableFuture.supplyAsync(() -> render(url, image, maxHeight), getRenderer());
+        pending.put(key, future);
+        future.whenComplete((rendered, error) -> {
+          synchronized (thumbnails) {
+            pending.remove(key);
+            if (null != rendered) {
+              put(key, rendered);
+            }
+          }
+        });
+      }
+      return future;
+    }
+  }
+
+  private static void put(String key, Thumbnail thumbnail) {
+    Thumbnail previous = thumbnails.put(key, thumbnail);
+    if (null != previous) {
+      pixels -= previous.getPixels();
+    }
+    pixels += thumbnail.getPixels();
+    Iterator<Thumbnail> eldest = thumbnails.values().iterator();
+    while (pixels > MAX_PIXELS && thumbnails.size() > 1 && eldest.hasNext()) {
+      pixels -= eldest.next().getPixels();
+      eldest.remove();
+    }
+  }
+
+  private static Thumbnail render(URL url, Image image, int maxHeight) {
+    if (null == image) {
+      image = new Image(url);
+    }
+    // reloads the content of a changed file
+    BufferedImage img = image.isValid() ? image.getBufferedImage() : null;
+    if (null == img) {
+      log(-1, "not rendered (no content): %s", null == url ? image : url);
+      throw new IllegalStateException(me + "no content: " + (null == url ? image : url));
+    }
+    int w = img.getWidth(null), h = img.getHeight(null);
+    if (maxHeight == 0 || maxHeight >= h) {
+      return new Thumbnail(img, w, h);
+    }
+    float scale = (float) maxHeight / h;
+    int thumbW = (int) (w * scale);
+    int thumbH = (int) (h * scale);
+    BufferedImage thumb = new BufferedImage(thumbW, thumbH, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g2d = thumb.createGraphics();
+    g2d.drawImage(img, 0, 0, thumbW, thumbH, null);
+    g2d.dispose();
+    return new Thumbnail(thumb, w, h);
+  }
+
+  /**
+   * @param url       the image file
+   * @param image     the image if already there (null: the size is read from the file header)
+   * @param maxHeight the thumbnail height (0: image size)
+   * @return an empty icon with the size of the thumbnail to come (square if the size is not known)
+   */
+  static Icon getPlaceholder(URL url, Image image, int maxHeight) {
+    Dimension size = null == image ? getImageSize(url) : image.getSize();
+    if (null == size) {
+      int side = maxHeight > 0 ? maxHeight : 1;
+      size = new Dimension(side, side);
+    }
+    int w = size.width, h = size.height;
+    if (maxHeight > 0 && maxHeight < h) {
+      float scale = (float) maxHeight / h;
+      w = (int) (w * scale);
+      h = (int) (h * scale);
+    }
+    return new Placeholder(Math.max(1, w), Math.max(1, h));
+  }
+
+  // only the header is read - the pixels are not decoded
+  private static Dimension getImageSize(URL url) {
+    if (null == url || !"file".equals(url.getProtocol())) {
+      return null;
+    }
+    try (ImageInputStream input = ImageIO.createImageInputStream(new File(url.getPath()))) {
+      if (null == input) {
+        return null;
+      }
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+      if (!readers.hasNext()) {
+        return null;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        return new Dimension(reader.getWidth(0), reader.getHeight(0));
+      } finally {
+        reader.dispose();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static class Placeholder implements Icon {
+    private static final Color color = new Color(232, 232, 232);
+    private final int w;
+    private final int h;
+
+    Placeholder(int w, int h) {
+      this.w = w;
+      this.h = h;
+    }
+
+    @Override
+    public void paintIcon(Component c, Graphics g, int x, int y) {
+      g.setColor(color);
+      g.fillRect(x, y, w, h);
+    }
+
+    @Override
+    public int getIconWidth() {
+      return w;
+    }
+
+    @Override
+    public int getIconHeight() {
+      return h;
+    }
+  }
+
+  static String getStats() {
+    synchronized (thumbnails) {
+      return String.format("thumbnails: %d (%d pixels) pending: %d", thumbnails.size(), pixels, pending.size());
+    }
+  }
+}
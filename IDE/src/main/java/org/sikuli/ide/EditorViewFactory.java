@@ -8,9 +8,8 @@ import java.awt.*;
 import java.util.*;
 import java.util.prefs.PreferenceChangeEvent;
 import java.util.prefs.PreferenceChangeListener;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.swing.JComponent;
+import javax.swing.event.DocumentEvent;
 import javax.swing.text.*;
 import org.sikuli.basics.Settings;
 import org.sikuli.basics.Debug;
@@ -130,12 +129,18 @@ class SyntaxHighlightLabelView extends LabelView {
 
   static FontMetrics _fMetrics = null;
   static String tabStr = nSpaces(PreferencesUser.get().getTabWidth());
-
-  private Map<Pattern, Color> patternColors;
-  private static Map<Pattern, Color> patternColorsBasic;
-  private static Map<Pattern, Color> patternColorsPython;
-  private static Map<Pattern, Color> patternColorsRuby;
-  private static Map<Pattern, Color> patternColorsSikuli;
+  // changed with the tab width: cached widths are no longer valid
+  private static volatile int tabGeneration = 0;
+
+  private static final Color colorCommentMark = new Color(220, 220, 220);
+  private static final Color colorComment = new Color(138, 140, 193);
+  private static final Color colorString = new Color(128, 0, 0);
+  private static final Color colorNumber = new Color(128, 64, 0);
+
+  private Map<String, Color> keywordColors;
+  private static Map<String, Color> keywordColorsBasic;
+  private static Map<String, Color> keywordColorsPython;
+  private static Map<String, Color> keywordColorsRuby;
   private static Font fontParenthesis;
 
   //<editor-fold defaultstate="collapsed" desc="keyword lists">
@@ -239,52 +244,45 @@ class SyntaxHighlightLabelView extends LabelView {
                 //TODO: need to reposition images
                 if (event.getKey().equals("TAB_WIDTH")) {
                   tabStr = nSpaces(Integer.parseInt(event.getNewValue()));
+                  tabGeneration++;
                 }
               }
             });
     fontParenthesis = new Font("Osaka-Mono", Font.PLAIN, 30);
 
-    // NOTE: the order is important!
-		patternColorsBasic = new HashMap<Pattern, Color>();
-    patternColorsPython = new HashMap<Pattern, Color>();
-    patternColorsRuby = new HashMap<Pattern, Color>();
-    patternColorsSikuli = new HashMap<Pattern, Color>();
-    patternColorsBasic.put(Pattern.compile("(#:.*$)"), new Color(220, 220, 220));
-    patternColorsBasic.put(Pattern.compile("(#.*$)"), new Color(138, 140, 193));
-    patternColorsBasic.put(Pattern.compile("(\"[^\"]*\"?)"), new Color(128, 0, 0));
-    patternColorsBasic.put(Pattern.compile("(\'[^\']*\'?)"), new Color(128, 0, 0));
-    patternColorsBasic.put(Pattern.compile("\\b([0-9]+)\\b"), new Color(128, 64, 0));
-		patternColorsPython.putAll(patternColorsBasic);
-		patternColorsRuby.putAll(patternColorsBasic);
-    for (int i = 0; i < keywordsPython.length; i++) { patternColorsPython.put(Pattern.compile(
-              "\\b(" + keywordsPython[i] + ")\\b"), Color.blue);
+    // NOTE: the order is important! (the Sikuli names win over the language keywords)
+    keywordColorsBasic = new HashMap<String, Color>();
+    keywordColorsPython = new HashMap<String, Color>();
+    keywordColorsRuby = new HashMap<String, Color>();
+    Map<String, Color> keywordColorsSikuli = new HashMap<String, Color>();
+    for (String keyword : keywordsPython) {
+      keywordColorsPython.put(keyword, Color.blue);
     }
-    for (int i = 0; i < keywordsRuby.length; i++) { patternColorsRuby.put(Pattern.compile(
-              "\\b(" + keywordsRuby[i] + ")\\b"), Color.blue);
+    for (String keyword : keywordsRuby) {
+      keywordColorsRuby.put(keyword, Color.blue);
     }
-    for (int i = 0; i < keywordsSikuli.length; i++) { patternColorsSikuli.put(Pattern.compile(
-              "\\b(" + keywordsSikuli[i] + ")\\b"), new Color(63, 127, 127));
+    for (String keyword : keywordsSikuli) {
+      keywordColorsSikuli.put(keyword, new Color(63, 127, 127));
     }
-    for (int i = 0; i < keywordsSikuliClass.length; i++) { patternColorsSikuli.put(Pattern.compile(
-              "\\b(" + keywordsSikuliClass[i] + ")\\b"), new Color(215, 41, 56));
+    for (String keyword : keywordsSikuliClass) {
+      keywordColorsSikuli.put(keyword, new Color(215, 41, 56));
     }
-    for (int i = 0; i < constantsSikuli.length; i++) { patternColorsSikuli.put(Pattern.compile(
-              "\\b(" + constantsSikuli[i] + ")\\b"), new Color(128, 64, 0));
+    for (String keyword : constantsSikuli) {
+      keywordColorsSikuli.put(keyword, colorNumber);
     }
-		patternColorsPython.putAll(patternColorsSikuli);
-		patternColorsRuby.putAll(patternColorsSikuli);
-		patternColorsSikuli = null;
+    keywordColorsPython.putAll(keywordColorsSikuli);
+    keywordColorsRuby.putAll(keywordColorsSikuli);
   }
 
 	public SyntaxHighlightLabelView(Element elm, String contentType) {
 		super(elm);
 		sikuliContentType = contentType;
 		if (JythonRunner.TYPE.equals(sikuliContentType)) {
-			patternColors = patternColorsPython;
+			keywordColors = keywordColorsPython;
 		} else if (JRubyRunner.TYPE.equals(sikuliContentType)) {
-			patternColors = patternColorsRuby;
+			keywordColors = keywordColorsRuby;
 		} else {
-		  patternColors = patternColorsBasic;
+		  keywordColors = keywordColorsBasic;
     }
 	}
 
@@ -294,49 +292,101 @@ class SyntaxHighlightLabelView extends LabelView {
     return new String(s);
   }
 
+  //<editor-fold defaultstate="collapsed" desc="cached text, tokens and width">
+  // valid until the next DocumentEvent for this view (or a change of its length)
+  private String cachedText = null;
+  private int[] tokenStarts = null;
+  private int[] tokenEnds = null;
+  private Color[] tokenColors = null;
+  private float cachedWidth = -1;
+  private int cachedWidthGeneration = -1;
+
+  private void invalidateCache() {
+    cachedText = null;
+    tokenStarts = null;
+    tokenEnds = null;
+    tokenColors = null;
+    cachedWidth = -1;
+  }
+
+  @Override
+  public void insertUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+    invalidateCache();
+    super.insertUpdate(e, a, f);
+  }
+
+  @Override
+  public void removeUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+    invalidateCache();
+    super.removeUpdate(e, a, f);
+  }
+
+  @Override
+  public void changedUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+    invalidateCache();
+    super.changedUpdate(e, a, f);
+  }
+
+  private String getLineText() {
+    String text = cachedText;
+    if (text == null || text.length() != getEndOffset() - getStartOffset()) {
+      invalidateCache();
+      text = getText(getStartOffset(), getEndOffset()).toString();
+      cachedText = text;
+    }
+    return text;
+  }
+  //</editor-fold>
+
   //<editor-fold defaultstate="collapsed" desc="length of line in view">
   @Override
   public float getMinimumSpan(int axis) {
-    float f = super.getMinimumSpan(axis);
     if (axis == View.X_AXIS) {
-      f = tabbedWidth();
+      return tabbedWidth();
     }
-    return f;
+    return super.getMinimumSpan(axis);
   }
 
   @Override
   public float getMaximumSpan(int axis) {
-    float f = super.getMaximumSpan(axis);
     if (axis == View.X_AXIS) {
-      f = tabbedWidth();
+      return tabbedWidth();
     }
-    return f;
+    return super.getMaximumSpan(axis);
   }
 
   @Override
   public float getPreferredSpan(int axis) {
-    float f = super.getPreferredSpan(axis);
     if (axis == View.X_AXIS) {
-      f = tabbedWidth();
+      return tabbedWidth();
     }
-    return f;
+    return super.getPreferredSpan(axis);
   }
 
   private float tabbedWidth() {
-    String str = getText(getStartOffset(), getEndOffset()).toString();
-    int tab = countTab(str);
+    String str = getLineText();
+    int generation = tabGeneration;
+    if (cachedWidth >= 0 && cachedWidthGeneration == generation) {
+      return cachedWidth;
+    }
+    int tab = countTab(str, str.length());
+    float width;
     if (Settings.isMac()) {
-      return stringWidth(str) + getRealTabWidth() * tab;
+      width = stringWidth(str) + getRealTabWidth() * tab;
     } else {
-      return stringWidth(str) + getTabWidth() * tab;
+      width = stringWidth(str) + getTabWidth() * tab;
     }
+    cachedWidth = width;
+    cachedWidthGeneration = generation;
+    return width;
   }
 
-  private int countTab(String str) {
-    int pos = -1;
+  private int countTab(String str, int end) {
     int count = 0;
-    while ((pos = str.indexOf('\t', pos + 1)) != -1) {
-      count++;
+    for (int n = 0; n < end; n++) {
+      if (str.charAt(n) == '\t') {
+        count++;
+      }
     }
     return count;
   }
@@ -358,8 +408,16 @@ class SyntaxHighlightLabelView extends LabelView {
     return getTabWidth() - tabCharWidth /* + 1f */; //still buggy
   }
 
+  private static int tabWidth = -1;
+  private static int tabWidthGeneration = -1;
+
   private int getTabWidth() {
-    return stringWidth(tabStr);
+    int generation = tabGeneration;
+    if (tabWidth < 0 || tabWidthGeneration != generation) {
+      tabWidth = stringWidth(tabStr);
+      tabWidthGeneration = generation;
+    }
+    return tabWidth;
   }
   //</editor-fold>
 
@@ -367,13 +425,12 @@ class SyntaxHighlightLabelView extends LabelView {
   public int viewToModel(float fx, float fy, Shape a, Position.Bias[] bias) {
     bias[0] = Position.Bias.Forward;
 
-    Debug.log(9, "viewToModel: " + fx + " " + fy);
-    String str = getText(getStartOffset(), getEndOffset()).toString();
+    Debug.log(9, "viewToModel: %s %s", fx, fy);
 
     int left = getStartOffset(), right = getEndOffset();
     int pos = 0;
     while (left < right) {
-      Debug.log(9, "viewToModel: " + left + " " + right + " " + pos);
+      Debug.log(9, "viewToModel: %d %d %d", left, right, pos);
       pos = (left + right) / 2;
       try {
         Shape s = modelToView(pos, a, bias[0]);
@@ -391,7 +448,7 @@ class SyntaxHighlightLabelView extends LabelView {
     }
     pos = left - 1 >= getStartOffset() ? left - 1 : getStartOffset();
     try {
-      Debug.log(9, "viewToModel: try " + pos);
+      Debug.log(9, "viewToModel: try %d", pos);
       Shape s1 = modelToView(pos, a, bias[0]);
       Shape s2 = modelToView(pos + 1, a, bias[0]);
       if (Math.abs(s1.getBounds().x - fx) <= Math.abs(s2.getBounds().x - fx)) {
@@ -409,21 +466,16 @@ class SyntaxHighlightLabelView extends LabelView {
           throws BadLocationException {
 
     int start = getStartOffset(), end = getEndOffset();
-    Debug.log(9, "[modelToView] start: " + start
-            + " end: " + end + " pos:" + pos);
-    String strHead = getText(start, pos).toString();
-    String strTail = getText(pos, end).toString();
-    Debug.log(9, "[modelToView] [" + strHead + "]-pos-[" + strTail + "]");
-    int tabHead = countTab(strHead), tabTail = countTab(strTail);
-    Debug.log(9, "[modelToView] " + tabHead + " " + tabTail);
+    Debug.log(9, "[modelToView] start: %d end: %d pos: %d", start, end, pos);
+    String str = getLineText();
+    int tabHead = countTab(str, Math.max(0, Math.min(pos - start, str.length())));
     Shape s = super.modelToView(pos, a, b);
     Rectangle ret = s.getBounds();
-    Debug.log(9, "[modelToView] super.bounds: " + ret);
+    Debug.log(9, "[modelToView] super.bounds: %s", ret);
     if (pos != end) {
       ret.x += tabHead * getRealTabWidth();
     }
-    //ret.width += tabTail*tabWidth;
-    Debug.log(9, "[modelToView] new bounds: " + ret);
+    Debug.log(9, "[modelToView] new bounds: %s (tabs %d)", ret, tabHead);
     return ret;
   }
 
@@ -436,12 +488,10 @@ class SyntaxHighlightLabelView extends LabelView {
 
     //super.paint(g, shape); // for drawing selection
 
-    String text = getText(getStartOffset(), getEndOffset()).toString();
-    //System.out.println("draw " + text);
-
-    SortedMap<Integer, Integer> posMap = new TreeMap<Integer, Integer>();
-    SortedMap<Integer, Color> colorMap = new TreeMap<Integer, Color>();
-    buildColorMaps(text, posMap, colorMap);
+    String text = getLineText();
+    if (tokenStarts == null) {
+      tokenize(text);
+    }
 
     if (_fMetrics == null) {
       _fMetrics = g2d.getFontMetrics();
@@ -453,36 +503,27 @@ class SyntaxHighlightLabelView extends LabelView {
     int sy = alloc.y + alloc.height - _fMetrics.getDescent();
     int i = 0;
 
-    for (Map.Entry<Integer, Integer> entry : posMap.entrySet()) {
-      int start = entry.getKey();
-      int end = entry.getValue();
-
-      if (i <= start) {
+    for (int n = 0; n < tokenStarts.length; n++) {
+      int start = tokenStarts[n];
+      if (i < start) {
         g2d.setColor(Color.black);
-        String str = text.substring(i, start);
-        sx = drawString(g2d, str, sx, sy);
-      } else {
-        break;
+        sx = drawString(g2d, text.substring(i, start), sx, sy);
       }
-
-      g2d.setColor(colorMap.get(start));
-      i = end;
-      String str = text.substring(start, i);
+      g2d.setColor(tokenColors[n]);
+      i = tokenEnds[n];
       /*
        * if( str.equals("(") || str.equals(")") )
        * sx = drawParenthesis(g2d, str, sx, sy);
        * else
        */
-      sx = drawString(g2d, str, sx, sy);
+      sx = drawString(g2d, text.substring(start, i), sx, sy);
     }
 
     // Paint possible remaining text black
     if (i < text.length()) {
       g2d.setColor(Color.black);
-      String str = text.substring(i, text.length());
-      drawString(g2d, str, sx, sy);
+      drawString(g2d, text.substring(i), sx, sy);
     }
-
   }
 
   int drawString(Graphics2D g2d, String str, int x, int y) {
@@ -502,7 +543,7 @@ class SyntaxHighlightLabelView extends LabelView {
   }
 
   int drawTab(Graphics2D g2d, int x, int y) {
-    return drawString(g2d, tabStr, x, y);
+    return x + getTabWidth();
   }
 
   int drawParenthesis(Graphics2D g2d, String str, int x, int y) {
@@ -514,21 +555,88 @@ class SyntaxHighlightLabelView extends LabelView {
     return x;
   }
 
-  void buildColorMaps(String text, Map<Integer, Integer> posMap,
-          Map<Integer, Color> colorMap) {
+  /**
+   * one pass over the text: comments, strings, numbers and keywords (non overlapping, ascending)
+   *
+   * @param text the text of this view
+   */
+  private void tokenize(String text) {
+    int len = text.length();
+    int[] starts = new int[8];
+    int[] ends = new int[8];
+    Color[] colors = new Color[8];
+    int count = 0;
+    int pos = 0;
+    while (pos < len) {
+      char c = text.charAt(pos);
+      int start = pos;
+      Color color = null;
+      if (c == '#') {
+        // comment up to the end of the line
+        color = (pos + 1 < len && text.charAt(pos + 1) == ':') ? colorCommentMark : colorComment;
+        pos = lineEnd(text, pos);
+      } else if (c == '"' || c == '\'') {
+        // string up to the closing quote (an unclosed string up to the end)
+        int close = text.indexOf(c, pos + 1);
+        pos = close < 0 ? len : close + 1;
+        color = colorString;
+      } else if (isWordChar(c)) {
+        while (pos < len && isWordChar(text.charAt(pos))) {
+          pos++;
+        }
+        if (start == 0 || !isWordChar(text.charAt(start - 1))) {
+          color = wordColor(text, start, pos);
+          if (color != null && pos < len && text.charAt(pos) == '?'
+                  && keywordColors.containsKey(text.substring(start, pos + 1))) {
+            pos++;
+          }
+        }
+      } else {
+        pos++;
+      }
+      if (color != null) {
+        if (count == starts.length) {
+          starts = Arrays.copyOf(starts, count * 2);
+          ends = Arrays.copyOf(ends, count * 2);
+          colors = Arrays.copyOf(colors, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = pos;
+        colors[count] = color;
+        count++;
+      }
+    }
+    tokenEnds = Arrays.copyOf(ends, count);
+    tokenColors = Arrays.copyOf(colors, count);
+    tokenStarts = Arrays.copyOf(starts, count);
+  }
 
-    // Match all regexes on this snippet, store positions
-    for (Map.Entry<Pattern, Color> entry : patternColors.entrySet()) {
+  private static int lineEnd(String text, int pos) {
+    int end = text.indexOf('\n', pos);
+    return end < 0 ? text.length() : end;
+  }
 
-      Matcher matcher = entry.getKey().matcher(text);
+  private static boolean isWordChar(char c) {
+    return c == '_' || Character.isLetterOrDigit(c);
+  }
 
-      while (matcher.find()) {
-        posMap.put(matcher.start(1), matcher.end());
-        colorMap.put(matcher.start(1), entry.getValue());
+  private Color wordColor(String text, int start, int end) {
+    boolean digits = true;
+    for (int n = start; n < end; n++) {
+      if (!Character.isDigit(text.charAt(n))) {
+        digits = false;
+        break;
       }
     }
+    if (digits) {
+      return colorNumber;
+    }
+    Color color = keywordColors.get(text.substring(start, end));
+    if (color == null && end < text.length() && text.charAt(end) == '?') {
+      color = keywordColors.get(text.substring(start, end + 1));
+    }
+    return color;
   }
-
   //</editor-fold>
 
 }
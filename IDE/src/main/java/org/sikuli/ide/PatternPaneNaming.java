@@ -25,7 +25,7 @@ public class PatternPaneNaming extends JPanel {
 	JTextField _txtPath, _txtFileExt;
 	JComboBox _txtFilename;
 	String _oldFilename;
-	ImageIcon icon;
+	JLabel lblThumb;
 
 	static String _I(String key, Object... args) {
 		return SikuliIDEI18N._I(key, args);
@@ -47,11 +47,10 @@ public class PatternPaneNaming extends JPanel {
 		filename = getFilenameWithoutExt(f);
 		_oldFilename = filename;
 
-		BufferedImage thumb = _imgBtn.createThumbnailImage(THUMB_MAX_HEIGHT);
 		Border border = LineBorder.createGrayLineBorder();
-		icon = new ImageIcon(thumb);
-		JLabel lblThumb = new JLabel(icon);
+		lblThumb = new JLabel(_imgBtn.getThumbnailPlaceholder(THUMB_MAX_HEIGHT));
 		lblThumb.setBorder(border);
+		reloadImage();
 
 		_txtPath = new JTextField(fullpath, TXT_FILENAME_LENGTH);
 		_txtPath.setEditable(false);
@@ -111,8 +110,8 @@ public class PatternPaneNaming extends JPanel {
 	}
 
 	public void reloadImage() {
-	  BufferedImage thumb = _imgBtn.createThumbnailImage(THUMB_MAX_HEIGHT);
-	  icon.setImage(thumb);
+	  // rendered in background: the thumbnail is shown when ready
+	  _imgBtn.getThumbnailImage(THUMB_MAX_HEIGHT, thumb -> lblThumb.setIcon(new ImageIcon(thumb)));
 	}
 
 	private String getFilenameWithoutExt(File f) {